@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+package com.caucho.quercus;
+
+import com.caucho.env.meter.ActiveTimeMeter;
+import com.caucho.env.meter.CountMeter;
+import com.caucho.env.meter.HistogramMeter;
+import com.caucho.env.meter.MeterService;
+import com.caucho.management.server.AbstractManagedObject;
+import com.caucho.management.server.QuercusMXBean;
+import com.caucho.vfs.Path;
+
+/**
+ * JMX administration for a Quercus engine.
+ */
+public class QuercusAdmin extends AbstractManagedObject
+        implements QuercusMXBean {
+
+   private final QuercusContext _quercus;
+   private final CountMeter _pageHitMeter = MeterService.createCountMeter("Quercus|Page|Hit");
+   private final CountMeter _pageParseMeter = MeterService.createCountMeter("Quercus|Page|Parse");
+   private final CountMeter _includeHitMeter = MeterService.createCountMeter("Quercus|Include|Hit");
+   private final CountMeter _includeMissMeter = MeterService.createCountMeter("Quercus|Include|Miss");
+   private final CountMeter _regexpHitMeter = MeterService.createCountMeter("Quercus|Regexp|Hit");
+   private final CountMeter _regexpCompileMeter = MeterService.createCountMeter("Quercus|Regexp|Compile");
+   private final CountMeter _unserializeHitMeter = MeterService.createCountMeter("Quercus|Unserialize|Hit");
+   private final CountMeter _unserializeMissMeter = MeterService.createCountMeter("Quercus|Unserialize|Miss");
+   private final ActiveTimeMeter _connMeter = MeterService.createActiveTimeMeter("Quercus|Database|Connection");
+
+   QuercusAdmin(QuercusContext quercus) {
+      _quercus = quercus;
+   }
+
+   /**
+    * Returns the engine's root directory as the JMX name.
+    */
+   @Override
+   public String getName() {
+      Path pwd = _quercus.getPwd();
+
+      if (pwd != null) {
+         return pwd.getNativePath();
+      } else {
+         return null;
+      }
+   }
+
+   @Override
+   public boolean isReady() {
+      return _quercus.isReady();
+   }
+
+   //
+   // Requests
+   //
+
+   @Override
+   public int getEnvActiveCount() {
+      return _quercus.getActiveEnvCount();
+   }
+
+   @Override
+   public long getRequestCountTotal() {
+      return _quercus.getRequestTimeMeter().getCount();
+   }
+
+   @Override
+   public double getRequestTimeAverage() {
+      return _quercus.getRequestTimeMeter().peek();
+   }
+
+   @Override
+   public long getRequestTime95() {
+      return _quercus.getRequestTimeMeter().getPercentile(0.95);
+   }
+
+   @Override
+   public long getRequestTime99() {
+      return _quercus.getRequestTimeMeter().getPercentile(0.99);
+   }
+
+   //
+   // Caches
+   //
+
+   @Override
+   public long getPageHitCountTotal() {
+      return _pageHitMeter.getTotal();
+   }
+
+   @Override
+   public long getPageParseCountTotal() {
+      return _pageParseMeter.getTotal();
+   }
+
+   @Override
+   public long getIncludeHitCountTotal() {
+      return _includeHitMeter.getTotal();
+   }
+
+   @Override
+   public long getIncludeMissCountTotal() {
+      return _includeMissMeter.getTotal();
+   }
+
+   @Override
+   public long getRegexpHitCountTotal() {
+      return _regexpHitMeter.getTotal();
+   }
+
+   @Override
+   public long getRegexpCompileCountTotal() {
+      return _regexpCompileMeter.getTotal();
+   }
+
+   @Override
+   public long getUnserializeHitCountTotal() {
+      return _unserializeHitMeter.getTotal();
+   }
+
+   @Override
+   public long getUnserializeMissCountTotal() {
+      return _unserializeMissMeter.getTotal();
+   }
+
+   //
+   // Sessions and connections
+   //
+
+   @Override
+   public int getSessionActiveCount() {
+      return _quercus.getQuercusSessionManager().getActiveSessionCount();
+   }
+
+   @Override
+   public long getSessionCreateCountTotal() {
+      return _quercus.getQuercusSessionManager().getSessionCreateCount();
+   }
+
+   @Override
+   public long getSessionTimeoutCountTotal() {
+      return _quercus.getQuercusSessionManager().getSessionTimeoutCount();
+   }
+
+   @Override
+   public long getDatabaseConnectionActiveCount() {
+      return _connMeter.getActiveCount();
+   }
+
+   @Override
+   public long getDatabaseConnectionCountTotal() {
+      return _connMeter.getTotalCount();
+   }
+
+   void register() {
+      registerSelf();
+   }
+
+   void unregister() {
+      unregisterSelf();
+   }
+}
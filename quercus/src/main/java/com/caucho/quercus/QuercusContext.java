@@ -29,6 +29,10 @@
 package com.caucho.quercus;
 
 import com.caucho.config.ConfigException;
+import com.caucho.env.meter.ActiveMeter;
+import com.caucho.env.meter.CountMeter;
+import com.caucho.env.meter.HistogramMeter;
+import com.caucho.env.meter.MeterService;
 import com.caucho.java.JavaCompiler;
 import com.caucho.quercus.annotation.ClassImplementation;
 import com.caucho.quercus.env.*;
@@ -55,6 +59,7 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -107,6 +112,8 @@ public class QuercusContext {
    private int _includeCacheMax = 8192;
    private long _includeCacheTimeout = 10000L;
    private TimedCache<IncludeKey, Path> _includeCache;
+   private static final CountMeter _includeHitMeter = MeterService.createCountMeter("Quercus|Include|Hit");
+   private static final CountMeter _includeMissMeter = MeterService.createCountMeter("Quercus|Include|Miss");
    //private LruCache<DefinitionKey,SoftReference<DefinitionState>> _defCache
    //    = new LruCache<DefinitionKey,SoftReference<DefinitionState>>(4096);
    private long _defCacheHitCount;
@@ -128,16 +135,26 @@ public class QuercusContext {
    private DataSource _database;
    private ConcurrentHashMap<String, DataSource> _databaseMap = new ConcurrentHashMap<String, DataSource>();
    protected ConcurrentHashMap<Env, Env> _activeEnvSet = new ConcurrentHashMap<Env, Env>();
+   private final ActiveMeter _envMeter = MeterService.createActiveMeter("Quercus|Env");
+   private final HistogramMeter _requestTimeMeter = MeterService.createHistogramMeter("Quercus|Request|Time");
+   private QuercusAdmin _admin;
    private long _staticId;
    private Path _pwd;
    private Path _workDir;
    private ServletContext _servletContext;
    private QuercusTimer _quercusTimer;
    private EnvTimeoutThread _envTimeoutThread;
-   protected long _envTimeout = 60000L;
    // how long to sleep the env timeout thread,
    // for fast, complete tomcat undeploys
    protected static final long ENV_TIMEOUT_UPDATE_INTERVAL = 1000L;
+   private ArrayList<Path> _warmupPathList = new ArrayList<Path>();
+   private int _warmupThreads;
+   private int _outputChunkSize;
+   private int _flushMinBytes;
+   private long _flushMinInterval;
+   private boolean _isOutputCompression;
+   private int _outputCompressionLevel = -1;
+   private volatile boolean _isReady = true;
    private boolean _isClosed;
 
    /**
@@ -590,6 +607,102 @@ public class QuercusContext {
       RegexpModule.setRegexpCacheSize(size);
    }
 
+   /*
+    * Adds a directory or script to parse into the page cache on startup.
+    */
+   public void addWarmupPath(Path path) {
+      _warmupPathList.add(path);
+   }
+
+   /*
+    * Sets the number of threads parsing the warm-up scripts.
+    */
+   public void setWarmupThreads(int threads) {
+      _warmupThreads = threads;
+   }
+
+   /*
+    * Returns the size of the chunks written to the servlet response,
+    * or 0 for the default of the response's buffer size, but at least
+    * four TempBuffers.
+    */
+   public int getOutputChunkSize() {
+      return _outputChunkSize;
+   }
+
+   /*
+    * Sets the size of the chunks written to the servlet response.
+    */
+   public void setOutputChunkSize(int size) {
+      _outputChunkSize = size;
+   }
+
+   /*
+    * Returns the bytes a script must write before its flush() reaches
+    * the client, or 0 to honor every flush.
+    */
+   public int getFlushMinBytes() {
+      return _flushMinBytes;
+   }
+
+   /*
+    * Sets the bytes to accumulate before a script flush reaches the client.
+    */
+   public void setFlushMinBytes(int bytes) {
+      _flushMinBytes = bytes;
+   }
+
+   /*
+    * Returns the milliseconds since the last flush before a script's
+    * flush() reaches the client, or 0 to honor every flush.
+    */
+   public long getFlushMinInterval() {
+      return _flushMinInterval;
+   }
+
+   /*
+    * Sets the milliseconds to wait before a script flush reaches the client.
+    */
+   public void setFlushMinInterval(long interval) {
+      _flushMinInterval = interval;
+   }
+
+   /*
+    * Returns true if servlet responses are gzip-compressed for clients
+    * accepting it.
+    */
+   public boolean isOutputCompression() {
+      return _isOutputCompression;
+   }
+
+   /*
+    * Turns gzip compression of servlet responses on or off.
+    */
+   public void setOutputCompression(boolean isEnable) {
+      _isOutputCompression = isEnable;
+   }
+
+   /*
+    * Returns the gzip compression level, or -1 for the zlib default.
+    */
+   public int getOutputCompressionLevel() {
+      return _outputCompressionLevel;
+   }
+
+   /*
+    * Sets the gzip compression level, 1-9, or -1 for the zlib default.
+    */
+   public void setOutputCompressionLevel(int level) {
+      _outputCompressionLevel = level;
+   }
+
+   /**
+    * Returns false while the warm-up pages are still being parsed.
+    */
+   public boolean isReady() {
+      return _isReady;
+   }
+
    /*
     * Set to true if compiled pages need to be backed by php source files.
     */
@@ -920,6 +1033,12 @@ public class QuercusContext {
 
       Path path = _includeCache.get(key);
 
+      if (path != null) {
+         _includeHitMeter.start();
+      } else {
+         _includeMissMeter.start();
+      }
+
       return path;
    }
 
@@ -1828,6 +1947,9 @@ public class QuercusContext {
 
          _envTimeoutThread = new EnvTimeoutThread();
          _envTimeoutThread.start();
+
+         _admin = new QuercusAdmin(this);
+         _admin.register();
       } catch (Exception e) {
          log.log(Level.FINE, e.getMessage(), e);
       }
@@ -1840,16 +1962,132 @@ public class QuercusContext {
       return new Env(this, page, out, request, response);
    }
 
+   /**
+    * Parses the warm-up scripts into the page cache in the background.
+    * Until the parsing completes, isReady() returns false.
+    */
+   public void startWarmup() {
+      if (_warmupPathList.size() == 0) {
+         return;
+      }
+
+      _isReady = false;
+
+      new WarmupThread().start();
+   }
+
+   /**
+    * Parses the warm-up scripts in parallel, returning the parsed count.
+    */
+   protected int warmup()
+           throws InterruptedException {
+      ArrayList<Path> pathList = new ArrayList<Path>();
+
+      for (Path path : _warmupPathList) {
+         addWarmupScripts(pathList, path);
+      }
+
+      int threads = _warmupThreads;
+
+      if (threads <= 0) {
+         threads = Runtime.getRuntime().availableProcessors();
+      }
+
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      final AtomicInteger count = new AtomicInteger();
+
+      try {
+         for (final Path path : pathList) {
+            executor.execute(new Runnable() {
+
+               public void run() {
+                  if (_isClosed) {
+                     return;
+                  }
+
+                  try {
+                     _pageManager.parse(path);
+
+                     count.incrementAndGet();
+                  } catch (Exception e) {
+                     log.log(Level.FINE, e.toString(), e);
+
+                     log.warning(L.l("Quercus warm-up of {0} failed: {1}",
+                             path.getNativePath(), e.getMessage()));
+                  }
+               }
+            });
+         }
+      } finally {
+         executor.shutdown();
+      }
+
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+      if (pathList.size() > _pageManager.getPageCacheSize()) {
+         log.warning(L.l("Quercus warm-up found {0} scripts, "
+                 + "more than the page-cache-entries of {1}",
+                 pathList.size(), _pageManager.getPageCacheSize()));
+      }
+
+      return count.get();
+   }
+
+   private void addWarmupScripts(ArrayList<Path> pathList, Path path) {
+      if (path.isDirectory()) {
+         try {
+            for (String name : path.list()) {
+               if (!name.startsWith(".")) {
+                  addWarmupScripts(pathList, path.lookup(name));
+               }
+            }
+         } catch (IOException e) {
+            log.log(Level.FINE, e.toString(), e);
+         }
+      } else if (!path.canRead()) {
+         log.warning(L.l("Quercus warm-up path {0} is not readable",
+                 path.getNativePath()));
+      } else if (path.getTail().endsWith(".php")
+              || _warmupPathList.contains(path)) {
+         pathList.add(path);
+      }
+   }
+
    public ExprFactory createExprFactory() {
       return new ExprFactory();
    }
 
    public void startEnv(Env env) {
-      _activeEnvSet.put(env, env);
+      if (_activeEnvSet.put(env, env) == null) {
+         _envMeter.start();
+      }
    }
 
    public void completeEnv(Env env) {
-      _activeEnvSet.remove(env);
+      if (_activeEnvSet.remove(env) != null) {
+         _envMeter.end();
+      }
+   }
+
+   /**
+    * Returns the number of executing environments.
+    */
+   public int getActiveEnvCount() {
+      return _activeEnvSet.size();
+   }
+
+   /**
+    * Adds the time of a completed request in milliseconds.
+    */
+   public void addRequestTime(long time) {
+      _requestTimeMeter.add(time);
+   }
+
+   /**
+    * Returns the request time histogram.
+    */
+   public HistogramMeter getRequestTimeMeter() {
+      return _requestTimeMeter;
    }
 
    protected boolean isClosed() {
@@ -1869,6 +2107,10 @@ public class QuercusContext {
       if (_quercusTimer != null) {
          _quercusTimer.shutdown();
       }
+
+      if (_admin != null) {
+         _admin.unregister();
+      }
    }
 
    static class IncludeKey {
@@ -1915,11 +2157,35 @@ public class QuercusContext {
       }
    }
 
+   class WarmupThread extends Thread {
+
+      WarmupThread() {
+         super("quercus-warmup");
+
+         setDaemon(true);
+         setContextClassLoader(_loader);
+      }
+
+      @Override
+      public void run() {
+         long start = System.currentTimeMillis();
+
+         try {
+            int count = warmup();
+
+            log.info(L.l("Quercus warm-up parsed {0} scripts in {1}ms",
+                    count, System.currentTimeMillis() - start));
+         } catch (Throwable e) {
+            log.log(Level.WARNING, e.toString(), e);
+         } finally {
+            _isReady = true;
+         }
+      }
+   }
+
    class EnvTimeoutThread extends Thread {
 
       private volatile boolean _isRunnable = true;
-      private final long _timeout = _envTimeout;
-      private long _quantumCount;
 
       EnvTimeoutThread() {
          super("quercus-env-timeout");
@@ -1937,20 +2203,13 @@ public class QuercusContext {
       @Override
       public void run() {
          while (_isRunnable) {
-            if (_quantumCount >= _timeout) {
-               _quantumCount = 0;
-
-               try {
-                  ArrayList<Env> activeEnv = new ArrayList<Env>(_activeEnvSet.keySet());
-
-                  for (Env env : activeEnv) {
-                     env.updateTimeout();
-                  }
-
-               } catch (Throwable e) {
+            // the envs only poll their timeout flag, so sweep every
+            // interval to keep max_execution_time within a second
+            try {
+               for (Env env : _activeEnvSet.keySet()) {
+                  env.updateTimeout();
                }
-            } else {
-               _quantumCount += ENV_TIMEOUT_UPDATE_INTERVAL;
+            } catch (Throwable e) {
             }
 
             LockSupport.parkNanos(ENV_TIMEOUT_UPDATE_INTERVAL * 1000000L);
@@ -1845,7 +1845,7 @@ abstract public class ArrayValue extends Value {
 
       @Override
       public Iterator<Map.Entry<Value, Value>> iterator() {
-         return new EntryIterator(getHead());
+         return getIterator();
       }
    }
 
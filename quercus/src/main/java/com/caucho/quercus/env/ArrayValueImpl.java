@@ -33,7 +33,9 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -41,6 +43,10 @@ import com.caucho.util.RandomUtil;
 
 /**
  * Represents a PHP array value.
+ *
+ * Arrays start as a packed list, a plain Value[] for the keys [0, size),
+ * and switch to the linked hash entries on the first key which isn't the
+ * next list index.
  */
 public class ArrayValueImpl extends ArrayValue
         implements Serializable {
@@ -55,6 +61,7 @@ public class ArrayValueImpl extends ArrayValue
    private static final int SORT_LOCALE_STRING = 5;
    // save memory on short arrays
    private static final int MIN_HASH = 4;
+   private static final int MIN_PACKED = 8;
    private Entry[] _entries;
    private int _hashMask;
    private int _size;
@@ -63,6 +70,10 @@ public class ArrayValueImpl extends ArrayValue
    private Entry _head;
    private Entry _tail;
    private ConstArrayValue _constSource;
+   // packed list: _packedValues[0, _size) with no entries
+   private boolean _isPacked = true;
+   private Value[] _packedValues;
+   private int _packedCurrent;
 
    public ArrayValueImpl() {
       /*
@@ -72,6 +83,10 @@ public class ArrayValueImpl extends ArrayValue
    }
 
    public ArrayValueImpl(int size) {
+      if (size > 0) {
+         _packedValues = new Value[size];
+      }
+
       /*
       int capacity = DEFAULT_SIZE;
 
@@ -86,17 +101,13 @@ public class ArrayValueImpl extends ArrayValue
    public ArrayValueImpl(ArrayValue source) {
       // this(copy.getSize());
 
-      for (Entry ptr = source.getHead(); ptr != null; ptr = ptr.getNext()) {
-         // php/0662 for copy
-         Entry entry = createNewEntry(ptr.getKey());
+      Iterator<Map.Entry<Value, Value>> iter = source.getIterator();
+
+      while (iter.hasNext()) {
+         Map.Entry<Value, Value> ptr = iter.next();
 
-         /*
-         if (ptr._var != null)
-         entry._var = ptr._var;
-         else
-         entry._value = ptr._value.copyArrayItem();
-          */
-         entry.setValue(ptr.getValue().copyArrayItem());
+         // php/0662 for copy
+         append(ptr.getKey(), ptr.getValue().copyArrayItem());
       }
    }
 
@@ -111,8 +122,9 @@ public class ArrayValueImpl extends ArrayValue
 
       _isDirty = true;
 
+      // getEntries() first, so a lazy source like $_SERVER is filled
+      _entries = source.getEntries();
       _size = source._size;
-      _entries = source._entries;
       _hashMask = source._hashMask;
 
       _head = source._head;
@@ -120,6 +132,10 @@ public class ArrayValueImpl extends ArrayValue
 
       _tail = source._tail;
       _nextAvailableIndex = source._nextAvailableIndex;
+
+      _isPacked = source._isPacked;
+      _packedValues = source._packedValues;
+      _packedCurrent = source._packedCurrent;
    }
 
    public ArrayValueImpl(ConstArrayValue source) {
@@ -127,6 +143,18 @@ public class ArrayValueImpl extends ArrayValue
 
       _isDirty = true;
 
+      Value[] listValues = source.getListValues();
+
+      if (listValues != null) {
+         // the const array stays hashed, but its list copies can be packed
+         _packedValues = listValues;
+         _size = listValues.length;
+
+         return;
+      }
+
+      _isPacked = false;
+
       _size = source.getSize();
       _entries = source.getEntries();
       _hashMask = source.getHashMask();
@@ -216,6 +244,26 @@ public class ArrayValueImpl extends ArrayValue
       return _nextAvailableIndex;
    }
 
+   /**
+    * Returns true if the array is still a packed list.
+    */
+   protected final boolean isPacked() {
+      return _isPacked;
+   }
+
+   /**
+    * Returns a copy of the raw list values if the array is packed.
+    */
+   protected final Value[] copyPackedValues() {
+      if (!_isPacked) {
+         return null;
+      } else if (_size == 0) {
+         return new Value[0];
+      } else {
+         return Arrays.copyOf(_packedValues, _size);
+      }
+   }
+
    private void copyOnWrite() {
       if (!_isDirty) {
          return;
@@ -225,6 +273,25 @@ public class ArrayValueImpl extends ArrayValue
 
       _isDirty = false;
 
+      if (_isPacked) {
+         Value[] values = _packedValues;
+
+         if (values != null) {
+            Value[] copy = new Value[Math.max(values.length, MIN_PACKED)];
+
+            for (int i = 0; i < _size; i++) {
+               copy[i] = values[i].copyArrayItem();
+            }
+
+            _packedValues = copy;
+         }
+
+         // matches the entry copy, which moves the current to the head
+         _packedCurrent = 0;
+
+         return;
+      }
+
       Entry[] entries = _entries;
 
       if (entries != null) {
@@ -427,6 +494,10 @@ public class ArrayValueImpl extends ArrayValue
       setCurrent(null);
 
       _nextAvailableIndex = 0;
+
+      _isPacked = true;
+      _packedValues = null;
+      _packedCurrent = 0;
    }
 
    /**
@@ -451,6 +522,18 @@ public class ArrayValueImpl extends ArrayValue
          key = createTailKey();
       }
 
+      if (_isPacked) {
+         int index = createPackedIndex(key.toKey());
+
+         if (index >= 0) {
+            setPacked(index, value);
+
+            return this;
+         }
+
+         convertToHash();
+      }
+
       Entry entry = createEntry(key);
 
       // php/0434
@@ -470,6 +553,10 @@ public class ArrayValueImpl extends ArrayValue
          copyOnWrite();
       }
 
+      if (_isPacked) {
+         convertToHash();
+      }
+
       _size++;
 
       Entry[] entries = _entries;
@@ -504,6 +591,10 @@ public class ArrayValueImpl extends ArrayValue
          copyOnWrite();
       }
 
+      if (_isPacked) {
+         convertToHash();
+      }
+
       int index = 0;
 
       ArrayValueImpl result = new ArrayValueImpl();
@@ -595,6 +686,23 @@ public class ArrayValueImpl extends ArrayValue
    public ArrayValue slice(Env env, int start, int end, boolean isPreserveKeys) {
       ArrayValueImpl array = new ArrayValueImpl();
 
+      if (_isPacked) {
+         Value[] values = _packedValues;
+         int max = Math.min(end, _size);
+
+         for (int i = Math.max(start, 0); i < max; i++) {
+            Value value = values[i].toValue();
+
+            if (isPreserveKeys) {
+               array.put(LongValue.create(i), value);
+            } else {
+               array.put(value);
+            }
+         }
+
+         return array;
+      }
+
       int i = 0;
       for (Entry ptr = _head; i < end && ptr != null; ptr = ptr.getNext()) {
          if (start > i++) {
@@ -628,6 +736,22 @@ public class ArrayValueImpl extends ArrayValue
       //if (isTop)
       //return new ArgGetValue(this, index);
 
+      if (_isPacked) {
+         int i = getPackedIndex(index.toKey());
+
+         if (i < 0) {
+            return new ArgGetValue(this, index);
+         }
+
+         Value value = _packedValues[i].toValue();
+
+         if (!isTop && value.isset()) {
+            return value;
+         } else {
+            return toPackedVar(i);
+         }
+      }
+
       Entry entry = getEntry(index);
 
       if (entry != null) {
@@ -673,6 +797,23 @@ public class ArrayValueImpl extends ArrayValue
          copyOnWrite();
       }
 
+      if (_isPacked) {
+         int i = createPackedIndex(index.toKey());
+
+         if (i >= 0) {
+            Value value = _packedValues[i].toValue();
+            Value array = value.toAutoArray();
+
+            if (value != array) {
+               setPacked(i, array);
+            }
+
+            return array;
+         }
+
+         convertToHash();
+      }
+
       Entry entry = createEntry(index);
 
       Value value = entry.toValue();
@@ -735,6 +876,10 @@ public class ArrayValueImpl extends ArrayValue
     */
    @Override
    public Value createTailKey() {
+      if (_isPacked) {
+         return LongValue.create(_size);
+      }
+
       if (_nextAvailableIndex < 0) {
          updateNextAvailableIndex();
       }
@@ -749,6 +894,16 @@ public class ArrayValueImpl extends ArrayValue
    public Value get(Value key) {
       key = key.toKey();
 
+      if (_isPacked) {
+         int i = getPackedIndex(key);
+
+         if (i >= 0) {
+            return _packedValues[i].toValue();
+         } else {
+            return UnsetValue.UNSET;
+         }
+      }
+
       Entry[] entries = _entries;
       Entry entry;
 
@@ -786,6 +941,16 @@ public class ArrayValueImpl extends ArrayValue
    public Value getRaw(Value key) {
       key = key.toKey();
 
+      if (_isPacked) {
+         int i = getPackedIndex(key);
+
+         if (i >= 0) {
+            return _packedValues[i];
+         } else {
+            return UnsetValue.UNSET;
+         }
+      }
+
       Entry[] entries = _entries;
       Entry entry;
 
@@ -823,6 +988,18 @@ public class ArrayValueImpl extends ArrayValue
     */
    @Override
    public Value contains(Value value) {
+      if (_isPacked) {
+         Value[] values = _packedValues;
+
+         for (int i = 0; i < _size; i++) {
+            if (values[i].toValue().eq(value)) {
+               return LongValue.create(i);
+            }
+         }
+
+         return NullValue.NULL;
+      }
+
       for (Entry entry = getHead(); entry != null; entry = entry.getNext()) {
          if (entry.getValue().eq(value)) {
             return entry.getKey();
@@ -841,6 +1018,18 @@ public class ArrayValueImpl extends ArrayValue
     */
    @Override
    public Value containsStrict(Value value) {
+      if (_isPacked) {
+         Value[] values = _packedValues;
+
+         for (int i = 0; i < _size; i++) {
+            if (values[i].toValue().eql(value)) {
+               return LongValue.create(i);
+            }
+         }
+
+         return NullValue.NULL;
+      }
+
       for (Entry entry = getHead(); entry != null; entry = entry.getNext()) {
          if (entry.getValue().eql(value)) {
             return entry.getKey();
@@ -859,6 +1048,16 @@ public class ArrayValueImpl extends ArrayValue
     */
    @Override
    public Value containsKey(Value key) {
+      if (_isPacked) {
+         int i = getPackedIndex(key.toKey());
+
+         if (i >= 0) {
+            return _packedValues[i].toValue();
+         } else {
+            return null;
+         }
+      }
+
       Entry entry = getEntry(key);
 
       if (entry != null) {
@@ -907,6 +1106,24 @@ public class ArrayValueImpl extends ArrayValue
 
       key = key.toKey();
 
+      if (_isPacked) {
+         int i = getPackedIndex(key);
+
+         if (i < 0) {
+            return UnsetValue.UNSET;
+         } else if (i == _size - 1) {
+            Value value = _packedValues[i].toValue();
+
+            _packedValues[i] = null;
+            _size--;
+            _packedCurrent = 0;
+
+            return value;
+         }
+
+         convertToHash();
+      }
+
       Entry[] entries = _entries;
       Entry entry;
 
@@ -982,6 +1199,16 @@ public class ArrayValueImpl extends ArrayValue
          copyOnWrite();
       }
 
+      if (_isPacked) {
+         int i = createPackedIndex(index.toKey());
+
+         if (i >= 0) {
+            return toPackedVar(i);
+         }
+
+         convertToHash();
+      }
+
       Entry entry = createEntry(index);
       // quercus/0431
 
@@ -997,6 +1224,16 @@ public class ArrayValueImpl extends ArrayValue
          copyOnWrite();
       }
 
+      if (_isPacked) {
+         int i = createPackedIndex(index.toKey());
+
+         if (i >= 0) {
+            return toPackedVar(i);
+         }
+
+         convertToHash();
+      }
+
       Entry entry = createEntry(index);
       // quercus/0431
 
@@ -1131,6 +1368,115 @@ public class ArrayValueImpl extends ArrayValue
       return newEntry;
    }
 
+   /**
+    * Returns the packed list index for the key, or -1 if the key isn't
+    * in the list.
+    */
+   private int getPackedIndex(Value key) {
+      if (key instanceof LongValue) {
+         long index = key.toLong();
+
+         if (0 <= index && index < _size) {
+            return (int) index;
+         }
+      }
+
+      return -1;
+   }
+
+   /**
+    * Returns the packed list index for the key, appending a new slot if the
+    * key is the next list index, or -1 if the key doesn't fit in the list.
+    */
+   private int createPackedIndex(Value key) {
+      if (key instanceof LongValue) {
+         long index = key.toLong();
+
+         if (0 <= index && index < _size) {
+            return (int) index;
+         } else if (index == _size) {
+            return appendPacked(NullValue.NULL);
+         }
+      }
+
+      return -1;
+   }
+
+   private int appendPacked(Value value) {
+      Value[] values = _packedValues;
+      int size = _size;
+
+      if (values == null) {
+         values = new Value[MIN_PACKED];
+         _packedValues = values;
+      } else if (values.length <= size) {
+         values = Arrays.copyOf(values, Math.max(2 * size, MIN_PACKED));
+         _packedValues = values;
+      }
+
+      values[size] = value;
+      _size = size + 1;
+
+      return size;
+   }
+
+   /**
+    * Sets a packed slot, matching Entry.set()
+    */
+   private void setPacked(int index, Value value) {
+      Value[] values = _packedValues;
+
+      if (value instanceof Var) {
+         values[index] = value;
+      } else {
+         values[index] = values[index].set(value);
+      }
+   }
+
+   /**
+    * Converts a packed slot to a reference, matching Entry.toVar()
+    */
+   private Var toPackedVar(int index) {
+      Var var = _packedValues[index].toVar();
+      _packedValues[index] = var;
+
+      return var;
+   }
+
+   /**
+    * Converts the packed list to the hashed entries, keeping the order
+    * and the current position.
+    */
+   private void convertToHash() {
+      Value[] values = _packedValues;
+      int size = _size;
+      int current = _packedCurrent;
+
+      _isPacked = false;
+      _packedValues = null;
+      _packedCurrent = 0;
+
+      _size = 0;
+      _nextAvailableIndex = 0;
+
+      Entry currentEntry = null;
+
+      for (int i = 0; i < size; i++) {
+         Entry entry = createNewEntry(LongValue.create(i));
+         entry.setValue(values[i]);
+
+         if (i == current) {
+            currentEntry = entry;
+         }
+      }
+
+      setCurrent(currentEntry);
+   }
+
+   private boolean isPackedCurrent() {
+      return 0 <= _packedCurrent && _packedCurrent < _size;
+   }
+
    private void expand() {
       Entry[] entries = _entries;
 
@@ -1187,6 +1533,14 @@ public class ArrayValueImpl extends ArrayValue
          copyOnWrite();
       }
 
+      if (_isPacked) {
+         if (_size > 0) {
+            return remove(LongValue.create(_size - 1));
+         } else {
+            return NullValue.NULL;
+         }
+      }
+
       if (_tail != null) {
          return remove(_tail.getKey());
       } else {
@@ -1195,15 +1549,223 @@ public class ArrayValueImpl extends ArrayValue
    }
 
    @Override
-   public final Entry getHead() {
+   public Entry getHead() {
+      if (_isPacked) {
+         convertToHash();
+      }
+
       return _head;
    }
 
    @Override
-   protected final Entry getTail() {
+   protected Entry getTail() {
+      if (_isPacked) {
+         convertToHash();
+      }
+
       return _tail;
    }
 
+   /**
+    * Returns the current value.
+    */
+   @Override
+   public Value current() {
+      if (!_isPacked) {
+         return super.current();
+      } else if (isPackedCurrent()) {
+         return _packedValues[_packedCurrent].toValue();
+      } else {
+         return BooleanValue.FALSE;
+      }
+   }
+
+   /**
+    * Returns the current key
+    */
+   @Override
+   public Value key() {
+      if (!_isPacked) {
+         return super.key();
+      } else if (isPackedCurrent()) {
+         return LongValue.create(_packedCurrent);
+      } else {
+         return NullValue.NULL;
+      }
+   }
+
+   /**
+    * Returns true if there are more elements.
+    */
+   @Override
+   public boolean hasCurrent() {
+      if (!_isPacked) {
+         return super.hasCurrent();
+      } else {
+         return isPackedCurrent();
+      }
+   }
+
+   /**
+    * Returns the next value.
+    */
+   @Override
+   public Value next() {
+      if (!_isPacked) {
+         return super.next();
+      }
+
+      if (isPackedCurrent()) {
+         _packedCurrent++;
+
+         if (_size <= _packedCurrent) {
+            _packedCurrent = -1;
+         }
+      }
+
+      return current();
+   }
+
+   /**
+    * Returns the previous value.
+    */
+   @Override
+   public Value prev() {
+      if (!_isPacked) {
+         return super.prev();
+      }
+
+      if (isPackedCurrent()) {
+         _packedCurrent--;
+      }
+
+      return current();
+   }
+
+   /**
+    * The each iterator
+    */
+   @Override
+   public Value each() {
+      if (!_isPacked) {
+         return super.each();
+      } else if (!isPackedCurrent()) {
+         return BooleanValue.FALSE;
+      }
+
+      Value key = LongValue.create(_packedCurrent);
+      Value value = _packedValues[_packedCurrent].toValue();
+
+      ArrayValue result = new ArrayValueImpl();
+
+      result.put(LongValue.ZERO, key);
+      result.put(KEY, key);
+
+      result.put(LongValue.ONE, value);
+      result.put(VALUE, value);
+
+      next();
+
+      return result;
+   }
+
+   /**
+    * Returns the first value.
+    */
+   @Override
+   public Value reset() {
+      if (!_isPacked) {
+         return super.reset();
+      }
+
+      _packedCurrent = 0;
+
+      return current();
+   }
+
+   /**
+    * Returns the last value.
+    */
+   @Override
+   public Value end() {
+      if (!_isPacked) {
+         return super.end();
+      }
+
+      _packedCurrent = _size > 0 ? _size - 1 : 0;
+
+      return current();
+   }
+
+   @Override
+   public Iterator<Map.Entry<Value, Value>> getBaseIterator(Env env) {
+      return getIterator();
+   }
+
+   @Override
+   public Iterator<Map.Entry<Value, Value>> getIterator() {
+      if (_isPacked) {
+         return new PackedEntryIterator();
+      } else {
+         return new EntryIterator(_head);
+      }
+   }
+
+   @Override
+   public Iterator<Value> getKeyIterator(Env env) {
+      if (_isPacked) {
+         return new PackedKeyIterator();
+      } else {
+         return new KeyIterator(_head);
+      }
+   }
+
+   @Override
+   public Iterator<Value> getValueIterator(Env env) {
+      if (_isPacked) {
+         return new PackedValueIterator();
+      } else {
+         return new ValueIterator(_head);
+      }
+   }
+
+   /**
+    * Takes the values of this array and puts them in a java array
+    */
+   @Override
+   public Value[] keysToArray() {
+      if (!_isPacked) {
+         return super.keysToArray();
+      }
+
+      Value[] keys = new Value[_size];
+
+      for (int i = 0; i < keys.length; i++) {
+         keys[i] = LongValue.create(i);
+      }
+
+      return keys;
+   }
+
+   /**
+    * Takes the values of this array and puts them in a java array
+    */
+   @Override
+   public Value[] valuesToArray() {
+      if (!_isPacked) {
+         return super.valuesToArray();
+      }
+
+      Value[] packedValues = _packedValues;
+      Value[] values = new Value[_size];
+
+      for (int i = 0; i < values.length; i++) {
+         values[i] = packedValues[i].toValue();
+      }
+
+      return values;
+   }
+
    /**
     * Shuffles the array
     */
@@ -1213,6 +1775,10 @@ public class ArrayValueImpl extends ArrayValue
          copyOnWrite();
       }
 
+      if (_isPacked) {
+         convertToHash();
+      }
+
       Entry[] values = new Entry[size()];
 
       int length = values.length;
@@ -1278,6 +1844,71 @@ public class ArrayValueImpl extends ArrayValue
       }
    }
 
+   /**
+    * Iterates over the packed list.  Reads the list on each step, so
+    * changes to the array while iterating behave like the linked entries.
+    */
+   abstract class AbstractPackedIterator<T> implements Iterator<T> {
+
+      private int _index;
+
+      @Override
+      public boolean hasNext() {
+         return _index < _size;
+      }
+
+      @Override
+      public T next() {
+         if (_size <= _index) {
+            return null;
+         }
+
+         int index = _index++;
+
+         Value value;
+
+         if (_isPacked) {
+            value = _packedValues[index];
+         } else {
+            value = getRaw(LongValue.create(index));
+         }
+
+         return next(index, value);
+      }
+
+      abstract protected T next(int index, Value rawValue);
+
+      @Override
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   class PackedEntryIterator
+           extends AbstractPackedIterator<Map.Entry<Value, Value>> {
+
+      @Override
+      protected Map.Entry<Value, Value> next(int index, Value rawValue) {
+         return new Entry(LongValue.create(index), rawValue);
+      }
+   }
+
+   class PackedKeyIterator extends AbstractPackedIterator<Value> {
+
+      @Override
+      protected Value next(int index, Value rawValue) {
+         return LongValue.create(index);
+      }
+   }
+
+   class PackedValueIterator extends AbstractPackedIterator<Value> {
+
+      @Override
+      protected Value next(int index, Value rawValue) {
+         return rawValue.toValue();
+      }
+   }
+
    //
    // Java serialization code
    //
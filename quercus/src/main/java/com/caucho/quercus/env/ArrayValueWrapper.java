@@ -56,7 +56,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value copy() {
-      return _array.copy();
+      return getArray().copy();
    }
 
    /**
@@ -64,7 +64,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value copySaveFunArg() {
-      return _array.copySaveFunArg();
+      return getArray().copySaveFunArg();
    }
 
    /**
@@ -72,7 +72,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value copy(Env env, IdentityHashMap<Value, Value> map) {
-      return _array.copy(env, map);
+      return getArray().copy(env, map);
    }
 
    /**
@@ -80,7 +80,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public int getSize() {
-      return _array.getSize();
+      return getArray().getSize();
    }
 
    /**
@@ -88,7 +88,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public void clear() {
-      _array.clear();
+      getArray().clear();
    }
 
    /**
@@ -96,7 +96,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value put(Value key, Value value) {
-      return _array.put(key, value);
+      return getArray().put(key, value);
    }
 
    /**
@@ -104,7 +104,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public ArrayValue append(Value key, Value value) {
-      return _array.append(key, value);
+      return getArray().append(key, value);
    }
 
    /**
@@ -112,7 +112,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value put(Value value) {
-      return _array.put(value);
+      return getArray().put(value);
    }
 
    /**
@@ -120,7 +120,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public ArrayValue unshift(Value value) {
-      return _array.unshift(value);
+      return getArray().unshift(value);
    }
 
    /**
@@ -128,7 +128,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public ArrayValue splice(int start, int end, ArrayValue replace) {
-      return _array.splice(start, end, replace);
+      return getArray().splice(start, end, replace);
    }
 
    /**
@@ -136,7 +136,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value getArg(Value index, boolean isTop) {
-      return _array.getArg(index, isTop);
+      return getArray().getArg(index, isTop);
    }
 
    /**
@@ -144,7 +144,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Var putVar() {
-      return _array.putVar();
+      return getArray().putVar();
    }
 
    /**
@@ -152,7 +152,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value createTailKey() {
-      return _array.createTailKey();
+      return getArray().createTailKey();
    }
 
    /**
@@ -160,7 +160,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value get(Value key) {
-      return _array.get(key);
+      return getArray().get(key);
    }
 
    /**
@@ -168,7 +168,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value remove(Value key) {
-      return _array.remove(key);
+      return getArray().remove(key);
    }
 
    /**
@@ -176,7 +176,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public boolean isset(Value key) {
-      return _array.isset(key);
+      return getArray().isset(key);
    }
 
    /**
@@ -184,7 +184,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Var getVar(Value index) {
-      return _array.getVar(index);
+      return getArray().getVar(index);
    }
 
    /**
@@ -192,7 +192,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value pop(Env env) {
-      return _array.pop(env);
+      return getArray().pop(env);
    }
 
    /**
@@ -200,7 +200,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value shuffle() {
-      return _array.shuffle();
+      return getArray().shuffle();
    }
 
    /**
@@ -208,7 +208,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Entry getHead() {
-      return _array.getHead();
+      return getArray().getHead();
    }
 
    /**
@@ -216,7 +216,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    protected Entry getTail() {
-      return _array.getTail();
+      return getArray().getTail();
    }
 
    /**
@@ -224,7 +224,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value current() {
-      return _array.current();
+      return getArray().current();
    }
 
    /**
@@ -232,7 +232,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value key() {
-      return _array.key();
+      return getArray().key();
    }
 
    /**
@@ -240,7 +240,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public boolean hasCurrent() {
-      return _array.hasCurrent();
+      return getArray().hasCurrent();
    }
 
    /**
@@ -248,7 +248,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value next() {
-      return _array.next();
+      return getArray().next();
    }
 
    /**
@@ -256,7 +256,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value prev() {
-      return _array.prev();
+      return getArray().prev();
    }
 
    /**
@@ -264,7 +264,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value each() {
-      return _array.each();
+      return getArray().each();
    }
 
    /**
@@ -272,7 +272,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value reset() {
-      return _array.reset();
+      return getArray().reset();
    }
 
    /**
@@ -280,7 +280,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value end() {
-      return _array.end();
+      return getArray().end();
    }
 
    /**
@@ -292,7 +292,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value contains(Value key) {
-      return _array.contains(key);
+      return getArray().contains(key);
    }
 
    /**
@@ -304,7 +304,7 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value containsStrict(Value key) {
-      return _array.containsStrict(key);
+      return getArray().containsStrict(key);
    }
 
    /**
@@ -316,26 +316,26 @@ public class ArrayValueWrapper extends ArrayValue {
     */
    @Override
    public Value containsKey(Value key) {
-      return _array.containsKey(key);
+      return getArray().containsKey(key);
    }
 
    @Override
    public Value add(Value rValue) {
-      return _array.add(rValue);
+      return getArray().add(rValue);
    }
 
    @Override
    public Iterator<Map.Entry<Value, Value>> getIterator(Env env) {
-      return _array.getIterator(env);
+      return getArray().getIterator(env);
    }
 
    @Override
    public Iterator<Value> getKeyIterator(Env env) {
-      return _array.getKeyIterator(env);
+      return getArray().getKeyIterator(env);
    }
 
    @Override
    public Iterator<Value> getValueIterator(Env env) {
-      return _array.getValueIterator(env);
+      return getArray().getValueIterator(env);
    }
 }
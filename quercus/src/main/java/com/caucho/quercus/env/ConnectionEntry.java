@@ -28,6 +28,9 @@
  */
 package com.caucho.quercus.env;
 
+import com.caucho.env.meter.ActiveTimeMeter;
+import com.caucho.env.meter.MeterService;
+
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.logging.*;
@@ -37,12 +40,14 @@ import javax.sql.DataSource;
 public class ConnectionEntry implements EnvCleanup {
 
    private static final Logger log = Logger.getLogger(ConnectionEntry.class.getName());
+   private static final ActiveTimeMeter _connMeter = MeterService.createActiveTimeMeter("Quercus|Database|Connection");
    private Env _env;
    private DataSource _ds;
    private String _user;
    private String _password;
    private Connection _conn;
    private boolean _isReuse;
+   private long _connStartTime;
 
    public ConnectionEntry(Env env) {
       _env = env;
@@ -68,6 +73,8 @@ public class ConnectionEntry implements EnvCleanup {
          _conn = _ds.getConnection();
       }
 
+      _connStartTime = _connMeter.start();
+
       _env.addCleanup(this);
    }
 
@@ -145,6 +152,8 @@ public class ConnectionEntry implements EnvCleanup {
       _conn = null;
 
       if (conn != null) {
+         _connMeter.end(_connStartTime);
+
          conn.close();
       }
    }
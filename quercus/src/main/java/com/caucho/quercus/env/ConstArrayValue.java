@@ -38,17 +38,42 @@ public class ConstArrayValue
    private ConstArrayValue _values;
    private Value[] _keysArray;
    private Value[] _valuesArray;
+   private Value[] _listValues;
 
    public ConstArrayValue(ArrayValueImpl source) {
       super.copyFrom(source);
+
+      init();
    }
 
    public ConstArrayValue(ArrayValueComponent[] components) {
       super(components);
+
+      init();
    }
 
    public ConstArrayValue(Value[] keys, Value[] values) {
       super(keys, values);
+
+      init();
+   }
+
+   /**
+    * Const arrays are shared between threads, so they can't switch lazily
+    * from the packed list to the hashed entries.  The list values are
+    * saved for packed copies.
+    */
+   private void init() {
+      _listValues = copyPackedValues();
+
+      getHead();
+   }
+
+   /**
+    * Returns the raw values if the keys are a list, or null.
+    */
+   protected Value[] getListValues() {
+      return _listValues;
    }
 
    /**
@@ -121,6 +121,36 @@ public class CopyObjectExtValue extends ObjectExtValue {
       return super.putThisField(env, name, value);
    }
 
+   /**
+    * Returns the array ref.
+    */
+   @Override
+   public Var getThisFieldVar(Env env, StringValue name, int slot) {
+      _root.setModified();
+
+      return super.getThisFieldVar(env, name, slot);
+   }
+
+   /**
+    * Sets a field.
+    */
+   @Override
+   public Value putField(Env env, StringValue name, Value value, int slot) {
+      _root.setModified();
+
+      return super.putField(env, name, value, slot);
+   }
+
+   /**
+    * Sets a field.
+    */
+   @Override
+   public Value putThisField(Env env, StringValue name, Value value, int slot) {
+      _root.setModified();
+
+      return super.putThisField(env, name, value, slot);
+   }
+
    @Override
    protected Value putFieldExt(Env env, StringValue name, Value value) {
       return null;
@@ -190,7 +190,7 @@ public class Env {
    private Location _location;
    private long _startTime;
    private long _timeLimit = 600000L;
-   private long _endTime;
+   private volatile long _endTime;
    private Expr[] _callStack;
    private Value[] _callThisStack;
    private Value[][] _callArgStack;
@@ -218,6 +218,7 @@ public class Env {
    private ArrayValue _postArray = new ArrayValueImpl();
    private ArrayValue _files = new ArrayValueImpl();
    private StringValue _inputData;
+   private boolean _isPostFilled;
    private SessionArrayValue _session;
    private HttpSession _javaSession;
    private ScriptContext _scriptContext;
@@ -240,7 +241,8 @@ public class Env {
    private QDate _gmtDate;
    private Object _gzStream;
    private Env _oldThreadEnv;
-   private boolean _isTimeout;
+   // set by the QuercusContext's timeout thread, polled by checkTimeout()
+   private volatile boolean _isTimeout;
    private long _firstMicroTime;
    private long _firstNanoTime;
    private RegexpState _freeRegexpState;
@@ -250,6 +252,8 @@ public class Env {
    public static final int[] DEFAULT_QUERY_SEPARATOR_MAP;
    private CharBuffer _cb = new CharBuffer();
    private String[] _authRequest;
+   private String _authUser;
+   private String _authPassword;
 
    public Env(QuercusContext quercus,
            QuercusPage page,
@@ -362,8 +366,10 @@ public class Env {
             if (_authRequest[0].equals("Basic")) {
                // BASIC auth
                String[] _auth64 = Base64.decode(_authRequest[1]).split(":");
-               getGlobalVar("_SERVER").put(new ConstStringValue("PHP_AUTH_USER"), new ConstStringValue(_auth64[0]));
-               getGlobalVar("_SERVER").put(new ConstStringValue("PHP_AUTH_PW"), new ConstStringValue(_auth64[1]));
+
+               // added when $_SERVER is created, so it can stay lazy
+               _authUser = _auth64[0];
+               _authPassword = _auth64[1];
             }
          }
       }
@@ -464,6 +470,45 @@ public class Env {
       }
    }
 
+   /**
+    * Parses the request body on the first use of $_POST, $_FILES,
+    * $_REQUEST or the raw input, so requests which never read it
+    * skip the decoding.  Form bodies are parsed in start().
+    */
+   private void initPost() {
+      if (_isPostFilled) {
+         return;
+      }
+
+      _isPostFilled = true;
+
+      fillPost(_postArray,
+              _files,
+              _request,
+              getIniBoolean("magic_quotes_gpc"));
+   }
+
+   /**
+    * Returns true if the request body is a form the servlet container
+    * also parses for getParameter().
+    */
+   private static boolean isFormBody(HttpServletRequest request) {
+      if (request == null) {
+         return false;
+      }
+
+      String contentType = request.getContentType();
+
+      if (contentType == null) {
+         return false;
+      }
+
+      contentType = contentType.toLowerCase(Locale.ENGLISH);
+
+      return contentType.startsWith("application/x-www-form-urlencoded")
+              || contentType.startsWith("multipart/form-data");
+   }
+
    protected void fillPost(ArrayValue postArray,
            ArrayValue files,
            HttpServletRequest request,
@@ -781,6 +826,8 @@ public class Env {
     * Returns the input (POST, PUT) data.
     */
    public StringValue getInputData() {
+      initPost();
+
       return _inputData;
    }
 
@@ -834,10 +881,11 @@ public class Env {
 
       _threadEnv.set(this);
 
-      fillPost(_postArray,
-              _files,
-              _request,
-              getIniBoolean("magic_quotes_gpc"));
+      // a form body must be read before any request.getParameter() call,
+      // e.g. the session module's, lets the container consume it
+      if (isFormBody(_request)) {
+         initPost();
+      }
 
       // quercus/1b06
       String encoding = getOutputEncoding();
@@ -1029,7 +1077,8 @@ public class Env {
    }
 
    /**
-    * Checks for the program timeout.
+    * Checks for the program timeout.  Called at loop back-edges and
+    * function entries, so it only polls the flag set by updateTimeout().
     */
    public void checkTimeout() {
       /*
@@ -2232,6 +2281,8 @@ public class Env {
 
             envVar.set(post);
 
+            initPost();
+
             if (_variablesOrder.indexOf('P') >= 0
                     && _postArray.getSize() > 0) {
                for (Map.Entry<Value, Value> entry : _postArray.entrySet()) {
@@ -2257,6 +2308,8 @@ public class Env {
 
             ArrayValue files = new ArrayValueImpl();
 
+            initPost();
+
             if (_files != null) {
                for (Map.Entry<Value, Value> entry : _files.entrySet()) {
                   files.put(entry.getKey(), entry.getValue());
@@ -2325,6 +2378,8 @@ public class Env {
                      fillGet(array, isMagicQuotes);
                      break;
                   case 'P':
+                     initPost();
+
                      if (_postArray.getSize() > 0) {
                         fillPost(array, _postArray);
                      }
@@ -2347,6 +2402,8 @@ public class Env {
                }
             }
 
+            initPost();
+
             if (_inputData == null) {
                return null;
             }
@@ -2408,6 +2465,13 @@ public class Env {
                serverEnv = new ArrayValueImpl();
             }
 
+            if (_authUser != null && serverEnv instanceof ServerArrayValue) {
+               ((ServerArrayValue) serverEnv).setBasicAuth(_authUser, _authPassword);
+            } else if (_authUser != null) {
+               serverEnv.put(new ConstStringValue("PHP_AUTH_USER"), new ConstStringValue(_authUser));
+               serverEnv.put(new ConstStringValue("PHP_AUTH_PW"), new ConstStringValue(_authPassword));
+            }
+
             var.set(serverEnv);
 
             return envVar;
@@ -3086,6 +3150,23 @@ public class Env {
       }
    }
 
+   /**
+    * Returns a constant, given the id the caller cached for its name.
+    */
+   public Value getConstant(String name, int id) {
+      Value[] constList = _const;
+
+      if (id < constList.length) {
+         Value value = constList[id];
+
+         if (value != null) {
+            return value;
+         }
+      }
+
+      return getConstant(name, true);
+   }
+
    /**
     * Returns true if the constant is defined.
     */
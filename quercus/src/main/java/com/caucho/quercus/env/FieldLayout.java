@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ */
+package com.caucho.quercus.env;
+
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Slot layout of the declared fields of a class.  Each declared field name
+ * gets a fixed slot, so field expressions can cache the slot for a class
+ * and skip the field-name lookup in the object.  Cached copies of a class
+ * share the layout of the original.
+ */
+public final class FieldLayout {
+
+   private final HashMap<StringValue, Integer> _slotMap;
+
+   FieldLayout(Collection<StringValue> names) {
+      _slotMap = new HashMap<StringValue, Integer>();
+
+      for (StringValue name : names) {
+         if (!_slotMap.containsKey(name)) {
+            _slotMap.put(name, _slotMap.size());
+         }
+      }
+   }
+
+   /**
+    * Returns the number of slots.
+    */
+   public int getSize() {
+      return _slotMap.size();
+   }
+
+   /**
+    * Returns the slot for the field, or -1 for an undeclared field.
+    */
+   public int findSlot(StringValue name) {
+      Integer slot = _slotMap.get(name);
+
+      if (slot != null) {
+         return slot;
+      } else {
+         return -1;
+      }
+   }
+
+   @Override
+   public String toString() {
+      return getClass().getSimpleName() + _slotMap.keySet();
+   }
+}
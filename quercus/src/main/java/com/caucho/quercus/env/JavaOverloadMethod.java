@@ -40,6 +40,9 @@ public class JavaOverloadMethod extends AbstractJavaMethod {
    private static final L10N L = new L10N(JavaOverloadMethod.class);
    private AbstractJavaMethod[][] _methodTable = new AbstractJavaMethod[0][];
    private AbstractJavaMethod[][] _restMethodTable = new AbstractJavaMethod[0][];
+   // overloads already resolved for the argument types of a call
+   private volatile CallEntry[] _callCache = new CallEntry[0];
+   private static final int CALL_CACHE_MAX = 8;
 
    public JavaOverloadMethod(AbstractJavaMethod fun) {
       overload(fun);
@@ -65,6 +68,8 @@ public class JavaOverloadMethod extends AbstractJavaMethod {
     */
    @Override
    public AbstractJavaMethod overload(AbstractJavaMethod fun) {
+      _callCache = new CallEntry[0];
+
       if (fun.getHasRestArgs()) {
          int len = fun.getMinArgLength();
 
@@ -164,7 +169,7 @@ public class JavaOverloadMethod extends AbstractJavaMethod {
             if (methods.length == 1) {
                return methods[0].callMethod(env, qClass, qThis, args);
             } else {
-               AbstractJavaMethod method = getBestFitJavaMethod(methods, _restMethodTable, args);
+               AbstractJavaMethod method = findJavaMethod(methods, args);
 
                return method.callMethod(env, qClass, qThis, args);
             }
@@ -179,7 +184,7 @@ public class JavaOverloadMethod extends AbstractJavaMethod {
                return NullValue.NULL;
             }
 
-            AbstractJavaMethod method = getBestFitJavaMethod(methods, _restMethodTable, args);
+            AbstractJavaMethod method = findJavaMethod(methods, args);
 
             return method.callMethod(env, qClass, qThis, args);
          }
@@ -191,13 +196,45 @@ public class JavaOverloadMethod extends AbstractJavaMethod {
 
             return NullValue.NULL;
          } else {
-            AbstractJavaMethod method = getBestFitJavaMethod(null, _restMethodTable, args);
+            AbstractJavaMethod method = findJavaMethod(null, args);
 
             return method.callMethod(env, qClass, qThis, args);
          }
       }
    }
 
+   /**
+    * Returns the Java function that matches the args passed in, reusing
+    * the resolution of an earlier call with the same argument types.
+    */
+   private AbstractJavaMethod findJavaMethod(AbstractJavaMethod[] methods,
+           Value[] args) {
+      CallEntry[] callCache = _callCache;
+
+      for (int i = 0; i < callCache.length; i++) {
+         if (callCache[i].isMatch(args)) {
+            return callCache[i].getMethod();
+         }
+      }
+
+      AbstractJavaMethod method = getBestFitJavaMethod(methods, _restMethodTable, args);
+
+      if (method != null && callCache.length < CALL_CACHE_MAX) {
+         CallEntry entry = CallEntry.create(args, method);
+
+         if (entry != null) {
+            CallEntry[] newCache = new CallEntry[callCache.length + 1];
+
+            System.arraycopy(callCache, 0, newCache, 0, callCache.length);
+            newCache[callCache.length] = entry;
+
+            _callCache = newCache;
+         }
+      }
+
+      return method;
+   }
+
    /**
     * Returns the Java function that matches the args passed in.
     */
@@ -314,7 +351,7 @@ public class JavaOverloadMethod extends AbstractJavaMethod {
          methods = _methodTable[args.length];
       }
 
-      AbstractJavaMethod bestFitMethod = getBestFitJavaMethod(methods, _restMethodTable, args);
+      AbstractJavaMethod bestFitMethod = findJavaMethod(methods, args);
 
       return bestFitMethod.getMarshalingCost(args);
    }
@@ -357,4 +394,111 @@ public class JavaOverloadMethod extends AbstractJavaMethod {
    public String toString() {
       return "JavaOverloadMethod[" + getName() + "]";
    }
+
+   /**
+    * The argument types of a resolved call.  The marshaling cost depends
+    * on the value's class, on the numeric type and length of a string,
+    * and on the class of a wrapped Java object.
+    */
+   static final class CallEntry {
+
+      private final Class<?>[] _types;
+      private final Object[] _details;
+      private final boolean[] _isChar;
+      private final AbstractJavaMethod _method;
+
+      private CallEntry(Class<?>[] types, Object[] details, boolean[] isChar,
+              AbstractJavaMethod method) {
+         _types = types;
+         _details = details;
+         _isChar = isChar;
+         _method = method;
+      }
+
+      /**
+       * Returns the entry for the args, or null if the args can't be
+       * matched by type.
+       */
+      static CallEntry create(Value[] args, AbstractJavaMethod method) {
+         Class<?>[] types = new Class<?>[args.length];
+         Object[] details = new Object[args.length];
+         boolean[] isChar = new boolean[args.length];
+
+         for (int i = 0; i < args.length; i++) {
+            if (args[i] == null) {
+               continue;
+            }
+
+            Value value = args[i].toValue();
+
+            types[i] = value.getClass();
+
+            if (value instanceof StringValue) {
+               details[i] = value.getValueType();
+               isChar[i] = value.length() == 1;
+            } else if (isJavaWrapper(value)) {
+               Object obj = value.toJavaObject();
+
+               // ClassMarshal compares the object itself
+               if (obj == null || obj instanceof Class) {
+                  return null;
+               }
+
+               details[i] = obj.getClass();
+            }
+         }
+
+         return new CallEntry(types, details, isChar, method);
+      }
+
+      private static boolean isJavaWrapper(Value value) {
+         return (value instanceof JavaValue
+                 || value instanceof JavaAdapter
+                 || value instanceof ObjectExtJavaValue);
+      }
+
+      AbstractJavaMethod getMethod() {
+         return _method;
+      }
+
+      boolean isMatch(Value[] args) {
+         if (args.length != _types.length) {
+            return false;
+         }
+
+         for (int i = 0; i < args.length; i++) {
+            if (args[i] == null) {
+               if (_types[i] != null) {
+                  return false;
+               }
+
+               continue;
+            }
+
+            Value value = args[i].toValue();
+
+            if (value.getClass() != _types[i]) {
+               return false;
+            }
+
+            Object detail = _details[i];
+
+            if (detail == null) {
+            } else if (value instanceof StringValue) {
+               if (value.getValueType() != detail
+                       || (value.length() == 1) != _isChar[i]) {
+                  return false;
+               }
+            } else {
+               Object obj = value.toJavaObject();
+
+               if (obj == null || obj.getClass() != detail) {
+                  return false;
+               }
+            }
+         }
+
+         return true;
+      }
+   }
 }
@@ -37,6 +37,12 @@ import com.caucho.quercus.QuercusRuntimeException;
 /**
  * Represents a 8-bit PHP 5 style binary builder (unicode.semantics = off),
  * used for large data like file reads.
+ *
+ * The string is a list of fixed-size chunks, so appends never copy the
+ * existing data and printing writes the chunks directly.  A builder from
+ * toStringBuilder() shares the chunks of its source: the first builder
+ * takes over appending to the shared tail chunk, and any later writer
+ * copies the chunk list and the partial tail chunk first.
  */
 public class LargeStringBuilderValue
         extends StringValue {
@@ -47,6 +53,8 @@ public class LargeStringBuilderValue
    protected int _length;
    private int _hashCode;
    private String _value;
+   // true if the chunk list is shared with a builder which owns its tail
+   private boolean _isCopy;
 
    public LargeStringBuilderValue() {
       _bufferList = new byte[32][];
@@ -192,9 +200,7 @@ public class LargeStringBuilderValue
     */
    @Override
    public StringValue toStringBuilder() {
-      // TODO: can this just return this, or does it need to return a copy?
-
-      return new LargeStringBuilderValue(_bufferList, _length);
+      return createCopyBuilder();
    }
 
    /**
@@ -418,7 +424,24 @@ public class LargeStringBuilderValue
     */
    @Override
    public StringValue toStringBuilder(Env env) {
-      return new LargeStringBuilderValue(_bufferList, _length);
+      return createCopyBuilder();
+   }
+
+   /**
+    * Returns a builder sharing the chunks.  The first copy owns the tail,
+    * so a chain of .= appends without copying.
+    */
+   private LargeStringBuilderValue createCopyBuilder() {
+      LargeStringBuilderValue sb
+              = new LargeStringBuilderValue(_bufferList, _length);
+
+      if (_isCopy) {
+         sb._isCopy = true;
+      } else {
+         _isCopy = true;
+      }
+
+      return sb;
    }
 
    /**
@@ -520,7 +543,7 @@ public class LargeStringBuilderValue
     */
    @Override
    public final StringValue append(char v) {
-      if (_length % SIZE == 0) {
+      if (_isCopy || _length % SIZE == 0) {
          ensureCapacity(_length + 1);
       }
 
@@ -535,7 +558,7 @@ public class LargeStringBuilderValue
     * Append a Java byte to the value without conversions.
     */
    public final StringValue append(byte v) {
-      if (_length % SIZE == 0) {
+      if (_isCopy || _length % SIZE == 0) {
          ensureCapacity(_length + 1);
       }
 
@@ -591,8 +614,8 @@ public class LargeStringBuilderValue
       try {
          int offset = _length % SIZE;
 
-         if (offset == 0) {
-            ensureCapacity(_length + SIZE);
+         if (_isCopy || offset == 0) {
+            ensureCapacity(_length + 1);
          }
 
          byte[] buffer = _bufferList[_length / SIZE];
@@ -602,7 +625,7 @@ public class LargeStringBuilderValue
             sublen = (int) length;
          }
 
-         sublen = is.read(buffer, 0, sublen);
+         sublen = is.read(buffer, offset, sublen);
 
          if (sublen > 0) {
             _length += sublen;
@@ -727,16 +750,17 @@ public class LargeStringBuilderValue
    }
 
    private void ensureCapacity(int newCapacity) {
-      if (newCapacity > 10000000) {
-         Thread.dumpStack();
-         throw new IllegalStateException();
+      if (_isCopy) {
+         unshare();
       }
 
       int chunk = _length / SIZE;
       int endChunk = newCapacity / SIZE;
 
       if (_bufferList.length <= endChunk) {
-         byte[][] bufferList = new byte[endChunk + 32][];
+         int length = Math.max(endChunk + 32, 2 * _bufferList.length);
+
+         byte[][] bufferList = new byte[length][];
          System.arraycopy(_bufferList, 0, bufferList, 0, _bufferList.length);
          _bufferList = bufferList;
       }
@@ -748,6 +772,28 @@ public class LargeStringBuilderValue
       }
    }
 
+   /**
+    * Copies the chunk list and the partial tail chunk, which another
+    * builder may be appending to.  The full chunks are never written again,
+    * so they stay shared.
+    */
+   private void unshare() {
+      int chunkCount = (_length + SIZE - 1) / SIZE;
+
+      byte[][] bufferList = new byte[Math.max(chunkCount + 32, _bufferList.length)][];
+      System.arraycopy(_bufferList, 0, bufferList, 0, chunkCount);
+
+      if (_length % SIZE != 0) {
+         int tail = chunkCount - 1;
+
+         bufferList[tail] = new byte[SIZE];
+         System.arraycopy(_bufferList[tail], 0, bufferList[tail], 0, _length % SIZE);
+      }
+
+      _bufferList = bufferList;
+      _isCopy = false;
+   }
+
    /**
     * Returns the hash code.
     */
@@ -0,0 +1,638 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ */
+package com.caucho.quercus.env;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import com.caucho.vfs.*;
+import com.caucho.quercus.QuercusRuntimeException;
+
+/**
+ * Represents a read-only 8-bit string (unicode.semantics = off) backed by
+ * a memory-mapped file.  The value can be shared between requests, so
+ * it's never modified; toStringBuilder() returns a heap copy.
+ */
+@SuppressWarnings("serial")
+public class MappedStringValue
+        extends StringValue {
+
+   // substrings shorter than this are copied instead of sliced
+   private static final int SLICE_MIN = 1024;
+   private final ByteBuffer _buffer;
+   private final int _length;
+   private int _hashCode;
+
+   /**
+    * Creates the string from a read-only buffer, usually a
+    * MappedByteBuffer.
+    */
+   public MappedStringValue(ByteBuffer buffer) {
+      _buffer = buffer;
+      _length = buffer.limit();
+   }
+
+   /**
+    * Creates an empty string builder of the same type.
+    */
+   public StringValue createEmptyStringBuilder() {
+      return new StringBuilderValue();
+   }
+
+   /**
+    * Returns the value.
+    */
+   public String getValue() {
+      return toString();
+   }
+
+   /**
+    * Returns the type.
+    */
+   @Override
+   public String getType() {
+      return "string";
+   }
+
+   /**
+    * Returns the ValueType.
+    */
+   @Override
+   public ValueType getValueType() {
+      byte[] prefix = getNumberPrefix();
+
+      return StringBuilderValue.getValueType(prefix, 0, prefix.length);
+   }
+
+   /**
+    * Returns true for a long
+    */
+   @Override
+   public boolean isLongConvertible() {
+      return false;
+   }
+
+   /**
+    * Returns true for a double
+    */
+   @Override
+   public boolean isDouble() {
+      return false;
+   }
+
+   /**
+    * Returns true for a number
+    */
+   @Override
+   public boolean isNumber() {
+      return false;
+   }
+
+   /**
+    * Returns true for a scalar
+    */
+   @Override
+   public boolean isScalar() {
+      return true;
+   }
+
+   /**
+    * Converts to a boolean.
+    */
+   @Override
+   public boolean toBoolean() {
+      if (_length == 0) {
+         return false;
+      } else if (_length == 1 && _buffer.get(0) == '0') {
+         return false;
+      } else {
+         return true;
+      }
+   }
+
+   /**
+    * Converts to a long.
+    */
+   @Override
+   public long toLong() {
+      byte[] prefix = getNumberPrefix();
+
+      return parseLong(prefix, 0, prefix.length);
+   }
+
+   /**
+    * Converts to a double.
+    */
+   @Override
+   public double toDouble() {
+      byte[] prefix = getNumberPrefix();
+
+      return StringBuilderValue.toDouble(prefix, 0, prefix.length);
+   }
+
+   /**
+    * Returns the bytes the number parsers can look at: everything up to
+    * and including the first byte which can't be part of a number.
+    */
+   private byte[] getNumberPrefix() {
+      int length = _length;
+      ByteBuffer buffer = _buffer;
+
+      int i = 0;
+      for (; i < length; i++) {
+         byte ch = buffer.get(i);
+
+         if (!('0' <= ch && ch <= '9'
+                 || 'a' <= ch && ch <= 'z'
+                 || 'A' <= ch && ch <= 'Z'
+                 || ch == '+' || ch == '-' || ch == '.'
+                 || Character.isWhitespace(ch))) {
+            i++;
+            break;
+         }
+      }
+
+      byte[] prefix = new byte[i];
+      getBytes(0, prefix, 0, i);
+
+      return prefix;
+   }
+
+   /**
+    * Convert to an input stream.
+    */
+   @Override
+   public InputStream toInputStream() {
+      return new MappedInputStream();
+   }
+
+   /**
+    * Converts to a string.
+    */
+   @Override
+   public String toString() {
+      char[] buffer = new char[_length];
+
+      ByteBuffer bytes = _buffer;
+      for (int i = _length - 1; i >= 0; i--) {
+         buffer[i] = (char) (bytes.get(i) & 0xff);
+      }
+
+      return new String(buffer, 0, _length);
+   }
+
+   /**
+    * Converts to an object.
+    */
+   @Override
+   public Object toJavaObject() {
+      return toString();
+   }
+
+   /**
+    * Converts to a string builder
+    */
+   @Override
+   public StringValue toStringBuilder() {
+      return new StringBuilderValue(toBytes());
+   }
+
+   /**
+    * Converts to a string builder
+    */
+   @Override
+   public StringValue toStringBuilder(Env env) {
+      return new StringBuilderValue(toBytes());
+   }
+
+   /**
+    * Converts to a BinaryValue.
+    */
+   @Override
+   public StringValue toBinaryValue(Env env) {
+      return this;
+   }
+
+   /**
+    * Converts to a BinaryValue in desired charset.
+    */
+   @Override
+   public StringValue toBinaryValue(String charset) {
+      return this;
+   }
+
+   /**
+    * Converts to a byte array, with no consideration of character encoding.
+    */
+   @Override
+   public byte[] toBytes() {
+      byte[] bytes = new byte[_length];
+
+      getBytes(0, bytes, 0, _length);
+
+      return bytes;
+   }
+
+   /**
+    * Copies bytes from the mapped buffer.  The shared buffer's position
+    * is never changed, so concurrent requests can read it.
+    */
+   private void getBytes(int offset, byte[] buffer, int bufferOffset,
+           int length) {
+      ByteBuffer bytes = _buffer.duplicate();
+
+      bytes.position(offset);
+      bytes.get(buffer, bufferOffset, length);
+   }
+
+   //
+   // Operations
+   //
+   /**
+    * Returns the character at an index
+    */
+   @Override
+   public Value get(Value key) {
+      return charValueAt(key.toLong());
+   }
+
+   /**
+    * Returns the character at an index
+    */
+   @Override
+   public Value charValueAt(long index) {
+      int len = _length;
+
+      if (index < 0 || len <= index) {
+         return UnsetStringValue.UNSET;
+      } else {
+         int data = _buffer.get((int) index);
+
+         return StringBuilderValue.create((char) (data & 0xff));
+      }
+   }
+
+   //
+   // CharSequence
+   //
+   /**
+    * Returns the length of the string.
+    */
+   @Override
+   public int length() {
+      return _length;
+   }
+
+   /**
+    * Returns the character at a particular location
+    */
+   @Override
+   public char charAt(int index) {
+      return (char) (_buffer.get(index) & 0xff);
+   }
+
+   /**
+    * Returns a subsequence.  Large substrings share the mapped buffer.
+    */
+   @Override
+   public CharSequence subSequence(int start, int end) {
+      if (end <= start) {
+         return StringBuilderValue.EMPTY;
+      } else if (end - start < SLICE_MIN) {
+         StringBuilderValue sb = new StringBuilderValue(end - start);
+
+         appendTo(sb, start, end - start);
+
+         return sb;
+      } else {
+         ByteBuffer bytes = _buffer.duplicate();
+
+         bytes.position(start);
+         bytes.limit(end);
+
+         return new MappedStringValue(bytes.slice());
+      }
+   }
+
+   /**
+    * Convert to lower case.
+    */
+   @Override
+   public StringValue toLowerCase() {
+      byte[] bytes = toBytes();
+
+      for (int i = 0; i < bytes.length; i++) {
+         int ch = bytes[i];
+
+         if ('A' <= ch && ch <= 'Z') {
+            bytes[i] = (byte) (ch + 'a' - 'A');
+         }
+      }
+
+      return new StringBuilderValue(bytes);
+   }
+
+   /**
+    * Convert to upper case.
+    */
+   @Override
+   public StringValue toUpperCase() {
+      byte[] bytes = toBytes();
+
+      for (int i = 0; i < bytes.length; i++) {
+         int ch = bytes[i];
+
+         if ('a' <= ch && ch <= 'z') {
+            bytes[i] = (byte) (ch + 'A' - 'a');
+         }
+      }
+
+      return new StringBuilderValue(bytes);
+   }
+
+   //
+   // append code
+   //
+   /**
+    * Creates a string builder of the same type.
+    */
+   @Override
+   public StringValue createStringBuilder() {
+      return new StringBuilderValue();
+   }
+
+   /**
+    * Creates a string builder of the same type.
+    */
+   @Override
+   public StringValue createStringBuilder(int length) {
+      return new StringBuilderValue(length);
+   }
+
+   /**
+    * Append to a string builder.
+    */
+   @Override
+   public StringValue appendTo(StringBuilderValue sb) {
+      return appendTo(sb, 0, _length);
+   }
+
+   /**
+    * Append to a string builder.
+    */
+   @Override
+   public StringValue appendTo(LargeStringBuilderValue sb) {
+      return appendTo(sb, 0, _length);
+   }
+
+   /**
+    * Append to a string builder.
+    */
+   @Override
+   public StringValue appendTo(BinaryBuilderValue sb) {
+      return appendTo(sb, 0, _length);
+   }
+
+   /**
+    * Appends a region of the mapped bytes to a builder.
+    */
+   private StringValue appendTo(StringValue sb, int offset, int length) {
+      TempBuffer tempBuf = TempBuffer.allocate();
+      byte[] buffer = tempBuf.getBuffer();
+
+      while (length > 0) {
+         int sublen = Math.min(length, buffer.length);
+
+         getBytes(offset, buffer, 0, sublen);
+         sb.append(buffer, 0, sublen);
+
+         offset += sublen;
+         length -= sublen;
+      }
+
+      TempBuffer.free(tempBuf);
+
+      return sb;
+   }
+
+   /**
+    * Append to a string builder.
+    */
+   @Override
+   public StringValue appendTo(UnicodeBuilderValue sb) {
+      if (length() == 0) {
+         return sb;
+      }
+
+      Env env = Env.getInstance();
+
+      try {
+         Reader reader = env.getRuntimeEncodingFactory().create(toInputStream());
+
+         if (reader != null) {
+            sb.append(reader);
+
+            reader.close();
+         }
+
+         return sb;
+      } catch (IOException e) {
+         throw new QuercusRuntimeException(e);
+      }
+   }
+
+   //
+   // Java generator code
+   //
+   /**
+    * Prints the value.
+    * @param env
+    */
+   @Override
+   public void print(Env env) {
+      TempBuffer tempBuf = TempBuffer.allocate();
+      byte[] buffer = tempBuf.getBuffer();
+
+      for (int i = 0; i < _length; i += buffer.length) {
+         int sublen = Math.min(_length - i, buffer.length);
+
+         getBytes(i, buffer, 0, sublen);
+         env.write(buffer, 0, sublen);
+      }
+
+      TempBuffer.free(tempBuf);
+   }
+
+   /**
+    * Prints the value.
+    * @param env
+    */
+   @Override
+   public void print(Env env, WriteStream out) {
+      TempBuffer tempBuf = TempBuffer.allocate();
+      byte[] buffer = tempBuf.getBuffer();
+
+      try {
+         for (int i = 0; i < _length; i += buffer.length) {
+            int sublen = Math.min(_length - i, buffer.length);
+
+            getBytes(i, buffer, 0, sublen);
+            out.write(buffer, 0, sublen);
+         }
+      } catch (IOException e) {
+         throw new QuercusRuntimeException(e);
+      } finally {
+         TempBuffer.free(tempBuf);
+      }
+   }
+
+   /**
+    * Serializes the value.
+    */
+   @Override
+   public void serialize(Env env, StringBuilder sb) {
+      sb.append("s:");
+      sb.append(_length);
+      sb.append(":\"");
+      sb.append(toString());
+      sb.append("\";");
+   }
+
+   /**
+    * Returns the hash code.
+    */
+   @Override
+   public int hashCode() {
+      if (_hashCode != 0) {
+         return _hashCode;
+      }
+
+      int hash = 37;
+
+      int length = _length;
+
+      ByteBuffer bytes = _buffer;
+      for (int i = 0; i < length; i++) {
+         hash = 65521 * hash + (bytes.get(i) & 0xff);
+      }
+
+      _hashCode = hash;
+
+      return hash;
+   }
+
+   @Override
+   public String toDebugString() {
+      StringBuilder sb = new StringBuilder();
+
+      int length = length();
+
+      sb.append("string(");
+      sb.append(length);
+      sb.append(") \"");
+
+      int appendLength = length > 256 ? 256 : length;
+
+      for (int i = 0; i < appendLength; i++) {
+         sb.append(charAt(i));
+      }
+
+      if (length > 256) {
+         sb.append(" ...");
+      }
+
+      sb.append('"');
+
+      return sb.toString();
+   }
+
+   @Override
+   public void varDumpImpl(Env env,
+           WriteStream out,
+           int depth,
+           IdentityHashMap<Value, String> valueSet)
+           throws IOException {
+      int length = length();
+
+      out.print("string(");
+      out.print(length);
+      out.print(") \"");
+
+      for (int i = 0; i < length; i++) {
+         out.print(charAt(i));
+      }
+
+      out.print("\"");
+   }
+
+   /**
+    * The mapped buffer isn't serializable, so serialize a heap copy.
+    */
+   private Object writeReplace() {
+      return new StringBuilderValue(toBytes());
+   }
+
+   class MappedInputStream extends InputStream {
+
+      private int _index;
+
+      /**
+       * Reads the next byte.
+       */
+      @Override
+      public int read() {
+         if (_index < _length) {
+            return charAt(_index++);
+         } else {
+            return -1;
+         }
+      }
+
+      /**
+       * Reads into a buffer.
+       */
+      @Override
+      public int read(byte[] buffer, int offset, int length) {
+         int sublen = _length - _index;
+
+         if (length < sublen) {
+            sublen = length;
+         }
+
+         if (sublen <= 0) {
+            return -1;
+         }
+
+         getBytes(_index, buffer, offset, sublen);
+
+         _index += sublen;
+
+         return sublen;
+      }
+   }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+package com.caucho.quercus.env;
+
+import com.caucho.util.LruCache;
+
+/**
+ * Caches String.intern() for the function and class names created by
+ * the parser, since the native intern is slow for the repeated names.
+ * The cache is bounded, so names from unloaded scripts can be collected.
+ */
+public final class NameIntern {
+
+   private static final LruCache<String, String> _internMap = new LruCache<String, String>(8 * 1024);
+
+   public static String intern(String name) {
+      String internName = _internMap.get(name);
+
+      if (internName == null) {
+         internName = name.intern();
+
+         _internMap.put(internName, internName);
+      }
+
+      return internName;
+   }
+}
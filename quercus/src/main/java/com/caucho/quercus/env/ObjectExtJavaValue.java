@@ -90,6 +90,15 @@ public class ObjectExtJavaValue extends ObjectExtValue
       }
    }
 
+   /**
+    * Java fields and getters may shadow the declared fields, so field
+    * expressions always look up by name.
+    */
+   @Override
+   public FieldLayout getFieldLayout() {
+      return null;
+   }
+
    /**
     * Sets fields not specified by the value.
     */
@@ -53,7 +53,11 @@ public class ObjectExtValue extends ObjectValue
 
    private static final int DEFAULT_SIZE = 16;
    private static final int DEFAULT_PRIME = Primes.getBiggestPrime(DEFAULT_SIZE);
+   private static final Entry[] NULL_ENTRIES = new Entry[0];
    private MethodMap<AbstractFunction> _methodMap;
+   // declared fields, by their slot in getFieldLayout()
+   private Entry[] _slots;
+   // other fields, allocated on the first one
    private Entry[] _entries;
    private int _prime;
    private int _size;
@@ -64,7 +68,6 @@ public class ObjectExtValue extends ObjectValue
 
       _methodMap = cl.getMethodMap();
 
-      _entries = new Entry[DEFAULT_SIZE];
       _prime = DEFAULT_PRIME;
    }
 
@@ -78,12 +81,30 @@ public class ObjectExtValue extends ObjectValue
       _size = copy._size;
       _isFieldInit = copy._isFieldInit;
 
+      Entry[] copySlots = copy._slots;
+
+      if (copySlots != null) {
+         _slots = new Entry[copySlots.length];
+
+         for (int i = 0; i < copySlots.length; i++) {
+            Entry entry = copySlots[i];
+
+            if (entry != null) {
+               _slots[i] = entry.copyTree(env, root);
+            }
+         }
+      }
+
       Entry[] copyEntries = copy._entries;
 
-      _entries = new Entry[copyEntries.length];
       _prime = copy._prime;
 
-      int len = copyEntries.length;
+      int len = copyEntries != null ? copyEntries.length : 0;
+
+      if (len > 0) {
+         _entries = new Entry[len];
+      }
+
       for (int i = 0; i < len; i++) {
          Entry entry = copyEntries[i];
 
@@ -112,12 +133,30 @@ public class ObjectExtValue extends ObjectValue
       _size = copy._size;
       _isFieldInit = copy._isFieldInit;
 
+      Entry[] copySlots = copy._slots;
+
+      if (copySlots != null) {
+         _slots = new Entry[copySlots.length];
+
+         for (int i = 0; i < copySlots.length; i++) {
+            Entry entry = copySlots[i];
+
+            if (entry != null) {
+               _slots[i] = new Entry(env, copyMap, entry);
+            }
+         }
+      }
+
       Entry[] copyEntries = copy._entries;
 
-      _entries = new Entry[copyEntries.length];
       _prime = copy._prime;
 
-      int len = copyEntries.length;
+      int len = copyEntries != null ? copyEntries.length : 0;
+
+      if (len > 0) {
+         _entries = new Entry[len];
+      }
+
       for (int i = 0; i < len; i++) {
          Entry entry = copyEntries[i];
 
@@ -137,16 +176,33 @@ public class ObjectExtValue extends ObjectValue
    }
 
    private void init() {
-      _entries = new Entry[DEFAULT_SIZE];
+      _slots = null;
+      _entries = null;
       _prime = DEFAULT_PRIME;
       _size = 0;
    }
 
    @Override
    protected void setQuercusClass(QuercusClass cl) {
+      Entry[] slots = _slots;
+      FieldLayout layout = slots != null ? getFieldLayout() : null;
+
       super.setQuercusClass(cl);
 
       _methodMap = cl.getMethodMap();
+
+      if (slots != null && getFieldLayout() != layout) {
+         // the slots are numbered by the old layout
+         EntryIterator iter = new EntryIterator(slots, _entries);
+
+         _slots = null;
+         _entries = null;
+         _size = 0;
+
+         while (iter.hasNext()) {
+            addEntry(iter.next());
+         }
+      }
    }
 
    /*
@@ -157,16 +213,15 @@ public class ObjectExtValue extends ObjectValue
       setQuercusClass(cls);
       _incompleteObjectName = null;
 
-      Entry[] existingEntries = _entries;
+      EntryIterator iter = new EntryIterator(_slots, _entries);
 
-      _entries = new Entry[DEFAULT_SIZE];
+      _slots = null;
+      _entries = null;
       _prime = DEFAULT_PRIME;
       _size = 0;
 
       cls.initObject(env, this);
 
-      EntryIterator iter = new EntryIterator(existingEntries);
-
       while (iter.hasNext()) {
          Entry newField = iter.next();
 
@@ -195,16 +250,11 @@ public class ObjectExtValue extends ObjectValue
    public final Value getField(Env env, StringValue name) {
       Value returnValue = getFieldExt(env, name);
       if (returnValue == UnsetValue.UNSET) {
+         Entry entry = getThisEntry(name);
 
-         int hash = (name.hashCode() & 0x7fffffff) % _prime;
-
-         for (Entry entry = _entries[hash]; entry != null; entry = entry._next) {
-            StringValue entryKey = entry._key;
-
-            if (name == entryKey || name.equals(entryKey)) {
-               // php/09ks vs php/091m
-               returnValue = entry._value.toValue();
-            }
+         if (entry != null) {
+            // php/09ks vs php/091m
+            returnValue = entry._value.toValue();
          }
       }
       return returnValue;
@@ -524,6 +574,130 @@ public class ObjectExtValue extends ObjectValue
       return null;
    }
 
+   //
+   // declared field slots
+   //
+
+   /**
+    * Returns the slot layout of the declared fields, or null if the
+    * field expressions must use the field name.
+    */
+   public FieldLayout getFieldLayout() {
+      return _quercusClass.getFieldLayout();
+   }
+
+   /**
+    * Gets a field value, where slot is the field's slot in the
+    * getFieldLayout() of this object.
+    */
+   public final Value getField(Env env, StringValue name, int slot) {
+      Entry entry = getSlotEntry(slot);
+
+      if (entry != null && entry._visibility == FieldVisibility.PUBLIC) {
+         Value value = entry._value;
+
+         if (value != NullValue.NULL && value != UnsetValue.UNSET) {
+            return value;
+         }
+      }
+
+      return getField(env, name);
+   }
+
+   /**
+    * Gets a field value, where slot is the field's slot in the
+    * getFieldLayout() of this object.
+    */
+   public Value getThisField(Env env, StringValue name, int slot) {
+      Entry entry = getSlotEntry(slot);
+
+      if (entry != null) {
+         return entry._value.toValue();
+      }
+
+      return getThisField(env, name);
+   }
+
+   /**
+    * Returns the array ref, where slot is the field's slot in the
+    * getFieldLayout() of this object.
+    */
+   public Var getThisFieldVar(Env env, StringValue name, int slot) {
+      Entry entry = getSlotEntry(slot);
+
+      if (entry != null) {
+         Value value = entry._value;
+
+         if (value instanceof Var) {
+            return (Var) value;
+         }
+
+         Var var = new Var(value);
+         entry._value = var;
+
+         return var;
+      }
+
+      return getThisFieldVar(env, name);
+   }
+
+   /**
+    * Sets a field, where slot is the field's slot in the getFieldLayout()
+    * of this object.
+    */
+   public Value putField(Env env, StringValue name, Value value, int slot) {
+      Entry entry = getSlotEntry(slot);
+
+      if (entry != null && entry._visibility == FieldVisibility.PUBLIC) {
+         setEntryValue(entry, value);
+
+         return value;
+      }
+
+      return putField(env, name, value);
+   }
+
+   /**
+    * Sets a field, where slot is the field's slot in the getFieldLayout()
+    * of this object.
+    */
+   public Value putThisField(Env env, StringValue name, Value value, int slot) {
+      Entry entry = getSlotEntry(slot);
+
+      if (entry != null) {
+         setEntryValue(entry, value);
+
+         return value;
+      }
+
+      return putThisField(env, name, value);
+   }
+
+   /**
+    * Returns the entry for a declared field, or null if it is unset.
+    */
+   private Entry getSlotEntry(int slot) {
+      Entry[] slots = _slots;
+
+      if (slots != null) {
+         return slots[slot];
+      } else {
+         return null;
+      }
+   }
+
+   private static void setEntryValue(Entry entry, Value value) {
+      Value oldValue = entry._value;
+
+      if (value instanceof Var) {
+         entry._value = value;
+      } else if (oldValue instanceof Var) {
+         oldValue.set(value);
+      } else {
+         entry._value = value;
+      }
+   }
+
    @Override
    public void setFieldInit(boolean isInit) {
       _isFieldInit = isInit;
@@ -558,6 +732,21 @@ public class ObjectExtValue extends ObjectValue
       Value returnValue = _quercusClass.unsetField(Env.getCurrent(), this, name);
       if (returnValue == UnsetValue.UNSET || returnValue == NullValue.NULL) {
          // __unset didn't work, lets look in the class itself
+         int slot = findSlot(name);
+
+         if (slot >= 0) {
+            if (_slots != null && _slots[slot] != null) {
+               _slots[slot] = null;
+               _size--;
+            }
+
+            return;
+         }
+
+         if (_entries == null) {
+            return;
+         }
+
          int hash = (name.hashCode() & 0x7fffffff) % _prime;
 
          for (Entry entry = _entries[hash];
@@ -623,35 +812,30 @@ public class ObjectExtValue extends ObjectValue
     * Gets a new value.
     */
    private Entry getEntry(Env env, StringValue name) {
-      int hash = (name.hashCode() & 0x7fffffff) % _prime;
-
-      for (Entry entry = _entries[hash]; entry != null; entry = entry._next) {
-         StringValue entryKey = entry._key;
-
-         if (name == entryKey || name.equals(entryKey)) {
-
-            if (entry._visibility == FieldVisibility.PRIVATE) {
-               QuercusClass cls = env.getCallingClass();
-
-               // TODO: this really only checks access from outside of class scope
-               // php/091m
-               if (cls != _quercusClass) {
-                  env.notice(L.l("Can't access private field '{0}::${1}'",
-                          _quercusClass.getName(), name));
-                  return null;
-               }
-            } else if (entry._visibility == FieldVisibility.PROTECTED) {
-               QuercusClass cls = env.getCallingClass();
+      Entry entry = getThisEntry(name);
 
-               if (cls == null || (cls != _quercusClass && !cls.isA(_quercusClass.getName()))) {
-                  env.notice(L.l("Can't access protected field '{0}::${1}'",
-                          _quercusClass.getName(), name));
-                  return null;
-               }
+      if (entry != null) {
+         if (entry._visibility == FieldVisibility.PRIVATE) {
+            QuercusClass cls = env.getCallingClass();
+
+            // TODO: this really only checks access from outside of class scope
+            // php/091m
+            if (cls != _quercusClass) {
+               env.notice(L.l("Can't access private field '{0}::${1}'",
+                       _quercusClass.getName(), name));
+               return null;
             }
+         } else if (entry._visibility == FieldVisibility.PROTECTED) {
+            QuercusClass cls = env.getCallingClass();
 
-            return entry;
+            if (cls == null || (cls != _quercusClass && !cls.isA(_quercusClass.getName()))) {
+               env.notice(L.l("Can't access protected field '{0}::${1}'",
+                       _quercusClass.getName(), name));
+               return null;
+            }
          }
+
+         return entry;
       }
 
       return null;
@@ -661,9 +845,21 @@ public class ObjectExtValue extends ObjectValue
     * Gets a new value.
     */
    private Entry getThisEntry(StringValue name) {
+      int slot = findSlot(name);
+
+      if (slot >= 0) {
+         return getSlotEntry(slot);
+      }
+
+      Entry[] entries = _entries;
+
+      if (entries == null) {
+         return null;
+      }
+
       int hash = (name.hashCode() & 0x7fffffff) % _prime;
 
-      for (Entry entry = _entries[hash]; entry != null; entry = entry._next) {
+      for (Entry entry = entries[hash]; entry != null; entry = entry._next) {
          StringValue entryKey = entry._key;
 
          if (name == entryKey || name.equals(entryKey)) {
@@ -678,31 +874,69 @@ public class ObjectExtValue extends ObjectValue
     * Creates the entry for a key.
     */
    private Entry createEntry(StringValue name, FieldVisibility visibility) {
-      int hash = (name.hashCode() & 0x7fffffff) % _prime;
+      Entry entry = getThisEntry(name);
 
-      for (Entry entry = _entries[hash];
-              entry != null;
-              entry = entry._next) {
-         if (name.equals(entry._key)) {
-            return entry;
-         }
+      if (entry != null) {
+         return entry;
       }
 
+      entry = new Entry(name, visibility);
+
+      addEntry(entry);
+
+      return entry;
+   }
+
+   /**
+    * Adds a new entry, in its slot for a declared field.
+    */
+   private void addEntry(Entry entry) {
       _size++;
 
-      Entry newEntry = new Entry(name, visibility);
+      entry._prev = null;
+      entry._next = null;
+
+      int slot = findSlot(entry._key);
+
+      if (slot >= 0) {
+         if (_slots == null) {
+            _slots = new Entry[getFieldLayout().getSize()];
+         }
+
+         _slots[slot] = entry;
+
+         return;
+      }
+
+      if (_entries == null) {
+         _entries = new Entry[DEFAULT_SIZE];
+      }
+
+      int hash = (entry._key.hashCode() & 0x7fffffff) % _prime;
+
       Entry next = _entries[hash];
 
       if (next != null) {
-         newEntry._next = next;
-         next._prev = newEntry;
+         entry._next = next;
+         next._prev = entry;
       }
 
-      _entries[hash] = newEntry;
+      _entries[hash] = entry;
 
       // TODO: possibly resize
+   }
+
+   /**
+    * Returns the slot of a declared field, or -1.
+    */
+   private int findSlot(StringValue name) {
+      FieldLayout layout = getFieldLayout();
 
-      return newEntry;
+      if (layout != null) {
+         return layout.findSlot(name);
+      } else {
+         return -1;
+      }
    }
 
    //
@@ -727,7 +961,7 @@ public class ObjectExtValue extends ObjectValue
     */
    @Override
    public Iterator<Map.Entry<Value, Value>> getBaseIterator(Env env) {
-      return new KeyValueIterator(_entries);
+      return new KeyValueIterator(_slots, _entries);
    }
 
    /**
@@ -741,7 +975,7 @@ public class ObjectExtValue extends ObjectValue
          return delegate.getKeyIterator(env, this);
       }
 
-      return new KeyIterator(_entries);
+      return new KeyIterator(_slots, _entries);
    }
 
    /**
@@ -755,7 +989,7 @@ public class ObjectExtValue extends ObjectValue
          return delegate.getValueIterator(env, this);
       }
 
-      return new ValueIterator(_entries);
+      return new ValueIterator(_slots, _entries);
    }
 
    //
@@ -1001,7 +1235,7 @@ public class ObjectExtValue extends ObjectValue
    public Value clone(Env env) {
       ObjectExtValue newObject = new ObjectExtValue(_quercusClass);
 
-      Iterator<Entry> iter = new EntryIterator(_entries);
+      Iterator<Entry> iter = new EntryIterator(_slots, _entries);
 
       while (iter.hasNext()) {
          Entry entry = iter.next();
@@ -1047,7 +1281,7 @@ public class ObjectExtValue extends ObjectValue
       sb.append(getSize());
       sb.append(":{");
 
-      Iterator<Entry> iter = new EntryIterator(_entries);
+      Iterator<Entry> iter = new EntryIterator(_slots, _entries);
 
       while (iter.hasNext()) {
          Entry entry = iter.next();
@@ -1306,7 +1540,7 @@ public class ObjectExtValue extends ObjectValue
 
       int length = 0;
 
-      Iterator<Entry> iter = new EntryIterator(_entries);
+      Iterator<Entry> iter = new EntryIterator(_slots, _entries);
 
       while (iter.hasNext()) {
          Entry entry = iter.next();
@@ -1376,15 +1610,11 @@ public class ObjectExtValue extends ObjectValue
       Value returnValue = _quercusClass.issetField(Env.getCurrent(), this, name);
       if (returnValue == UnsetValue.UNSET) {
          // setter didn't work, lets look in the class itself
-         int hash = (name.hashCode() & 0x7fffffff) % _prime;
-
-         for (Entry entry = _entries[hash]; entry != null; entry = entry._next) {
-            StringValue entryKey = entry._key;
+         Entry entry = getThisEntry(name);
 
-            if ((name == entryKey || name.equals(entryKey)) && entry._value != NullValue.NULL) {
-               // php/09ks vs php/091m
-               return true;
-            }
+         if (entry != null && entry._value != NullValue.NULL) {
+            // php/09ks vs php/091m
+            return true;
          }
       }
 
@@ -1425,19 +1655,24 @@ public class ObjectExtValue extends ObjectValue
 
       @Override
       public Iterator<Map.Entry<Value, Value>> iterator() {
-         return new KeyValueIterator(ObjectExtValue.this._entries);
+         return new KeyValueIterator(ObjectExtValue.this._slots,
+                 ObjectExtValue.this._entries);
       }
    }
 
    public static class EntryIterator
            implements Iterator<Entry> {
 
+      private final Entry[] _slots;
       private final Entry[] _list;
+      private final int _length;
       private int _index;
       private Entry _entry;
 
-      EntryIterator(Entry[] list) {
+      EntryIterator(Entry[] slots, Entry[] list) {
+         _slots = slots != null ? slots : NULL_ENTRIES;
          _list = list;
+         _length = _slots.length + (list != null ? list.length : 0);
       }
 
       @Override
@@ -1446,10 +1681,10 @@ public class ObjectExtValue extends ObjectValue
             return true;
          }
 
-         for (; _index < _list.length && _list[_index] == null; _index++) {
+         for (; _index < _length && getHead(_index) == null; _index++) {
          }
 
-         return _index < _list.length;
+         return _index < _length;
       }
 
       @Override
@@ -1461,19 +1696,30 @@ public class ObjectExtValue extends ObjectValue
             return entry;
          }
 
-         for (; _index < _list.length && _list[_index] == null; _index++) {
+         for (; _index < _length && getHead(_index) == null; _index++) {
          }
 
-         if (_list.length <= _index) {
+         if (_length <= _index) {
             return null;
          }
 
-         Entry entry = _list[_index++];
+         Entry entry = getHead(_index++);
          _entry = entry._next;
 
          return entry;
       }
 
+      /**
+       * Returns the slot entry or the hash chain at the index.
+       */
+      private Entry getHead(int index) {
+         if (index < _slots.length) {
+            return _slots[index];
+         } else {
+            return _list[index - _slots.length];
+         }
+      }
+
       @Override
       public void remove() {
          throw new UnsupportedOperationException();
@@ -1483,46 +1729,20 @@ public class ObjectExtValue extends ObjectValue
    public static class KeyValueIterator
            implements Iterator<Map.Entry<Value, Value>> {
 
-      private final Entry[] _list;
-      private int _index;
-      private Entry _entry;
+      private final EntryIterator _iter;
 
-      KeyValueIterator(Entry[] list) {
-         _list = list;
+      KeyValueIterator(Entry[] slots, Entry[] list) {
+         _iter = new EntryIterator(slots, list);
       }
 
       @Override
       public boolean hasNext() {
-         if (_entry != null) {
-            return true;
-         }
-
-         for (; _index < _list.length && _list[_index] == null; _index++) {
-         }
-
-         return _index < _list.length;
+         return _iter.hasNext();
       }
 
       @Override
       public Map.Entry<Value, Value> next() {
-         if (_entry != null) {
-            Entry entry = _entry;
-            _entry = entry._next;
-
-            return entry;
-         }
-
-         for (; _index < _list.length && _list[_index] == null; _index++) {
-         }
-
-         if (_list.length <= _index) {
-            return null;
-         }
-
-         Entry entry = _list[_index++];
-         _entry = entry._next;
-
-         return entry;
+         return _iter.next();
       }
 
       @Override
@@ -1534,46 +1754,22 @@ public class ObjectExtValue extends ObjectValue
    public static class ValueIterator
            implements Iterator<Value> {
 
-      private final Entry[] _list;
-      private int _index;
-      private Entry _entry;
+      private final EntryIterator _iter;
 
-      ValueIterator(Entry[] list) {
-         _list = list;
+      ValueIterator(Entry[] slots, Entry[] list) {
+         _iter = new EntryIterator(slots, list);
       }
 
       @Override
       public boolean hasNext() {
-         if (_entry != null) {
-            return true;
-         }
-
-         for (; _index < _list.length && _list[_index] == null; _index++) {
-         }
-
-         return _index < _list.length;
+         return _iter.hasNext();
       }
 
       @Override
       public Value next() {
-         if (_entry != null) {
-            Entry entry = _entry;
-            _entry = entry._next;
+         Entry entry = _iter.next();
 
-            return entry._value;
-         }
-
-         for (; _index < _list.length && _list[_index] == null; _index++) {
-         }
-
-         if (_list.length <= _index) {
-            return null;
-         }
-
-         Entry entry = _list[_index++];
-         _entry = entry._next;
-
-         return entry._value;
+         return entry != null ? entry._value : null;
       }
 
       @Override
@@ -1585,46 +1781,22 @@ public class ObjectExtValue extends ObjectValue
    public static class KeyIterator
            implements Iterator<Value> {
 
-      private final Entry[] _list;
-      private int _index;
-      private Entry _entry;
+      private final EntryIterator _iter;
 
-      KeyIterator(Entry[] list) {
-         _list = list;
+      KeyIterator(Entry[] slots, Entry[] list) {
+         _iter = new EntryIterator(slots, list);
       }
 
       @Override
       public boolean hasNext() {
-         if (_entry != null) {
-            return true;
-         }
-
-         for (; _index < _list.length && _list[_index] == null; _index++) {
-         }
-
-         return _index < _list.length;
+         return _iter.hasNext();
       }
 
       @Override
       public Value next() {
-         if (_entry != null) {
-            Entry entry = _entry;
-            _entry = entry._next;
-
-            return entry._key;
-         }
-
-         for (; _index < _list.length && _list[_index] == null; _index++) {
-         }
-
-         if (_list.length <= _index) {
-            return null;
-         }
-
-         Entry entry = _list[_index++];
-         _entry = entry._next;
+         Entry entry = _iter.next();
 
-         return entry._key;
+         return entry != null ? entry._key : null;
       }
 
       @Override
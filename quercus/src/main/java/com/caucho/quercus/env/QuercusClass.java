@@ -80,6 +80,7 @@ public class QuercusClass extends NullValue {
    private final HashMap<String, Expr> _constMap;
    private final HashMap<String, Object> _constJavaMap;
    private final LinkedHashMap<StringValue, ClassField> _fieldMap;
+   private final FieldLayout _fieldLayout;
    private final HashMap<String, ArrayList<StaticField>> _staticFieldExprMap;
    private final HashMap<StringValue, StringValue> _staticFieldNameMap;
    private final HashSet<String> _instanceofSet;
@@ -193,6 +194,8 @@ public class QuercusClass extends NullValue {
       if (_destructor == null && parent != null) {
          _destructor = parent.getDestructor();
       }
+
+      _fieldLayout = new FieldLayout(_fieldMap.keySet());
    }
 
    private void addInstances(HashSet<String> instanceofSet,
@@ -263,6 +266,7 @@ public class QuercusClass extends NullValue {
       _initializers = cacheClass._initializers;
 
       _fieldMap = cacheClass._fieldMap;
+      _fieldLayout = cacheClass._fieldLayout;
       _methodMap = cacheClass._methodMap;
       _constMap = cacheClass._constMap;
       _constJavaMap = cacheClass._constJavaMap;
@@ -545,6 +549,13 @@ public class QuercusClass extends NullValue {
       return _fieldMap.get(name);
    }
 
+   /**
+    * Returns the slot layout of the declared fields.
+    */
+   public final FieldLayout getFieldLayout() {
+      return _fieldLayout;
+   }
+
    /**
     * Returns a set of the fields and their initial values
     */
@@ -30,20 +30,20 @@ package com.caucho.quercus.env;
 
 import com.caucho.quercus.QuercusRequestAdapter;
 import com.caucho.util.Base64;
-import com.caucho.vfs.WriteStream;
 
 import javax.servlet.http.HttpServletRequest;
 
-import java.io.IOException;
 import java.util.Enumeration;
-import java.util.IdentityHashMap;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Represents the server
+ *
+ * The map is only filled when the array is iterated, copied or modified.
+ * Reading a single key, e.g. $_SERVER['HTTP_HOST'], looks the entry up
+ * directly from the request until MAX_LAZY_GET lookups have been made.
  */
-public class ServerArrayValue extends ArrayValueImpl {
+public class ServerArrayValue extends ArrayValueWrapper {
 
    private static final StringValue SERVER_ADDR_V = new ConstStringValue("SERVER_ADDR");
    private static final StringValue SERVER_ADDR_VU = new UnicodeBuilderValue("SERVER_ADDR");
@@ -99,10 +99,16 @@ public class ServerArrayValue extends ArrayValueImpl {
    private static final StringValue CONTENT_LENGTH_VU = new UnicodeBuilderValue("CONTENT_LENGTH");
    private static final StringValue CONTENT_TYPE_V = new ConstStringValue("CONTENT_TYPE");
    private static final StringValue CONTENT_TYPE_VU = new UnicodeBuilderValue("CONTENT_TYPE");
+   private static final int MAX_LAZY_GET = 16;
    private final Env _env;
    private boolean _isFilled;
+   private int _lazyGetCount;
+   private String _authUser;
+   private String _authPassword;
 
    public ServerArrayValue(Env env) {
+      super(new ArrayValueImpl());
+
       _env = env;
    }
 
@@ -115,145 +121,232 @@ public class ServerArrayValue extends ArrayValueImpl {
    }
 
    /**
-    * Adds a new value.
+    * Returns the filled array.  All the ArrayValueWrapper methods go
+    * through here, so this is the single point where the map is filled.
     */
    @Override
-   public ArrayValue append(Value key, Value value) {
+   public ArrayValue getArray() {
       if (!_isFilled) {
          fillMap();
       }
 
-      return super.append(key, value);
+      return super.getArray();
    }
 
    /**
-    * Adds a new value.
+    * Gets a new value.
     */
    @Override
-   public Value put(Value value) {
+   public Value get(Value key) {
       if (!_isFilled) {
-         fillMap();
+         Value value = getLazy(key);
+
+         if (value != null) {
+            return value;
+         }
       }
 
-      return super.put(value);
+      return super.get(key);
    }
 
    /**
-    * Gets a new value.
+    * Returns true if the value is isset().
     */
    @Override
-   public Value get(Value key) {
-      if (!_isFilled) {
-         fillMap();
-      }
-
-      return super.get(key);
+   public boolean isset(Value key) {
+      return get(key).isset();
    }
 
    /**
-    * Gets a new value.
+    * Convenience for lib.
     */
    @Override
-   public Value getArg(Value key, boolean isTop) {
-      if (!_isFilled) {
-         fillMap();
-      }
-
-      return super.getArg(key, isTop);
+   public void put(String key, String value) {
+      put(_env.createString(key), _env.createString(value));
    }
 
    /**
-    * Returns the array ref.
+    * Clears the array without filling it first.
     */
    @Override
-   public Var getVar(Value key) {
-      if (!_isFilled) {
-         fillMap();
-      }
+   public void clear() {
+      _isFilled = true;
 
-      return super.getVar(key);
+      super.getArray().clear();
    }
 
    /**
-    * Copy for assignment.
+    * Sets the basic authentication user and password decoded by the Env.
     */
-   @Override
-   public Value copy() {
-      if (!_isFilled) {
-         fillMap();
+   public void setBasicAuth(String user, String password) {
+      if (_isFilled) {
+         putBasicAuth(getArray(), user, password);
+      } else {
+         _authUser = user;
+         _authPassword = password;
       }
+   }
 
-      return super.copy();
+   private static void putBasicAuth(ArrayValue array,
+                                    String user, String password) {
+      array.put(new ConstStringValue("PHP_AUTH_USER"), new ConstStringValue(user));
+      array.put(new ConstStringValue("PHP_AUTH_PW"), new ConstStringValue(password));
    }
 
    /**
-    * Copy for saving a function arguments.
+    * Returns a single entry without filling the map, UNSET if the entry
+    * does not exist, or null if the filled map is needed.
     */
-   @Override
-   public Value copySaveFunArg() {
-      if (!_isFilled) {
-         fillMap();
+   private Value getLazy(Value key) {
+      if (MAX_LAZY_GET <= _lazyGetCount++) {
+         return null;
+      }
+
+      key = key.toKey();
+
+      if (!(key instanceof StringValue)) {
+         return null;
       }
 
-      return super.copySaveFunArg();
+      String name = key.toString();
+
+      if (_authUser != null) {
+         if (name.equals("PHP_AUTH_USER")) {
+            return new ConstStringValue(_authUser);
+         } else if (name.equals("PHP_AUTH_PW")) {
+            return new ConstStringValue(_authPassword);
+         }
+      }
+
+      HttpServletRequest request = _env.getRequest();
+
+      Value value = null;
+
+      if (request != null) {
+         value = getRequestValue(request, name);
+      }
+
+      if (value == null) {
+         value = _env.getQuercus().getServerEnvMap().get(key);
+      }
+
+      return value != null ? value : UnsetValue.UNSET;
    }
 
    /**
-    * Returns an iterator of the entries.
+    * Returns the request entry fillMap() would add for the name.
     */
-   @Override
-   public Set<Map.Entry<Value, Value>> entrySet() {
-      if (!_isFilled) {
-         fillMap();
-      }
+   private Value getRequestValue(HttpServletRequest request, String name) {
+      if (name.startsWith("HTTP_")
+              || name.equals("CONTENT_LENGTH")
+              || name.equals("CONTENT_TYPE")) {
+         return getHeaderValue(request, name);
+      } else if (name.equals("SERVER_ADDR")) {
+         return _env.createString(request.getLocalAddr());
+      } else if (name.equals("SERVER_NAME")) {
+         return _env.createString(request.getServerName());
+      } else if (name.equals("SERVER_PORT")) {
+         return LongValue.create(request.getServerPort());
+      } else if (name.equals("REMOTE_HOST")) {
+         return _env.createString(request.getRemoteHost());
+      } else if (name.equals("REMOTE_ADDR")) {
+         return _env.createString(request.getRemoteAddr());
+      } else if (name.equals("REMOTE_PORT")) {
+         return LongValue.create(request.getRemotePort());
+      } else if (name.equals("SERVER_PROTOCOL")) {
+         return _env.createString(request.getProtocol());
+      } else if (name.equals("REQUEST_METHOD")) {
+         return _env.createString(request.getMethod());
+      } else if (name.equals("REQUEST_TIME")) {
+         return LongValue.create(_env.getStartTime() / 1000);
+      } else if (name.equals("QUERY_STRING")) {
+         String queryString = QuercusRequestAdapter.getPageQueryString(request);
+
+         return queryString != null ? _env.createString(queryString) : null;
+      } else if (name.equals("REQUEST_URI")) {
+         String queryString = QuercusRequestAdapter.getPageQueryString(request);
+         String requestURI = QuercusRequestAdapter.getPageURI(request);
 
-      return super.entrySet();
+         if (queryString != null) {
+            requestURI = requestURI + '?' + queryString;
+         }
+
+         return _env.createString(requestURI);
+      } else if (name.equals("SCRIPT_NAME")) {
+         return _env.createString(QuercusRequestAdapter.getPageContextPath(request)
+                 + QuercusRequestAdapter.getPageServletPath(request));
+      } else if (name.equals("HTTPS")) {
+         return request.isSecure() ? _env.createString("on") : null;
+      } else if (name.startsWith("SERVER_")
+              || name.startsWith("PHP_")
+              || name.startsWith("AUTH_")
+              || name.startsWith("SCRIPT_")
+              || name.startsWith("PATH_")
+              || name.startsWith("REQUEST_")
+              || name.equals("DOCUMENT_ROOT")) {
+         // the less common path and auth entries aren't worth duplicating,
+         // so read them from the filled map
+         return super.get(_env.createString(name));
+      } else {
+         return null;
+      }
    }
 
    /**
-    * Convenience for lib.
+    * Returns the last header whose converted key matches the name.
     */
-   @Override
-   public void put(String key, String value) {
-      if (!_isFilled) {
-         fillMap();
+   private Value getHeaderValue(HttpServletRequest request, String name) {
+      String value = null;
+
+      Enumeration<?> e = request.getHeaderNames();
+      while (e.hasMoreElements()) {
+         String key = (String) e.nextElement();
+
+         boolean isMatch;
+
+         if (key.equalsIgnoreCase("Host")) {
+            isMatch = name.equals("HTTP_HOST");
+         } else if (key.equalsIgnoreCase("Content-Length")) {
+            isMatch = name.equals("CONTENT_LENGTH");
+         } else if (key.equalsIgnoreCase("Content-Type")) {
+            isMatch = name.equals("CONTENT_TYPE");
+         } else {
+            isMatch = isHttpKey(key, name);
+         }
+
+         if (isMatch) {
+            value = request.getHeader(key);
+         }
       }
 
-      super.put(_env.createString(key), _env.createString(value));
+      return value != null ? _env.createString(value) : null;
    }
 
    /**
-    * Returns true if the value is isset().
+    * Returns true if convertHttpKey(key) equals the name.
     */
-   @Override
-   public boolean isset(Value key) {
-      return get(key).isset();
-   }
+   private static boolean isHttpKey(String key, String name) {
+      int len = key.length();
 
-   @Override
-   public void varDumpImpl(Env env,
-           WriteStream out,
-           int depth,
-           IdentityHashMap<Value, String> valueSet)
-           throws IOException {
-      if (!_isFilled) {
-         fillMap();
+      if (name.length() != len + 5 || !name.startsWith("HTTP_")) {
+         return false;
       }
 
-      super.varDumpImpl(env, out, depth, valueSet);
-   }
+      for (int i = 0; i < len; i++) {
+         char ch = key.charAt(i);
 
-   @Override
-   protected void printRImpl(Env env,
-           WriteStream out,
-           int depth,
-           IdentityHashMap<Value, String> valueSet)
-           throws IOException {
-      if (!_isFilled) {
-         fillMap();
+         if (Character.isLowerCase(ch)) {
+            ch = Character.toUpperCase(ch);
+         } else if (ch == '-') {
+            ch = '_';
+         }
+
+         if (name.charAt(i + 5) != ch) {
+            return false;
+         }
       }
 
-      super.printRImpl(env, out, depth, valueSet);
+      return true;
    }
 
    /**
@@ -266,38 +359,40 @@ public class ServerArrayValue extends ArrayValueImpl {
 
       _isFilled = true;
 
+      ArrayValue array = super.getArray();
+
       for (Map.Entry<Value, Value> entry : _env.getQuercus().getServerEnvMap().entrySet()) {
-         super.put(entry.getKey(), entry.getValue());
+         array.put(entry.getKey(), entry.getValue());
       }
 
       HttpServletRequest request = _env.getRequest();
       boolean isUnicode = _env.isUnicodeSemantics();
 
       if (request != null) {
-         super.put(isUnicode ? SERVER_ADDR_VU : SERVER_ADDR_V,
+         array.put(isUnicode ? SERVER_ADDR_VU : SERVER_ADDR_V,
                  _env.createString(request.getLocalAddr()));
-         super.put(isUnicode ? SERVER_NAME_VU : SERVER_NAME_V,
+         array.put(isUnicode ? SERVER_NAME_VU : SERVER_NAME_V,
                  _env.createString(request.getServerName()));
 
-         super.put(isUnicode ? SERVER_PORT_VU : SERVER_PORT_V,
+         array.put(isUnicode ? SERVER_PORT_VU : SERVER_PORT_V,
                  LongValue.create(request.getServerPort()));
-         super.put(isUnicode ? REMOTE_HOST_VU : REMOTE_HOST_V,
+         array.put(isUnicode ? REMOTE_HOST_VU : REMOTE_HOST_V,
                  _env.createString(request.getRemoteHost()));
-         super.put(isUnicode ? REMOTE_ADDR_VU : REMOTE_ADDR_V,
+         array.put(isUnicode ? REMOTE_ADDR_VU : REMOTE_ADDR_V,
                  _env.createString(request.getRemoteAddr()));
-         super.put(isUnicode ? REMOTE_PORT_VU : REMOTE_PORT_V,
+         array.put(isUnicode ? REMOTE_PORT_VU : REMOTE_PORT_V,
                  LongValue.create(request.getRemotePort()));
 
          // Drupal's optional activemenu plugin only works on Apache servers!
          // bug at http://drupal.org/node/221867
-         super.put(isUnicode ? SERVER_SOFTWARE_VU : SERVER_SOFTWARE_V,
+         array.put(isUnicode ? SERVER_SOFTWARE_VU : SERVER_SOFTWARE_V,
                  _env.createString("Apache PHP Quercus("
                  + _env.getQuercus().getVersion()
                  + ")"));
 
-         super.put(isUnicode ? SERVER_PROTOCOL_VU : SERVER_PROTOCOL_V,
+         array.put(isUnicode ? SERVER_PROTOCOL_VU : SERVER_PROTOCOL_V,
                  _env.createString(request.getProtocol()));
-         super.put(isUnicode ? REQUEST_METHOD_VU : REQUEST_METHOD_V,
+         array.put(isUnicode ? REQUEST_METHOD_VU : REQUEST_METHOD_V,
                  _env.createString(request.getMethod()));
 
          String queryString = QuercusRequestAdapter.getPageQueryString(request);
@@ -307,7 +402,7 @@ public class ServerArrayValue extends ArrayValueImpl {
          String contextPath = QuercusRequestAdapter.getPageContextPath(request);
 
          if (queryString != null) {
-            super.put(isUnicode ? QUERY_STRING_VU : QUERY_STRING_V,
+            array.put(isUnicode ? QUERY_STRING_VU : QUERY_STRING_V,
                     _env.createString(queryString));
          }
 
@@ -320,43 +415,43 @@ public class ServerArrayValue extends ArrayValueImpl {
             root = '/' + root;
          }
 
-         super.put(isUnicode ? DOCUMENT_ROOT_VU : DOCUMENT_ROOT_V,
+         array.put(isUnicode ? DOCUMENT_ROOT_VU : DOCUMENT_ROOT_V,
                  _env.createString(root));
-         super.put(isUnicode ? SCRIPT_NAME_VU : SCRIPT_NAME_V,
+         array.put(isUnicode ? SCRIPT_NAME_VU : SCRIPT_NAME_V,
                  _env.createString(contextPath + servletPath));
-         super.put(isUnicode ? SCRIPT_URL_VU : SCRIPT_URL_V,
+         array.put(isUnicode ? SCRIPT_URL_VU : SCRIPT_URL_V,
                  _env.createString(requestURI));
 
          if (queryString != null) {
             requestURI = requestURI + '?' + queryString;
          }
 
-         super.put(isUnicode ? REQUEST_URI_VU : REQUEST_URI_V,
+         array.put(isUnicode ? REQUEST_URI_VU : REQUEST_URI_V,
                  _env.createString(requestURI));
 
-         super.put(isUnicode ? REQUEST_TIME_VU : REQUEST_TIME_V,
+         array.put(isUnicode ? REQUEST_TIME_VU : REQUEST_TIME_V,
                  LongValue.create(_env.getStartTime() / 1000));
 
-         super.put(isUnicode ? SCRIPT_FILENAME_VU : SCRIPT_FILENAME_V,
+         array.put(isUnicode ? SCRIPT_FILENAME_VU : SCRIPT_FILENAME_V,
                  _env.createString(request.getRealPath(servletPath)));
 
          if (pathInfo != null) {
-            super.put(isUnicode ? PATH_INFO_VU : PATH_INFO_V,
+            array.put(isUnicode ? PATH_INFO_VU : PATH_INFO_V,
                     _env.createString(pathInfo));
-            super.put(isUnicode ? PATH_TRANSLATED_VU : PATH_TRANSLATED_V,
+            array.put(isUnicode ? PATH_TRANSLATED_VU : PATH_TRANSLATED_V,
                     _env.createString(request.getRealPath(pathInfo)));
          }
 
          if (request.isSecure()) {
-            super.put(isUnicode ? HTTPS_VU : HTTPS_V,
+            array.put(isUnicode ? HTTPS_VU : HTTPS_V,
                     _env.createString("on"));
          }
 
          if (pathInfo == null) {
-            super.put(isUnicode ? PHP_SELF_VU : PHP_SELF_V,
+            array.put(isUnicode ? PHP_SELF_VU : PHP_SELF_V,
                     _env.createString(contextPath + servletPath));
          } else {
-            super.put(isUnicode ? PHP_SELF_VU : PHP_SELF_V,
+            array.put(isUnicode ? PHP_SELF_VU : PHP_SELF_V,
                     _env.createString(contextPath + servletPath + pathInfo));
          }
 
@@ -366,11 +461,11 @@ public class ServerArrayValue extends ArrayValueImpl {
 
          if (authHeader != null) {
             if (authHeader.indexOf("Basic") == 0) {
-               super.put(isUnicode ? AUTH_TYPE_VU : AUTH_TYPE_V,
+               array.put(isUnicode ? AUTH_TYPE_VU : AUTH_TYPE_V,
                        _env.createString("Basic"));
 
                if (request.getRemoteUser() != null) {
-                  super.put(isUnicode ? PHP_AUTH_USER_VU : PHP_AUTH_USER_V,
+                  array.put(isUnicode ? PHP_AUTH_USER_VU : PHP_AUTH_USER_V,
                           _env.createString(request.getRemoteUser()));
 
                   String digest = authHeader.substring("Basic ".length());
@@ -379,17 +474,17 @@ public class ServerArrayValue extends ArrayValueImpl {
 
                   int i = userPass.indexOf(':');
                   if (i > 0) {
-                     super.put(isUnicode ? PHP_AUTH_PW_VU : PHP_AUTH_PW_V,
+                     array.put(isUnicode ? PHP_AUTH_PW_VU : PHP_AUTH_PW_V,
                              _env.createString(userPass.substring(i + 1)));
                   }
                }
             } else if (authHeader.indexOf("Digest") == 0) {
-               super.put(isUnicode ? AUTH_TYPE_VU : AUTH_TYPE_V,
+               array.put(isUnicode ? AUTH_TYPE_VU : AUTH_TYPE_V,
                        _env.createString("Digest"));
 
                String digest = authHeader.substring("Digest ".length());
 
-               super.put(isUnicode ? PHP_AUTH_DIGEST_VU : PHP_AUTH_DIGEST_V,
+               array.put(isUnicode ? PHP_AUTH_DIGEST_VU : PHP_AUTH_DIGEST_V,
                        _env.createString(digest));
             }
          }
@@ -401,19 +496,26 @@ public class ServerArrayValue extends ArrayValueImpl {
             String value = request.getHeader(key);
 
             if (key.equalsIgnoreCase("Host")) {
-               super.put(isUnicode ? HTTP_HOST_VU : HTTP_HOST_V,
+               array.put(isUnicode ? HTTP_HOST_VU : HTTP_HOST_V,
                        _env.createString(value));
             } else if (key.equalsIgnoreCase("Content-Length")) {
-               super.put(isUnicode ? CONTENT_LENGTH_VU : CONTENT_LENGTH_V,
+               array.put(isUnicode ? CONTENT_LENGTH_VU : CONTENT_LENGTH_V,
                        _env.createString(value));
             } else if (key.equalsIgnoreCase("Content-Type")) {
-               super.put(isUnicode ? CONTENT_TYPE_VU : CONTENT_TYPE_V,
+               array.put(isUnicode ? CONTENT_TYPE_VU : CONTENT_TYPE_V,
                        _env.createString(value));
             } else {
-               super.put(convertHttpKey(key), _env.createString(value));
+               array.put(convertHttpKey(key), _env.createString(value));
             }
          }
       }
+
+      if (_authUser != null) {
+         putBasicAuth(array, _authUser, _authPassword);
+
+         _authUser = null;
+         _authPassword = null;
+      }
    }
 
    /**
@@ -444,10 +546,6 @@ public class ServerArrayValue extends ArrayValueImpl {
    // Java serialization code
    //
    private Object writeReplace() {
-      if (!_isFilled) {
-         fillMap();
-      }
-
-      return super.copy();
+      return getArray().copy();
    }
 }
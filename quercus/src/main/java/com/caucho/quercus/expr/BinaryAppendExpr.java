@@ -29,7 +29,9 @@
 package com.caucho.quercus.expr;
 
 import com.caucho.quercus.env.Env;
+import com.caucho.quercus.env.StringBuilderValue;
 import com.caucho.quercus.env.StringValue;
+import com.caucho.quercus.env.UnicodeBuilderValue;
 import com.caucho.quercus.env.Value;
 
 /**
@@ -39,6 +41,8 @@ public class BinaryAppendExpr extends Expr {
 
    private final Expr _value;
    private BinaryAppendExpr _next;
+   // length of the literal strings in the tail, -1 until computed
+   private int _tailLiteralLength = -1;
 
    protected BinaryAppendExpr(Expr value, BinaryAppendExpr next) {
       _value = value;
@@ -80,6 +84,8 @@ public class BinaryAppendExpr extends Expr {
 
       StringValue sb = value.toStringBuilder(env);
 
+      ensureTailCapacity(sb);
+
       for (BinaryAppendExpr ptr = _next; ptr != null; ptr = ptr._next) {
          Value ptrValue = ptr._value.eval(env);
 
@@ -89,6 +95,33 @@ public class BinaryAppendExpr extends Expr {
       return sb;
    }
 
+   /**
+    * Sizes the builder for the literal strings in the tail, so the
+    * append chain doesn't grow the builder for each literal.
+    */
+   private void ensureTailCapacity(StringValue sb) {
+      int length = _tailLiteralLength;
+
+      if (length < 0) {
+         length = 0;
+
+         for (BinaryAppendExpr ptr = _next; ptr != null; ptr = ptr._next) {
+            if (ptr._value instanceof LiteralStringExpr
+                    || ptr._value instanceof LiteralUnicodeExpr) {
+               length += ptr._value.evalConstant().length();
+            }
+         }
+
+         _tailLiteralLength = length;
+      }
+
+      if (length > 0
+              && (sb instanceof StringBuilderValue
+              || sb instanceof UnicodeBuilderValue)) {
+         sb.ensureAppendCapacity(length);
+      }
+   }
+
    @Override
    public String evalString(Env env) {
       Value value = _value.eval(env);
@@ -30,6 +30,7 @@ package com.caucho.quercus.expr;
 
 import com.caucho.quercus.*;
 import com.caucho.quercus.env.Env;
+import com.caucho.quercus.env.NameIntern;
 import com.caucho.quercus.env.NullValue;
 import com.caucho.quercus.env.QuercusClass;
 import com.caucho.quercus.env.Value;
@@ -53,7 +54,7 @@ public class CallExpr extends Expr {
    public CallExpr(Location location, String name, ArrayList<Expr> args) {
       // quercus/120o
       super(location);
-      _name = name.intern();
+      _name = NameIntern.intern(name);
 
       int ns = _name.lastIndexOf('\\');
 
@@ -70,7 +71,7 @@ public class CallExpr extends Expr {
    public CallExpr(Location location, String name, Expr[] args) {
       // quercus/120o
       super(location);
-      _name = name.intern();
+      _name = NameIntern.intern(name);
 
       int ns = _name.lastIndexOf('\\');
 
@@ -204,8 +205,6 @@ public class CallExpr extends Expr {
 
       // TODO: qa/1d14 Value oldThis = env.setThis(UnsetValue.NULL);
       try {
-         env.checkTimeout();
-
          /*
          if (isRef)
          return fun.callRef(env, args);
@@ -33,6 +33,8 @@ import java.util.ArrayList;
 
 import com.caucho.quercus.Location;
 import com.caucho.quercus.env.Env;
+import com.caucho.quercus.env.NameIntern;
+import com.caucho.quercus.env.QuercusClass;
 import com.caucho.quercus.env.Value;
 import com.caucho.quercus.parser.QuercusParser;
 import com.caucho.util.L10N;
@@ -45,17 +47,18 @@ public class ClassConstExpr extends Expr {
    private static final L10N L = new L10N(ClassMethodExpr.class);
    protected final String _className;
    protected final String _name;
+   private int _classId = -1;
 
    public ClassConstExpr(Location location, String className, String name) {
       super(location);
 
-      _className = className.intern();
-      _name = name.intern();
+      _className = NameIntern.intern(className);
+      _name = NameIntern.intern(name);
    }
 
    public ClassConstExpr(String className, String name) {
-      _className = className.intern();
-      _name = name.intern();
+      _className = NameIntern.intern(className);
+      _name = NameIntern.intern(name);
    }
 
    //
@@ -89,7 +92,21 @@ public class ClassConstExpr extends Expr {
     */
    @Override
    public Value eval(Env env) {
-      return env.getClass(_className).getConstant(env, _name);
+      int classId = _classId;
+
+      if (classId < 0) {
+         classId = env.getQuercus().getClassId(_className);
+         _classId = classId;
+      }
+
+      QuercusClass cl = env.findClass(classId, true, true);
+
+      if (cl == null) {
+         throw env.createErrorException(L.l("'{0}' is an unknown class.",
+                 _className));
+      }
+
+      return cl.getConstant(env, _name);
    }
 
    @Override
@@ -31,6 +31,7 @@ package com.caucho.quercus.expr;
 import com.caucho.quercus.Location;
 import com.caucho.quercus.env.Env;
 import com.caucho.quercus.env.MethodIntern;
+import com.caucho.quercus.env.NameIntern;
 import com.caucho.quercus.env.QuercusClass;
 import com.caucho.quercus.env.Value;
 import com.caucho.quercus.env.StringValue;
@@ -55,7 +56,7 @@ public class ClassConstructorExpr extends Expr {
            ArrayList<Expr> args) {
       super(location);
 
-      _className = className.intern();
+      _className = NameIntern.intern(className);
 
       _name = MethodIntern.intern(name);
 
@@ -69,7 +70,7 @@ public class ClassConstructorExpr extends Expr {
            Expr[] args) {
       super(location);
 
-      _className = className.intern();
+      _className = NameIntern.intern(className);
 
       _name = MethodIntern.intern(name);
 
@@ -100,8 +101,6 @@ public class ClassConstructorExpr extends Expr {
       env.pushCall(this, qThis, values);
 
       try {
-         env.checkTimeout();
-
          return cl.callMethod(env, qThis, _name, _name.hashCode(), values);
       } finally {
          env.popCall();
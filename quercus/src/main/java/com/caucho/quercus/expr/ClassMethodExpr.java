@@ -33,6 +33,7 @@ import java.util.ArrayList;
 import com.caucho.quercus.Location;
 import com.caucho.quercus.env.Env;
 import com.caucho.quercus.env.MethodIntern;
+import com.caucho.quercus.env.NameIntern;
 import com.caucho.quercus.env.QuercusClass;
 import com.caucho.quercus.env.StringValue;
 import com.caucho.quercus.env.Value;
@@ -54,7 +55,7 @@ public class ClassMethodExpr extends AbstractMethodExpr {
            String methodName,
            ArrayList<Expr> args) {
       super(location);
-      _className = className.intern();
+      _className = NameIntern.intern(className);
 
       _methodName = MethodIntern.intern(methodName);
       _hash = _methodName.hashCodeCaseInsensitive();
@@ -67,7 +68,7 @@ public class ClassMethodExpr extends AbstractMethodExpr {
            String methodName, Expr[] args) {
       super(location);
 
-      _className = className.intern();
+      _className = NameIntern.intern(className);
 
       _methodName = MethodIntern.intern(methodName);
       _hash = _methodName.hashCodeCaseInsensitive();
@@ -112,8 +113,6 @@ public class ClassMethodExpr extends AbstractMethodExpr {
       // QuercusClass oldClass = env.setCallingClass(cl);
 
       try {
-         env.checkTimeout();
-
          return cl.callMethod(env, qThis, _methodName, _hash, values);
       } finally {
          env.popCall();
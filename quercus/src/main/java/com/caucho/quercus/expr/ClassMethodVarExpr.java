@@ -30,6 +30,7 @@ package com.caucho.quercus.expr;
 
 import com.caucho.quercus.Location;
 import com.caucho.quercus.env.Env;
+import com.caucho.quercus.env.NameIntern;
 import com.caucho.quercus.env.QuercusClass;
 import com.caucho.quercus.env.Value;
 import com.caucho.quercus.env.StringValue;
@@ -58,7 +59,7 @@ public class ClassMethodVarExpr extends AbstractMethodExpr {
            ArrayList<Expr> args) {
       super(location);
 
-      _className = className.intern();
+      _className = NameIntern.intern(className);
 
       _nameExpr = nameExpr;
 
@@ -72,7 +73,7 @@ public class ClassMethodVarExpr extends AbstractMethodExpr {
            Expr[] args) {
       super(location);
 
-      _className = className.intern();
+      _className = NameIntern.intern(className);
 
       _nameExpr = nameExpr;
 
@@ -33,6 +33,7 @@ import java.util.ArrayList;
 
 import com.caucho.quercus.Location;
 import com.caucho.quercus.env.Env;
+import com.caucho.quercus.env.NameIntern;
 import com.caucho.quercus.env.Value;
 import com.caucho.quercus.parser.QuercusParser;
 import com.caucho.util.L10N;
@@ -48,7 +49,7 @@ public class ClassVarConstExpr extends Expr {
 
    public ClassVarConstExpr(Expr className, String name) {
       _className = className;
-      _name = name.intern();
+      _name = NameIntern.intern(name);
    }
 
    //
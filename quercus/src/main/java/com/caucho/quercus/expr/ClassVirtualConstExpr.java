@@ -33,6 +33,7 @@ import java.util.ArrayList;
 
 import com.caucho.quercus.Location;
 import com.caucho.quercus.env.Env;
+import com.caucho.quercus.env.NameIntern;
 import com.caucho.quercus.env.Value;
 import com.caucho.quercus.parser.QuercusParser;
 import com.caucho.util.L10N;
@@ -48,11 +49,11 @@ public class ClassVirtualConstExpr extends Expr {
    public ClassVirtualConstExpr(Location location, String name) {
       super(location);
 
-      _name = name.intern();
+      _name = NameIntern.intern(name);
    }
 
    public ClassVirtualConstExpr(String name) {
-      _name = name.intern();
+      _name = NameIntern.intern(name);
    }
 
    //
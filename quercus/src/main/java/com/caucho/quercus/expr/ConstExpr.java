@@ -40,6 +40,7 @@ import com.caucho.quercus.parser.QuercusParser;
 public class ConstExpr extends Expr {
 
    protected final String _var;
+   private int _id;
 
    public ConstExpr(Location location, String var) {
       super(location);
@@ -164,7 +165,14 @@ public class ConstExpr extends Expr {
     */
    @Override
    public Value eval(Env env) {
-      return env.getConstant(_var);
+      int id = _id;
+
+      if (id <= 0) {
+         id = env.getQuercus().getConstantId(_var);
+         _id = id;
+      }
+
+      return env.getConstant(_var, id);
    }
 
    @Override
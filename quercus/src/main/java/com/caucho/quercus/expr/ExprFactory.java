@@ -352,6 +352,10 @@ public class ExprFactory {
     * Creates a unary minus '-a' expression.
     */
    public Expr createMinus(Expr expr) {
+      if (isNumberLiteral(expr)) {
+         return createLiteral(expr.evalConstant().neg());
+      }
+
       return new UnaryMinusExpr(expr);
    }
 
@@ -359,6 +363,10 @@ public class ExprFactory {
     * Creates a unary plus '+a' expression.
     */
    public Expr createPlus(Expr expr) {
+      if (isNumberLiteral(expr)) {
+         return createLiteral(expr.evalConstant().pos());
+      }
+
       return new UnaryPlusExpr(expr);
    }
 
@@ -366,6 +374,12 @@ public class ExprFactory {
     * Creates a unary not '!a' expression.
     */
    public Expr createNot(Expr expr) {
+      if (expr.isLiteral() && expr.evalConstant() != null) {
+         boolean value = expr.evalConstant().toBoolean();
+
+         return createLiteral(value ? BooleanValue.FALSE : BooleanValue.TRUE);
+      }
+
       return new UnaryNotExpr(expr);
    }
 
@@ -373,6 +387,10 @@ public class ExprFactory {
     * Creates a unary inversion '~a' expression.
     */
    public Expr createBitNot(Expr expr) {
+      if (isNumberLiteral(expr)) {
+         return createLiteral(LongValue.create(~expr.evalConstant().toLong()));
+      }
+
       return new UnaryBitNotExpr(expr);
    }
 
@@ -485,6 +503,10 @@ public class ExprFactory {
     * Creates an addition expression.
     */
    public Expr createAdd(Expr left, Expr right) {
+      if (isNumberLiteral(left) && isNumberLiteral(right)) {
+         return createLiteral(left.evalConstant().add(right.evalConstant()));
+      }
+
       return new BinaryAddExpr(left, right);
    }
 
@@ -492,6 +514,10 @@ public class ExprFactory {
     * Creates a subtraction expression.
     */
    public Expr createSub(Expr left, Expr right) {
+      if (isNumberLiteral(left) && isNumberLiteral(right)) {
+         return createLiteral(left.evalConstant().sub(right.evalConstant()));
+      }
+
       return new BinarySubExpr(left, right);
    }
 
@@ -499,6 +525,10 @@ public class ExprFactory {
     * Creates a multiplication expression.
     */
    public Expr createMul(Expr left, Expr right) {
+      if (isNumberLiteral(left) && isNumberLiteral(right)) {
+         return createLiteral(left.evalConstant().mul(right.evalConstant()));
+      }
+
       return new BinaryMulExpr(left, right);
    }
 
@@ -506,6 +536,12 @@ public class ExprFactory {
     * Creates a division expression.
     */
    public Expr createDiv(Expr left, Expr right) {
+      // division by zero is left to the runtime
+      if (isNumberLiteral(left) && isNumberLiteral(right)
+              && right.evalConstant().toDouble() != 0) {
+         return createLiteral(left.evalConstant().div(right.evalConstant()));
+      }
+
       return new BinaryDivExpr(left, right);
    }
 
@@ -513,6 +549,12 @@ public class ExprFactory {
     * Creates a modulo expression.
     */
    public Expr createMod(Expr left, Expr right) {
+      // division by zero is left to the runtime
+      if (isNumberLiteral(left) && isNumberLiteral(right)
+              && right.evalConstant().toLong() != 0) {
+         return createLiteral(left.evalConstant().mod(right.evalConstant()));
+      }
+
       return new BinaryModExpr(left, right);
    }
 
@@ -520,6 +562,10 @@ public class ExprFactory {
     * Creates a left-shift expression.
     */
    public Expr createLeftShift(Expr left, Expr right) {
+      if (isNumberLiteral(left) && isNumberLiteral(right)) {
+         return createLiteral(left.evalConstant().lshift(right.evalConstant()));
+      }
+
       return new BinaryLeftShiftExpr(left, right);
    }
 
@@ -527,6 +573,10 @@ public class ExprFactory {
     * Creates a right-shift expression.
     */
    public Expr createRightShift(Expr left, Expr right) {
+      if (isNumberLiteral(left) && isNumberLiteral(right)) {
+         return createLiteral(left.evalConstant().rshift(right.evalConstant()));
+      }
+
       return new BinaryRightShiftExpr(left, right);
    }
 
@@ -534,6 +584,10 @@ public class ExprFactory {
     * Creates a bit-and expression.
     */
    public Expr createBitAnd(Expr left, Expr right) {
+      if (isNumberLiteral(left) && isNumberLiteral(right)) {
+         return createLiteral(left.evalConstant().bitAnd(right.evalConstant()));
+      }
+
       return new BinaryBitAndExpr(left, right);
    }
 
@@ -541,6 +595,10 @@ public class ExprFactory {
     * Creates a bit-or expression.
     */
    public Expr createBitOr(Expr left, Expr right) {
+      if (isNumberLiteral(left) && isNumberLiteral(right)) {
+         return createLiteral(left.evalConstant().bitOr(right.evalConstant()));
+      }
+
       return new BinaryBitOrExpr(left, right);
    }
 
@@ -548,6 +606,10 @@ public class ExprFactory {
     * Creates a bit-xor expression.
     */
    public Expr createBitXor(Expr left, Expr right) {
+      if (isNumberLiteral(left) && isNumberLiteral(right)) {
+         return createLiteral(left.evalConstant().bitXor(right.evalConstant()));
+      }
+
       return new BinaryBitXorExpr(left, right);
    }
 
@@ -616,6 +678,16 @@ public class ExprFactory {
 
       tail = append(left.getNext(), tail);
 
+      // "a" . 1 is the same as "a" . "1"
+      Expr leftLiteral = toStringLiteral(left.getValue(), tail.getValue());
+      Expr tailLiteral = toStringLiteral(tail.getValue(), left.getValue());
+
+      if (leftLiteral != null) {
+         left = createAppendImpl(leftLiteral, null);
+      } else if (tailLiteral != null) {
+         tail = createAppendImpl(tailLiteral, tail.getNext());
+      }
+
       if (left.getValue() instanceof LiteralBinaryStringExpr
               && tail.getValue() instanceof LiteralBinaryStringExpr) {
          LiteralBinaryStringExpr leftString = (LiteralBinaryStringExpr) left.getValue();
@@ -661,6 +733,44 @@ public class ExprFactory {
       }
    }
 
+   /**
+    * Returns true for a long or double literal, which can be folded.
+    */
+   protected static boolean isNumberLiteral(Expr expr) {
+      if (!expr.isLiteral()) {
+         return false;
+      }
+
+      Value value = expr.evalConstant();
+
+      return value instanceof LongValue || value instanceof DoubleValue;
+   }
+
+   /**
+    * Returns true for a long literal, which has the same string value
+    * regardless of the precision ini.
+    */
+   private static boolean isLongLiteral(Expr expr) {
+      return expr.isLiteral() && expr.evalConstant() instanceof LongValue;
+   }
+
+   /**
+    * Converts a long literal to a string literal of the same kind as
+    * the string literal next to it in an append, or returns null.
+    */
+   private Expr toStringLiteral(Expr expr, Expr string) {
+      if (!isLongLiteral(expr)) {
+         return null;
+      }
+
+      if (string instanceof LiteralStringExpr
+              || string instanceof LiteralUnicodeExpr) {
+         return createStringLiteral(string, expr.evalConstant().toString());
+      } else {
+         return null;
+      }
+   }
+
    protected BinaryAppendExpr createAppendImpl(Expr left, BinaryAppendExpr right) {
       return new BinaryAppendExpr(left, right);
    }
@@ -878,11 +988,66 @@ public class ExprFactory {
          }
 
          return new FunEachExpr(arg);
+      }
+
+      Expr literal = createCallLiteral(name, args);
+
+      if (literal != null) {
+         return literal;
       } else {
          return new CallExpr(loc, name, args);
       }
    }
 
+   /**
+    * Folds a call of a builtin string function on a string literal,
+    * e.g. strlen("abc"), or returns null.  Namespaced names aren't
+    * folded because a namespace function would hide the builtin.
+    */
+   private Expr createCallLiteral(String name, ArrayList<Expr> args) {
+      if (args.size() != 1) {
+         return null;
+      }
+
+      Expr arg = args.get(0);
+
+      if (!(arg instanceof LiteralStringExpr)
+              && !(arg instanceof LiteralUnicodeExpr)) {
+         return null;
+      }
+
+      StringValue string = (StringValue) arg.evalConstant();
+
+      if ("strlen".equals(name)) {
+         return createLong(string.length());
+      } else if ("ord".equals(name)) {
+         return createLong(string.length() > 0 ? string.charAt(0) : 0);
+      } else if ("strtolower".equals(name)) {
+         return createStringLiteral(arg, string.toLowerCase().toString());
+      } else if ("strtoupper".equals(name)) {
+         return createStringLiteral(arg, string.toUpperCase().toString());
+      } else {
+         return null;
+      }
+   }
+
+   /**
+    * Creates a string literal of the same kind as a literal.
+    */
+   private Expr createStringLiteral(Expr literal, String value) {
+      if (literal instanceof LiteralBinaryStringExpr) {
+         try {
+            return createBinary(value.getBytes("ISO-8859-1"));
+         } catch (java.io.UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+         }
+      } else if (literal instanceof LiteralStringExpr) {
+         return createString(value);
+      } else {
+         return createUnicode(value);
+      }
+   }
+
    /**
     * Creates a new var function call.
     */
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ */
+package com.caucho.quercus.expr;
+
+import com.caucho.quercus.env.FieldLayout;
+import com.caucho.quercus.env.ObjectExtValue;
+import com.caucho.quercus.env.StringValue;
+import com.caucho.quercus.env.Value;
+
+/**
+ * Immutable cache of a field expression's slot in the last class layout
+ * it saw.  Field expressions are shared between threads, so a new slot
+ * replaces the old one instead of changing it.
+ */
+final class FieldSlot {
+
+   private final FieldLayout _layout;
+   private final int _slot;
+
+   private FieldSlot(FieldLayout layout, int slot) {
+      _layout = layout;
+      _slot = slot;
+   }
+
+   /**
+    * Returns the cached slot if it matches the object's layout, or a new
+    * slot for the layout.
+    */
+   static FieldSlot find(FieldSlot fieldSlot, Value obj, StringValue name) {
+      if (!(obj instanceof ObjectExtValue)) {
+         return null;
+      }
+
+      FieldLayout layout = ((ObjectExtValue) obj).getFieldLayout();
+
+      if (layout == null) {
+         return null;
+      } else if (fieldSlot != null && fieldSlot._layout == layout) {
+         return fieldSlot;
+      } else {
+         return new FieldSlot(layout, layout.findSlot(name));
+      }
+   }
+
+   /**
+    * Returns the slot, or -1 if the field is not declared.
+    */
+   int getSlot() {
+      return _slot;
+   }
+}
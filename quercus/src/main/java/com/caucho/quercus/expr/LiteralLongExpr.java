@@ -59,6 +59,14 @@ public class LiteralLongExpr extends Expr {
       return true;
    }
 
+   /**
+    * Evaluates the expression as a constant.
+    */
+   @Override
+   public Value evalConstant() {
+      return _objValue;
+   }
+
    /**
     * Returns true for a long value.
     */
@@ -33,6 +33,7 @@ import java.util.ArrayList;
 
 import com.caucho.quercus.Location;
 import com.caucho.quercus.env.Env;
+import com.caucho.quercus.env.ObjectExtValue;
 import com.caucho.quercus.env.Value;
 import com.caucho.quercus.env.StringValue;
 import com.caucho.quercus.env.Var;
@@ -47,6 +48,7 @@ public class ObjectFieldExpr extends AbstractVarExpr {
    private static final L10N L = new L10N(ObjectFieldExpr.class);
    protected final Expr _objExpr;
    protected final StringValue _name;
+   private FieldSlot _fieldSlot;
 
    public ObjectFieldExpr(Location location, Expr objExpr, StringValue name) {
       super(location);
@@ -61,6 +63,21 @@ public class ObjectFieldExpr extends AbstractVarExpr {
       _name = name;
    }
 
+   /**
+    * Returns the declared field's slot in the object, or -1.
+    */
+   private int findSlot(Value obj) {
+      FieldSlot fieldSlot = FieldSlot.find(_fieldSlot, obj, _name);
+
+      if (fieldSlot == null) {
+         return -1;
+      }
+
+      _fieldSlot = fieldSlot;
+
+      return fieldSlot.getSlot();
+   }
+
    //
    // function call creation
    //
@@ -88,6 +105,12 @@ public class ObjectFieldExpr extends AbstractVarExpr {
    public Value eval(Env env) {
       Value obj = _objExpr.eval(env);
 
+      int slot = findSlot(obj);
+
+      if (slot >= 0) {
+         return ((ObjectExtValue) obj).getField(env, _name, slot);
+      }
+
       return obj.getField(env, _name);
    }
 
@@ -142,7 +165,13 @@ public class ObjectFieldExpr extends AbstractVarExpr {
 
       obj = obj.toAutoObject(env);
 
-      obj.putField(env, _name, value);
+      int slot = findSlot(obj);
+
+      if (slot >= 0) {
+         ((ObjectExtValue) obj).putField(env, _name, value, slot);
+      } else {
+         obj.putField(env, _name, value);
+      }
 
       return value;
    }
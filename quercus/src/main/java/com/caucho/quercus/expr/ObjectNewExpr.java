@@ -30,6 +30,7 @@ package com.caucho.quercus.expr;
 
 import com.caucho.quercus.Location;
 import com.caucho.quercus.env.Env;
+import com.caucho.quercus.env.NameIntern;
 import com.caucho.quercus.env.NullValue;
 import com.caucho.quercus.env.QuercusClass;
 import com.caucho.quercus.env.Value;
@@ -48,7 +49,7 @@ public class ObjectNewExpr extends Expr {
 
    public ObjectNewExpr(Location location, String name, ArrayList<Expr> args) {
       super(location);
-      _name = name.intern();
+      _name = NameIntern.intern(name);
 
       _args = new Expr[args.size()];
       args.toArray(_args);
@@ -56,7 +57,7 @@ public class ObjectNewExpr extends Expr {
 
    public ObjectNewExpr(Location location, String name, Expr[] args) {
       super(location);
-      _name = name.intern();
+      _name = NameIntern.intern(name);
       _args = args;
    }
 
@@ -88,8 +89,6 @@ public class ObjectNewExpr extends Expr {
       try {
          QuercusClass cl = env.findAbstractClass(_name);
 
-         env.checkTimeout();
-
          return cl.callNew(env, args);
       } finally {
          env.popCall();
@@ -33,6 +33,7 @@ import java.util.ArrayList;
 
 import com.caucho.quercus.Location;
 import com.caucho.quercus.env.Env;
+import com.caucho.quercus.env.ObjectExtValue;
 import com.caucho.quercus.env.Value;
 import com.caucho.quercus.env.StringValue;
 import com.caucho.quercus.env.Var;
@@ -47,6 +48,7 @@ public class ThisFieldExpr extends AbstractVarExpr {
    private static final L10N L = new L10N(ThisFieldExpr.class);
    protected final ThisExpr _qThis;
    protected final StringValue _name;
+   private FieldSlot _fieldSlot;
 
    public ThisFieldExpr(ThisExpr qThis, StringValue name) {
       _qThis = qThis;
@@ -58,6 +60,21 @@ public class ThisFieldExpr extends AbstractVarExpr {
               "Cannot use '$this' when not in object context.");
    }
 
+   /**
+    * Returns the declared field's slot in the object, or -1.
+    */
+   private int findSlot(Value obj) {
+      FieldSlot fieldSlot = FieldSlot.find(_fieldSlot, obj, _name);
+
+      if (fieldSlot == null) {
+         return -1;
+      }
+
+      _fieldSlot = fieldSlot;
+
+      return fieldSlot.getSlot();
+   }
+
    //
    // function call creation
    //
@@ -89,6 +106,12 @@ public class ThisFieldExpr extends AbstractVarExpr {
          return cannotUseThisError(env);
       }
 
+      int slot = findSlot(obj);
+
+      if (slot >= 0) {
+         return ((ObjectExtValue) obj).getThisField(env, _name, slot);
+      }
+
       return obj.getThisField(env, _name);
    }
 
@@ -107,6 +130,12 @@ public class ThisFieldExpr extends AbstractVarExpr {
          return cannotUseThisError(env);
       }
 
+      int slot = findSlot(obj);
+
+      if (slot >= 0) {
+         return ((ObjectExtValue) obj).getThisField(env, _name, slot).copy();
+      }
+
       return obj.getThisField(env, _name).copy();
    }
 
@@ -127,6 +156,12 @@ public class ThisFieldExpr extends AbstractVarExpr {
          return new Var();
       }
 
+      int slot = findSlot(obj);
+
+      if (slot >= 0) {
+         return ((ObjectExtValue) obj).getThisFieldVar(env, _name, slot);
+      }
+
       return obj.getThisFieldVar(env, _name);
    }
 
@@ -163,7 +198,13 @@ public class ThisFieldExpr extends AbstractVarExpr {
          cannotUseThisError(env);
       }
 
-      obj.putThisField(env, _name, value);
+      int slot = findSlot(obj);
+
+      if (slot >= 0) {
+         ((ObjectExtValue) obj).putThisField(env, _name, value, slot);
+      } else {
+         obj.putThisField(env, _name, value);
+      }
 
       return value;
    }
@@ -183,7 +224,13 @@ public class ThisFieldExpr extends AbstractVarExpr {
          cannotUseThisError(env);
       }
 
-      obj.putThisField(env, _name, value);
+      int slot = findSlot(obj);
+
+      if (slot >= 0) {
+         ((ObjectExtValue) obj).putThisField(env, _name, value, slot);
+      } else {
+         obj.putThisField(env, _name, value);
+      }
 
       return value;
    }
@@ -199,7 +246,15 @@ public class ThisFieldExpr extends AbstractVarExpr {
          cannotUseThisError(env);
       }
 
-      Value fieldVar = obj.getThisFieldVar(env, _name);
+      int slot = findSlot(obj);
+
+      Value fieldVar;
+
+      if (slot >= 0) {
+         fieldVar = ((ObjectExtValue) obj).getThisFieldVar(env, _name, slot);
+      } else {
+         fieldVar = obj.getThisFieldVar(env, _name);
+      }
 
       // php/03mm
       return fieldVar.put(index, value);
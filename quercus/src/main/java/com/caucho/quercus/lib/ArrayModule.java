@@ -2377,7 +2377,7 @@ public class ArrayModule
          return BooleanValue.FALSE;
       }
 
-      array.sort(CNO_VALUE_NORMAL, NO_KEY_RESET, NOT_STRICT);
+      sortArray(array, CNO_VALUE_NORMAL, NO_KEY_RESET, NOT_STRICT);
 
       Map.Entry<Value, Value> lastEntry = null;
 
@@ -2586,10 +2586,10 @@ public class ArrayModule
 
       switch ((int) sortFlag) {
          case SORT_STRING:
-            array.sort(CS_VALUE_REVERSE, NO_KEY_RESET, NOT_STRICT);
+            sortArray(array, CS_VALUE_REVERSE, NO_KEY_RESET, NOT_STRICT);
             break;
          case SORT_NUMERIC:
-            array.sort(CN_VALUE_REVERSE, NO_KEY_RESET, NOT_STRICT);
+            sortArray(array, CN_VALUE_REVERSE, NO_KEY_RESET, NOT_STRICT);
             break;
          case SORT_LOCALE_STRING:
             Locale locale = env.getLocaleInfo().getCollate().getLocale();
@@ -2598,7 +2598,7 @@ public class ArrayModule
                     NO_KEY_RESET, NOT_STRICT);
             break;
          default:
-            array.sort(CNO_VALUE_REVERSE, NO_KEY_RESET, NOT_STRICT);
+            sortArray(array, CNO_VALUE_REVERSE, NO_KEY_RESET, NOT_STRICT);
             break;
       }
 
@@ -2624,10 +2624,10 @@ public class ArrayModule
 
       switch ((int) sortFlag) {
          case SORT_STRING:
-            array.sort(CS_VALUE_NORMAL, NO_KEY_RESET, NOT_STRICT);
+            sortArray(array, CS_VALUE_NORMAL, NO_KEY_RESET, NOT_STRICT);
             break;
          case SORT_NUMERIC:
-            array.sort(CN_VALUE_NORMAL, NO_KEY_RESET, NOT_STRICT);
+            sortArray(array, CN_VALUE_NORMAL, NO_KEY_RESET, NOT_STRICT);
             break;
          case SORT_LOCALE_STRING:
             Locale locale = env.getLocaleInfo().getCollate().getLocale();
@@ -2636,7 +2636,7 @@ public class ArrayModule
                     NO_KEY_RESET, NOT_STRICT);
             break;
          default:
-            array.sort(CNO_VALUE_NORMAL, NO_KEY_RESET, NOT_STRICT);
+            sortArray(array, CNO_VALUE_NORMAL, NO_KEY_RESET, NOT_STRICT);
             break;
       }
 
@@ -2956,10 +2956,10 @@ public class ArrayModule
 
       switch ((int) sortFlag) {
          case SORT_STRING:
-            array.sort(CS_KEY_REVERSE, NO_KEY_RESET, NOT_STRICT);
+            sortArray(array, CS_KEY_REVERSE, NO_KEY_RESET, NOT_STRICT);
             break;
          case SORT_NUMERIC:
-            array.sort(CN_KEY_REVERSE, NO_KEY_RESET, NOT_STRICT);
+            sortArray(array, CN_KEY_REVERSE, NO_KEY_RESET, NOT_STRICT);
             break;
          case SORT_LOCALE_STRING:
             Locale locale = env.getLocaleInfo().getCollate().getLocale();
@@ -2968,7 +2968,7 @@ public class ArrayModule
                     NO_KEY_RESET, NOT_STRICT);
             break;
          default:
-            array.sort(CNO_KEY_REVERSE, NO_KEY_RESET, NOT_STRICT);
+            sortArray(array, CNO_KEY_REVERSE, NO_KEY_RESET, NOT_STRICT);
             break;
       }
 
@@ -2994,10 +2994,10 @@ public class ArrayModule
 
       switch ((int) sortFlag) {
          case SORT_STRING:
-            array.sort(CS_KEY_NORMAL, NO_KEY_RESET, NOT_STRICT);
+            sortArray(array, CS_KEY_NORMAL, NO_KEY_RESET, NOT_STRICT);
             break;
          case SORT_NUMERIC:
-            array.sort(CN_KEY_NORMAL, NO_KEY_RESET, NOT_STRICT);
+            sortArray(array, CN_KEY_NORMAL, NO_KEY_RESET, NOT_STRICT);
             break;
          case SORT_LOCALE_STRING:
             Locale locale = env.getLocaleInfo().getCollate().getLocale();
@@ -3006,7 +3006,7 @@ public class ArrayModule
                     NO_KEY_RESET, NOT_STRICT);
             break;
          default:
-            array.sort(CNO_KEY_NORMAL, NO_KEY_RESET, NOT_STRICT);
+            sortArray(array, CNO_KEY_NORMAL, NO_KEY_RESET, NOT_STRICT);
             break;
       }
 
@@ -3193,10 +3193,10 @@ public class ArrayModule
 
       switch ((int) sortFlag) {
          case SORT_STRING:
-            array.sort(CS_VALUE_REVERSE, KEY_RESET, STRICT);
+            sortArray(array, CS_VALUE_REVERSE, KEY_RESET, STRICT);
             break;
          case SORT_NUMERIC:
-            array.sort(CN_VALUE_REVERSE, KEY_RESET, STRICT);
+            sortArray(array, CN_VALUE_REVERSE, KEY_RESET, STRICT);
             break;
          case SORT_LOCALE_STRING:
             Locale locale = env.getLocaleInfo().getCollate().getLocale();
@@ -3205,7 +3205,7 @@ public class ArrayModule
                     KEY_RESET, STRICT);
             break;
          default:
-            array.sort(CNO_VALUE_REVERSE, KEY_RESET, STRICT);
+            sortArray(array, CNO_VALUE_REVERSE, KEY_RESET, STRICT);
             break;
       }
 
@@ -3247,10 +3247,10 @@ public class ArrayModule
 
       switch ((int) sortFlag) {
          case SORT_STRING:
-            array.sort(CS_VALUE_NORMAL, KEY_RESET, STRICT);
+            sortArray(array, CS_VALUE_NORMAL, KEY_RESET, STRICT);
             break;
          case SORT_NUMERIC:
-            array.sort(CN_VALUE_NORMAL, KEY_RESET, STRICT);
+            sortArray(array, CN_VALUE_NORMAL, KEY_RESET, STRICT);
             break;
          case SORT_LOCALE_STRING:
             Locale locale = env.getLocaleInfo().getCollate().getLocale();
@@ -3259,7 +3259,7 @@ public class ArrayModule
                     KEY_RESET, STRICT);
             break;
          default:
-            array.sort(CNO_VALUE_NORMAL, KEY_RESET, STRICT);
+            sortArray(array, CNO_VALUE_NORMAL, KEY_RESET, STRICT);
             break;
       }
 
@@ -3371,18 +3371,52 @@ public class ArrayModule
       return true;
    }
 
-   private static class CompareString
+   /**
+    * Sorts the array, using the primitive key fast path when the keys
+    * allow it.
+    */
+   private static void sortArray(ArrayValue array,
+           AbstractCompare cmp,
+           boolean resetKeys,
+           boolean strict) {
+      boolean isKey = cmp._getter instanceof GetKey;
+
+      if (!ArraySorter.sort(array, isKey, cmp.getSortFlag(), cmp._order,
+              resetKeys, strict)) {
+         array.sort(cmp, resetKeys, strict);
+      }
+   }
+
+   private abstract static class AbstractCompare
            implements
            Comparator<Map.Entry<Value, Value>> {
 
-      private AbstractGet _getter;
-      private int _order;
+      protected final AbstractGet _getter;
+      protected final int _order;
 
-      CompareString(AbstractGet getter, int order) {
+      AbstractCompare(AbstractGet getter, int order) {
          _getter = getter;
          _order = order;
       }
 
+      /**
+       * Returns the SORT_REGULAR, SORT_NUMERIC or SORT_STRING flag.
+       */
+      abstract int getSortFlag();
+   }
+
+   private static class CompareString
+           extends AbstractCompare {
+
+      CompareString(AbstractGet getter, int order) {
+         super(getter, order);
+      }
+
+      @Override
+      int getSortFlag() {
+         return SORT_STRING;
+      }
+
       @Override
       public int compare(Map.Entry<Value, Value> aEntry,
               Map.Entry<Value, Value> bEntry) {
@@ -3394,15 +3428,15 @@ public class ArrayModule
    }
 
    private static class CompareNumeric
-           implements
-           Comparator<Map.Entry<Value, Value>> {
-
-      private AbstractGet _getter;
-      private int _order;
+           extends AbstractCompare {
 
       CompareNumeric(AbstractGet getter, int order) {
-         _getter = getter;
-         _order = order;
+         super(getter, order);
+      }
+
+      @Override
+      int getSortFlag() {
+         return SORT_NUMERIC;
       }
 
       @Override
@@ -3451,14 +3485,15 @@ public class ArrayModule
    }
 
    private static class CompareNormal
-           implements Comparator<Map.Entry<Value, Value>> {
-
-      private AbstractGet _getter;
-      private int _order;
+           extends AbstractCompare {
 
       CompareNormal(AbstractGet getter, int order) {
-         _getter = getter;
-         _order = order;
+         super(getter, order);
+      }
+
+      @Override
+      int getSortFlag() {
+         return SORT_REGULAR;
       }
 
       @Override
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ */
+package com.caucho.quercus.lib;
+
+import com.caucho.quercus.env.ArrayValue;
+import com.caucho.quercus.env.DoubleValue;
+import com.caucho.quercus.env.LongValue;
+import com.caucho.quercus.env.StringValue;
+import com.caucho.quercus.env.Value;
+
+/**
+ * Fast paths for sort(), asort(), ksort() and their reverse versions.
+ *
+ * When every sort key is a long, a double or (for SORT_STRING) a plain
+ * scalar, the keys are extracted once into a primitive array and a
+ * permutation index is merge sorted against it, instead of re-dispatching
+ * the PHP comparison rules on each compare.  The merge sort is stable,
+ * like Arrays.sort, so the result is the same as the generic comparators.
+ */
+final class ArraySorter {
+
+   // above 2^53 the generic comparators lose precision through doubles
+   private static final long MAX_EXACT_LONG = 1L << 53;
+   private static final int INSERTION_SORT_MAX = 16;
+
+   private ArraySorter() {
+   }
+
+   /**
+    * Sorts the array with a primitive key fast path.
+    *
+    * @param array the array to sort
+    * @param isKey true to sort by the keys, false by the values
+    * @param sortFlag SORT_REGULAR, SORT_NUMERIC or SORT_STRING
+    * @param order SORT_NORMAL or SORT_REVERSE
+    * @param resetKeys  true if the keys should not be preserved
+    * @param strict  true if alphabetic keys should not be preserved
+    *
+    * @return false if the keys don't fit a fast path, leaving the array
+    * unchanged
+    */
+   static boolean sort(ArrayValue array,
+           boolean isKey,
+           int sortFlag,
+           int order,
+           boolean resetKeys,
+           boolean strict) {
+      int size = array.getSize();
+
+      if (size < 2) {
+         return false;
+      }
+
+      Value[] keys = array.keysToArray();
+      Value[] values = array.valuesToArray();
+
+      IndexSort sort;
+
+      switch (sortFlag) {
+         case ArrayModule.SORT_REGULAR:
+            sort = createRegularSort(isKey ? keys : values, order);
+            break;
+         case ArrayModule.SORT_NUMERIC:
+            sort = createNumericSort(isKey ? keys : values, order);
+            break;
+         case ArrayModule.SORT_STRING:
+            sort = createStringSort(isKey ? keys : values, order);
+            break;
+         default:
+            sort = null;
+            break;
+      }
+
+      if (sort == null) {
+         return false;
+      }
+
+      int[] index = sort.sort(size);
+
+      array.clear();
+
+      long base = 0;
+
+      for (int i = 0; i < size; i++) {
+         int j = index[i];
+         Value key = keys[j];
+
+         if (resetKeys && (!(key instanceof StringValue) || strict)) {
+            array.put(LongValue.create(base++), values[j]);
+         } else {
+            array.put(key, values[j]);
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * SORT_REGULAR on numbers matches a plain numeric compare as long as
+    * the numbers are exact as doubles.
+    */
+   private static IndexSort createRegularSort(Value[] keys, int order) {
+      boolean isLong = true;
+
+      for (Value key : keys) {
+         if (key instanceof LongValue) {
+            long v = key.toLong();
+
+            if (v < -MAX_EXACT_LONG || MAX_EXACT_LONG < v) {
+               return null;
+            }
+         } else if (key instanceof DoubleValue) {
+            double v = key.toDouble();
+
+            if (!(-MAX_EXACT_LONG <= v && v <= MAX_EXACT_LONG)) {
+               return null;
+            }
+
+            isLong = false;
+         } else {
+            return null;
+         }
+      }
+
+      if (isLong) {
+         long[] longKeys = new long[keys.length];
+
+         for (int i = 0; i < keys.length; i++) {
+            longKeys[i] = keys[i].toLong();
+         }
+
+         return new LongIndexSort(longKeys, order);
+      } else {
+         double[] doubleKeys = new double[keys.length];
+
+         for (int i = 0; i < keys.length; i++) {
+            doubleKeys[i] = keys[i].toDouble();
+         }
+
+         return new DoubleIndexSort(doubleKeys, order);
+      }
+   }
+
+   /**
+    * SORT_NUMERIC compares toDouble(), which is pure for scalars.
+    */
+   private static IndexSort createNumericSort(Value[] keys, int order) {
+      double[] doubleKeys = new double[keys.length];
+
+      for (int i = 0; i < keys.length; i++) {
+         Value key = keys[i];
+
+         if (!isScalar(key)) {
+            return null;
+         }
+
+         double v = key.toDouble();
+
+         // NaN has no consistent order
+         if (Double.isNaN(v)) {
+            return null;
+         }
+
+         doubleKeys[i] = v;
+      }
+
+      return new DoubleIndexSort(doubleKeys, order);
+   }
+
+   /**
+    * SORT_STRING compares toString(), which is pure for scalars.
+    */
+   private static IndexSort createStringSort(Value[] keys, int order) {
+      String[] stringKeys = new String[keys.length];
+
+      for (int i = 0; i < keys.length; i++) {
+         Value key = keys[i];
+
+         if (!isScalar(key)) {
+            return null;
+         }
+
+         stringKeys[i] = key.toString();
+      }
+
+      return new StringIndexSort(stringKeys, order);
+   }
+
+   private static boolean isScalar(Value value) {
+      return (value instanceof LongValue
+              || value instanceof DoubleValue
+              || value instanceof StringValue);
+   }
+
+   /**
+    * Stable merge sort of a permutation index over extracted keys.
+    */
+   abstract static class IndexSort {
+
+      protected final int _order;
+
+      IndexSort(int order) {
+         _order = order;
+      }
+
+      /**
+       * Compares the keys at the two indexes, including the order.
+       */
+      abstract protected int compare(int a, int b);
+
+      /**
+       * Returns the sorted permutation of [0, size).
+       */
+      int[] sort(int size) {
+         int[] index = new int[size];
+
+         for (int i = 0; i < size; i++) {
+            index[i] = i;
+         }
+
+         int[] temp = index.clone();
+
+         mergeSort(temp, index, 0, size);
+
+         return index;
+      }
+
+      /**
+       * Sorts src[low, high) into dest, where both start with the same
+       * contents.
+       */
+      final void mergeSort(int[] src, int[] dest, int low, int high) {
+         int length = high - low;
+
+         if (length < INSERTION_SORT_MAX) {
+            for (int i = low + 1; i < high; i++) {
+               for (int j = i; j > low && compare(dest[j - 1], dest[j]) > 0; j--) {
+                  int swap = dest[j];
+                  dest[j] = dest[j - 1];
+                  dest[j - 1] = swap;
+               }
+            }
+
+            return;
+         }
+
+         int mid = (low + high) >>> 1;
+
+         mergeSort(dest, src, low, mid);
+         mergeSort(dest, src, mid, high);
+
+         if (compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, low, dest, low, length);
+            return;
+         }
+
+         merge(src, dest, low, mid, high);
+      }
+
+      /**
+       * Merges the sorted src[low, mid) and src[mid, high) into dest,
+       * preferring the left run on ties.
+       */
+      final void merge(int[] src, int[] dest, int low, int mid, int high) {
+         int p = low;
+         int q = mid;
+
+         for (int i = low; i < high; i++) {
+            if (q >= high || p < mid && compare(src[p], src[q]) <= 0) {
+               dest[i] = src[p++];
+            } else {
+               dest[i] = src[q++];
+            }
+         }
+      }
+   }
+
+   static final class LongIndexSort extends IndexSort {
+
+      private final long[] _keys;
+
+      LongIndexSort(long[] keys, int order) {
+         super(order);
+
+         _keys = keys;
+      }
+
+      @Override
+      protected int compare(int a, int b) {
+         long aKey = _keys[a];
+         long bKey = _keys[b];
+
+         if (aKey == bKey) {
+            return 0;
+         } else if (aKey < bKey) {
+            return -_order;
+         } else {
+            return _order;
+         }
+      }
+   }
+
+   static final class DoubleIndexSort extends IndexSort {
+
+      private final double[] _keys;
+
+      DoubleIndexSort(double[] keys, int order) {
+         super(order);
+
+         _keys = keys;
+      }
+
+      @Override
+      protected int compare(int a, int b) {
+         double aKey = _keys[a];
+         double bKey = _keys[b];
+
+         if (aKey == bKey) {
+            return 0;
+         } else if (aKey < bKey) {
+            return -_order;
+         } else {
+            return _order;
+         }
+      }
+   }
+
+   static final class StringIndexSort extends IndexSort {
+
+      private final String[] _keys;
+
+      StringIndexSort(String[] keys, int order) {
+         super(order);
+
+         _keys = keys;
+      }
+
+      @Override
+      protected int compare(int a, int b) {
+         return _keys[a].compareTo(_keys[b]) * _order;
+      }
+   }
+}
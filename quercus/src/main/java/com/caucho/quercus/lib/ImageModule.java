@@ -40,6 +40,10 @@ import com.caucho.vfs.ReadStream;
 import com.caucho.vfs.WriteStream;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import java.awt.*;
 import java.awt.color.ColorSpace;
 import java.awt.geom.*;
@@ -55,6 +59,8 @@ public class ImageModule extends AbstractQuercusModule {
 
    private static final Logger log = Logger.getLogger(ImageModule.class.getName());
    private static final L10N L = new L10N(ImageModule.class);
+   // pixels a subsampled decode keeps for each destination pixel, per axis
+   private static final int SCALE_MARGIN = 4;
    public static final String GD_VERSION = "2.0.36";
    public static final int GD_MAJOR_VERSION = 2;
    public static final int GD_MINOR_VERSION = 0;
@@ -523,9 +529,9 @@ public class ImageModule extends AbstractQuercusModule {
               null);
 
       BufferedImage bufferedImage =
-              convolveOp.filter(image._bufferedImage, null);
+              convolveOp.filter(image.getImage(), null);
 
-      image._bufferedImage.getGraphics().drawImage(bufferedImage, 1, 0, null);
+      image.getImage().getGraphics().drawImage(bufferedImage, 1, 0, null);
       return true;
    }
 
@@ -534,7 +540,7 @@ public class ImageModule extends AbstractQuercusModule {
     */
    public static boolean imagecopy(QuercusImage dest, QuercusImage src,
            int dx, int dy, int sx, int sy, int w, int h) {
-      dest.getGraphics().drawImage(src._bufferedImage,
+      dest.getGraphics().drawImage(src.getImage(),
               dx, dy, dx + w, dy + h,
               sx, sy, sx + w, sy + h, null);
       return true;
@@ -549,7 +555,7 @@ public class ImageModule extends AbstractQuercusModule {
       BufferedImage rgba =
               new BufferedImage(dest.getWidth(), dest.getHeight(),
               BufferedImage.TYPE_INT_ARGB);
-      rgba.getGraphics().drawImage(src._bufferedImage, 0, 0, null);
+      rgba.getGraphics().drawImage(src.getImage(), 0, 0, null);
       BufferedImageOp rescaleOp =
               new RescaleOp(new float[]{1, 1, 1, ((float) pct) / 100},
               new float[]{0, 0, 0, 0},
@@ -573,7 +579,7 @@ public class ImageModule extends AbstractQuercusModule {
       BufferedImage rgba =
               new BufferedImage(dest.getWidth(), dest.getHeight(),
               BufferedImage.TYPE_INT_ARGB);
-      rgba.getGraphics().drawImage(src._bufferedImage, 0, 0, null);
+      rgba.getGraphics().drawImage(src.getImage(), 0, 0, null);
       BufferedImageOp rescaleOp =
               new RescaleOp(new float[]{1, 1, 1, ((float) pct) / 100},
               new float[]{0, 0, 0, 0},
@@ -583,7 +589,7 @@ public class ImageModule extends AbstractQuercusModule {
 
       ColorConvertOp colorConvertOp =
               new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_GRAY), null);
-      colorConvertOp.filter(dest._bufferedImage, dest._bufferedImage);
+      colorConvertOp.filter(dest.getImage(), dest.getImage());
 
       Graphics2D g = (Graphics2D) dest.getGraphics().create();
       g.setComposite(AlphaComposite.SrcOver);
@@ -599,10 +605,38 @@ public class ImageModule extends AbstractQuercusModule {
    public static boolean imagecopyresampled(QuercusImage dest, QuercusImage src,
            int dx, int dy, int sx, int sy,
            int dw, int dh, int sw, int sh) {
+      if (dest != src && 0 < dw && dw <= sw && 0 < dh && dh <= sh) {
+         ScaledImage scaled = src.getScaledImage(sx, sy, sw, sh, dw, dh);
+
+         Graphics2D destGraphics = dest.getGraphics();
+         Composite composite = destGraphics.getComposite();
+         boolean isBlend = AlphaComposite.SrcOver.equals(composite);
+
+         // the averaging copy handles plain blended or replacing copies
+         if (destGraphics.getTransform().isIdentity()
+                 && destGraphics.getClip() == null
+                 && (isBlend || AlphaComposite.Src.equals(composite))) {
+            ImageResampler.resample(dest.getImage(),
+                    dx, dy, dw, dh,
+                    scaled._image,
+                    scaled.getX(sx), scaled.getY(sy),
+                    scaled.getLength(sw), scaled.getLength(sh),
+                    isBlend);
+
+            return true;
+         }
+
+         Graphics2D g = (Graphics2D) destGraphics.create();
+         g.setRenderingHint(RenderingHints.KEY_RENDERING,
+                 RenderingHints.VALUE_RENDER_QUALITY);
+         scaled.draw(g, dx, dy, dw, dh, sx, sy, sw, sh);
+         return true;
+      }
+
       Graphics2D g = (Graphics2D) dest.getGraphics().create();
       g.setRenderingHint(RenderingHints.KEY_RENDERING,
               RenderingHints.VALUE_RENDER_QUALITY);
-      g.drawImage(src._bufferedImage,
+      g.drawImage(src.getImage(),
               dx, dy, dx + dw, dy + dh,
               sx, sy, sx + sw, sy + sh, null);
       g.setRenderingHint(RenderingHints.KEY_RENDERING,
@@ -617,9 +651,17 @@ public class ImageModule extends AbstractQuercusModule {
            int dx, int dy, int sx, int sy,
            int dw, int dh, int sw, int sh) {
       Graphics2D g = (Graphics2D) dest.getGraphics().create();
-      g.drawImage(src._bufferedImage,
-              dx, dy, dx + dw, dy + dh,
-              sx, sy, sx + sw, sy + sh, null);
+
+      if (dest != src) {
+         ScaledImage scaled = src.getScaledImage(sx, sy, sw, sh, dw, dh);
+
+         scaled.draw(g, dx, dy, dw, dh, sx, sy, sw, sh);
+      } else {
+         g.drawImage(src.getImage(),
+                 dx, dy, dx + dw, dy + dh,
+                 sx, sy, sx + sw, sy + sh, null);
+      }
+
       return true;
    }
 
@@ -1122,12 +1164,12 @@ public class ImageModule extends AbstractQuercusModule {
             WriteStream os = path.openWrite();
 
             try {
-               ImageIO.write(image._bufferedImage, "gif", os);
+               ImageIO.write(image.getImage(), "gif", os);
             } finally {
                os.close();
             }
          } else {
-            ImageIO.write(image._bufferedImage, "gif", env.getOut());
+            ImageIO.write(image.getImage(), "gif", env.getOut());
          }
 
          return true;
@@ -1172,12 +1214,12 @@ public class ImageModule extends AbstractQuercusModule {
             WriteStream os = path.openWrite();
 
             try {
-               ImageIO.write(image._bufferedImage, "jpeg", os);
+               ImageIO.write(image.getImage(), "jpeg", os);
             } finally {
                os.close();
             }
          } else {
-            ImageIO.write(image._bufferedImage, "jpeg", env.getOut());
+            ImageIO.write(image.getImage(), "jpeg", env.getOut());
          }
 
          return true;
@@ -1232,12 +1274,12 @@ public class ImageModule extends AbstractQuercusModule {
             WriteStream os = path.openWrite();
 
             try {
-               ImageIO.write(image._bufferedImage, "png", os);
+               ImageIO.write(image.getImage(), "png", os);
             } finally {
                os.close();
             }
          } else {
-            ImageIO.write(image._bufferedImage, "png", env.getOut());
+            ImageIO.write(image.getImage(), "png", env.getOut());
          }
 
          return true;
@@ -1801,34 +1843,101 @@ public class ImageModule extends AbstractQuercusModule {
       String _mime;
    }
 
+   /**
+    * Source pixels for a downscale.  The image holds the region at (x, y)
+    * of the full image, subsampled by factor.
+    */
+   static class ScaledImage {
+
+      final BufferedImage _image;
+      final int _x;
+      final int _y;
+      final int _width;
+      final int _height;
+      final int _factor;
+
+      ScaledImage(BufferedImage image, int x, int y,
+              int width, int height, int factor) {
+         _image = image;
+         _x = x;
+         _y = y;
+         _width = width;
+         _height = height;
+         _factor = factor;
+      }
+
+      /**
+       * True if the image is a decode of the region at least as fine as
+       * the factor.
+       */
+      boolean isMatch(int x, int y, int width, int height, int factor) {
+         return (_x == x && _y == y
+                 && _width == width && _height == height
+                 && _factor <= factor);
+      }
+
+      double getX(int x) {
+         return (x - _x) / (double) _factor;
+      }
+
+      double getY(int y) {
+         return (y - _y) / (double) _factor;
+      }
+
+      double getLength(int length) {
+         return length / (double) _factor;
+      }
+
+      /**
+       * Draws the source region (sx, sy, sw, sh), in full image
+       * coordinates, to the destination rectangle.
+       */
+      void draw(Graphics2D g, int dx, int dy, int dw, int dh,
+              int sx, int sy, int sw, int sh) {
+         g.drawImage(_image,
+                 dx, dy, dx + dw, dy + dh,
+                 (int) Math.round(getX(sx)),
+                 (int) Math.round(getY(sy)),
+                 (int) Math.round(getX(sx + sw)),
+                 (int) Math.round(getY(sy + sh)),
+                 null);
+      }
+   }
+
    public static class QuercusImage extends ResourceValue {
 
       private HashMap<StringValue, Font> _fontMap = new HashMap<StringValue, Font>();
       private Font[] _fontArray = new Font[6];
       private int _width;
       private int _height;
-      BufferedImage _bufferedImage;
+      private BufferedImage _bufferedImage;
       private Graphics2D _graphics;
       private boolean _isInterlace;
       private BufferedImage _brush;
       private int[] _style;
       private int _thickness;
       private boolean _isToFill = false;
+      // encoded image, until the pixels are needed
+      private byte[] _data;
+      // last subsampled decode of _data
+      private ScaledImage _scaled;
+      // int raster of _bufferedImage for the pixel functions
+      private int[] _pixels;
+      private int _pixelOffset;
+      private int _scanlineStride;
+      private int _alphaMask;
 
       public QuercusImage(int width, int height) {
          _width = width;
          _height = height;
-         _bufferedImage = new BufferedImage(width, height,
-                 BufferedImage.TYPE_INT_RGB);
-         _graphics = (Graphics2D) _bufferedImage.getGraphics();
+
+         setImage(new BufferedImage(width, height,
+                 BufferedImage.TYPE_INT_RGB));
       }
 
       public QuercusImage(InputStream inputStream) {
          try {
-            _bufferedImage = ImageIO.read(inputStream);
-            _width = _bufferedImage.getWidth(null);
-            _height = _bufferedImage.getHeight(null);
-            _graphics = (Graphics2D) _bufferedImage.getGraphics();
+            init(readAll(inputStream));
          } catch (IOException e) {
             throw new QuercusException(e);
          }
@@ -1836,13 +1945,182 @@ public class ImageModule extends AbstractQuercusModule {
 
       public QuercusImage(Env env, Path filename) {
          try {
-            _bufferedImage = ImageIO.read(filename.openRead());
-            _width = _bufferedImage.getWidth(null);
-            _height = _bufferedImage.getHeight(null);
-            _graphics = (Graphics2D) _bufferedImage.getGraphics();
+            ReadStream is = filename.openRead();
+
+            try {
+               init(readAll(is));
+            } finally {
+               is.close();
+            }
+         } catch (IOException e) {
+            throw new QuercusException(e);
+         }
+      }
+
+      /**
+       * Reads the size from the image header.  The pixels are decoded on
+       * first use, so a thumbnail copy can decode a subsampled image
+       * instead of the full one.
+       */
+      private void init(byte[] data)
+              throws IOException {
+         ImageReader reader = openReader(data);
+
+         try {
+            _width = reader.getWidth(0);
+            _height = reader.getHeight(0);
+         } finally {
+            closeReader(reader);
+         }
+
+         _data = data;
+      }
+
+      private static byte[] readAll(InputStream is)
+              throws IOException {
+         ByteArrayOutputStream bos = new ByteArrayOutputStream();
+         byte[] buffer = new byte[8192];
+         int len;
+
+         while ((len = is.read(buffer, 0, buffer.length)) > 0) {
+            bos.write(buffer, 0, len);
+         }
+
+         return bos.toByteArray();
+      }
+
+      private static ImageReader openReader(byte[] data)
+              throws IOException {
+         ImageInputStream iis =
+                 new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+
+         Iterator<ImageReader> iter = ImageIO.getImageReaders(iis);
+
+         if (!iter.hasNext()) {
+            iis.close();
+
+            throw new QuercusException(L.l("unknown image format"));
+         }
+
+         ImageReader reader = iter.next();
+
+         reader.setInput(iis, true, true);
+
+         return reader;
+      }
+
+      private static void closeReader(ImageReader reader)
+              throws IOException {
+         Object input = reader.getInput();
+
+         reader.dispose();
+
+         if (input instanceof ImageInputStream) {
+            ((ImageInputStream) input).close();
+         }
+      }
+
+      private static BufferedImage read(byte[] data, Rectangle region,
+              int factor)
+              throws IOException {
+         ImageReader reader = openReader(data);
+
+         try {
+            ImageReadParam param = reader.getDefaultReadParam();
+
+            if (region != null) {
+               param.setSourceRegion(region);
+               param.setSourceSubsampling(factor, factor, 0, 0);
+            }
+
+            return reader.read(0, param);
+         } finally {
+            closeReader(reader);
+         }
+      }
+
+      /**
+       * Returns the image, decoding it if necessary.
+       */
+      BufferedImage getImage() {
+         if (_bufferedImage == null) {
+            try {
+               setImage(read(_data, null, 1));
+            } catch (IOException e) {
+               throw new QuercusException(e);
+            }
+
+            _data = null;
+            _scaled = null;
+         }
+
+         return _bufferedImage;
+      }
+
+      private void setImage(BufferedImage image) {
+         _bufferedImage = image;
+         _graphics = (Graphics2D) image.getGraphics();
+
+         _pixels = null;
+
+         int type = image.getType();
+         WritableRaster raster = image.getRaster();
+
+         if ((type == BufferedImage.TYPE_INT_RGB
+                 || type == BufferedImage.TYPE_INT_ARGB)
+                 && raster.getDataBuffer() instanceof DataBufferInt
+                 && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            SinglePixelPackedSampleModel sampleModel =
+                    (SinglePixelPackedSampleModel) raster.getSampleModel();
+
+            _pixels = buffer.getData();
+            _scanlineStride = sampleModel.getScanlineStride();
+            _pixelOffset = (buffer.getOffset()
+                    - raster.getSampleModelTranslateY() * _scanlineStride
+                    - raster.getSampleModelTranslateX());
+            _alphaMask = type == BufferedImage.TYPE_INT_RGB ? 0xff000000 : 0;
+         }
+      }
+
+      /**
+       * Returns the pixels to scale the region (sx, sy, sw, sh) down to
+       * dw x dh.  An image which hasn't been decoded is read subsampled,
+       * keeping SCALE_MARGIN times the destination size for the averaging,
+       * and stays undecoded for later operations.
+       */
+      ScaledImage getScaledImage(int sx, int sy, int sw, int sh,
+              int dw, int dh) {
+         if (_bufferedImage != null || dw <= 0 || dh <= 0
+                 || sx < 0 || sy < 0
+                 || _width < sx + sw || _height < sy + sh) {
+            return new ScaledImage(getImage(), 0, 0, _width, _height, 1);
+         }
+
+         int factor = Math.min(sw / (SCALE_MARGIN * dw), sh / (SCALE_MARGIN * dh));
+
+         if (factor < 2) {
+            return new ScaledImage(getImage(), 0, 0, _width, _height, 1);
+         }
+
+         ScaledImage scaled = _scaled;
+
+         if (scaled != null && scaled.isMatch(sx, sy, sw, sh, factor)) {
+            return scaled;
+         }
+
+         Rectangle region = new Rectangle(sx, sy, sw, sh);
+
+         try {
+            scaled = new ScaledImage(read(_data, region, factor),
+                    sx, sy, sw, sh, factor);
          } catch (IOException e) {
             throw new QuercusException(e);
          }
+
+         _scaled = scaled;
+
+         return scaled;
       }
 
       @Override
@@ -1859,14 +2137,39 @@ public class ImageModule extends AbstractQuercusModule {
       }
 
       public int getPixel(int x, int y) {
-         return _bufferedImage.getRGB(x, y);
+         BufferedImage image = getImage();
+         int[] pixels = _pixels;
+
+         if (pixels == null) {
+            return image.getRGB(x, y);
+         }
+
+         if (x < 0 || _width <= x || y < 0 || _height <= y) {
+            throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
+         }
+
+         return pixels[_pixelOffset + y * _scanlineStride + x] | _alphaMask;
       }
 
       public void setPixel(int x, int y, int color) {
-         _bufferedImage.setRGB(x, y, color);
+         BufferedImage image = getImage();
+         int[] pixels = _pixels;
+
+         if (pixels == null) {
+            image.setRGB(x, y, color);
+            return;
+         }
+
+         if (x < 0 || _width <= x || y < 0 || _height <= y) {
+            throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
+         }
+
+         pixels[_pixelOffset + y * _scanlineStride + x] = color & ~_alphaMask;
       }
 
       public Graphics2D getGraphics() {
+         getImage();
+
          return _graphics;
       }
 
@@ -1978,11 +2281,11 @@ public class ImageModule extends AbstractQuercusModule {
       }
 
       public int getWidth() {
-         return _bufferedImage.getWidth(null);
+         return _width;
       }
 
       public int getHeight() {
-         return _bufferedImage.getHeight(null);
+         return _height;
       }
 
       public void fill(Shape shape, int color) {
@@ -2065,7 +2368,7 @@ public class ImageModule extends AbstractQuercusModule {
       }
 
       public void setBrush(QuercusImage image) {
-         _brush = image._bufferedImage;
+         _brush = image.getImage();
       }
 
       public BufferedImage getBrush() {
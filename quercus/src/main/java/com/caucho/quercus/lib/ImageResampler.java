@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ */
+package com.caucho.quercus.lib;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+import com.caucho.env.thread.ThreadPool;
+
+/**
+ * Area averaging downscale for imagecopyresampled().
+ *
+ * Each destination pixel is the coverage weighted average of the source
+ * pixels under it, like gd, instead of the bilinear sample Graphics2D
+ * takes, which drops most of the source on large reductions.  Alpha is
+ * averaged premultiplied and the result is drawn over the destination
+ * when blending is on.
+ *
+ * Large copies are split into bands of destination rows which run on the
+ * thread pool.  The bands read the source and write disjoint rows of the
+ * destination, so they don't share any state.
+ */
+final class ImageResampler {
+
+   // source pixels below which the copy stays on the calling thread
+   private static final int PARALLEL_MIN = 256 * 1024;
+   private static final int BAND_MIN = 8;
+   private static final int PARALLEL_MAX
+           = Math.min(8, Runtime.getRuntime().availableProcessors());
+
+   private final BufferedImage _dest;
+   private final BufferedImage _src;
+   private final boolean _isBlend;
+
+   private final int _destX;
+   private final int _width;
+
+   private final double _srcY;
+   private final double _scaleY;
+   private final int _srcHeight;
+
+   // source columns under each destination column, with the coverage of
+   // the first and last one
+   private final int[] _xStart;
+   private final int[] _xEnd;
+   private final double[] _xFirst;
+   private final double[] _xLast;
+   private final int _srcMinX;
+   private final int _srcMaxX;
+
+   // source raster for the image types the decoders return, read
+   // directly instead of through getRGB
+   private int[] _srcInts;
+   private byte[] _srcBytes;
+   private int _srcOffset;
+   private int _srcStride;
+   private int _srcPixelStride;
+   private int _srcAlphaMask;
+   private int _redOffset;
+   private int _greenOffset;
+   private int _blueOffset;
+   private int _alphaOffset = -1;
+
+   private ImageResampler(BufferedImage dest, int destX, int width,
+           BufferedImage src, double sx, double scaleX,
+           double sy, double scaleY, int srcXOffset, boolean isBlend) {
+      _dest = dest;
+      _src = src;
+      _isBlend = isBlend;
+      _destX = destX;
+      _width = width;
+      _srcY = sy;
+      _scaleY = scaleY;
+      _srcHeight = src.getHeight();
+
+      int srcWidth = src.getWidth();
+
+      _xStart = new int[width];
+      _xEnd = new int[width];
+      _xFirst = new double[width];
+      _xLast = new double[width];
+
+      int min = srcWidth;
+      int max = 0;
+
+      for (int i = 0; i < width; i++) {
+         double x0 = sx + (srcXOffset + i) * scaleX;
+         double x1 = x0 + scaleX;
+
+         x0 = Math.max(x0, 0);
+         x1 = Math.min(x1, srcWidth);
+
+         if (x1 <= x0) {
+            continue;
+         }
+
+         int start = (int) x0;
+         int end = (int) Math.ceil(x1);
+
+         _xStart[i] = start;
+         _xEnd[i] = end;
+         _xFirst[i] = Math.min(x1, start + 1) - x0;
+         _xLast[i] = x1 - Math.max(x0, end - 1);
+
+         min = Math.min(min, start);
+         max = Math.max(max, end);
+      }
+
+      _srcMinX = min;
+      _srcMaxX = Math.max(min, max);
+
+      initRaster(src);
+   }
+
+   private void initRaster(BufferedImage src) {
+      int type = src.getType();
+      Raster raster = src.getRaster();
+      DataBuffer buffer = raster.getDataBuffer();
+      SampleModel sampleModel = raster.getSampleModel();
+
+      if (raster.getSampleModelTranslateX() != 0
+              || raster.getSampleModelTranslateY() != 0
+              || buffer.getNumBanks() != 1) {
+         return;
+      }
+
+      if ((type == BufferedImage.TYPE_INT_RGB
+              || type == BufferedImage.TYPE_INT_ARGB)
+              && buffer instanceof DataBufferInt
+              && sampleModel instanceof SinglePixelPackedSampleModel) {
+         _srcInts = ((DataBufferInt) buffer).getData();
+         _srcOffset = buffer.getOffset();
+         _srcStride = ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+         _srcAlphaMask = type == BufferedImage.TYPE_INT_RGB ? 0xff000000 : 0;
+      } else if ((type == BufferedImage.TYPE_3BYTE_BGR
+              || type == BufferedImage.TYPE_4BYTE_ABGR)
+              && buffer instanceof DataBufferByte
+              && sampleModel instanceof ComponentSampleModel) {
+         ComponentSampleModel componentModel = (ComponentSampleModel) sampleModel;
+         int[] bandOffsets = componentModel.getBandOffsets();
+
+         _srcBytes = ((DataBufferByte) buffer).getData();
+         _srcOffset = buffer.getOffset();
+         _srcStride = componentModel.getScanlineStride();
+         _srcPixelStride = componentModel.getPixelStride();
+         _redOffset = bandOffsets[0];
+         _greenOffset = bandOffsets[1];
+         _blueOffset = bandOffsets[2];
+
+         if (bandOffsets.length > 3) {
+            _alphaOffset = bandOffsets[3];
+         }
+      }
+   }
+
+   /**
+    * Reads the source pixels [x, x + width) of row y as ARGB.
+    */
+   private void readRow(int x, int y, int width, int[] row) {
+      if (_srcInts != null) {
+         int[] data = _srcInts;
+         int offset = _srcOffset + y * _srcStride + x;
+         int alphaMask = _srcAlphaMask;
+
+         for (int i = 0; i < width; i++) {
+            row[i] = data[offset + i] | alphaMask;
+         }
+      } else if (_srcBytes != null) {
+         byte[] data = _srcBytes;
+         int pixelStride = _srcPixelStride;
+         int offset = _srcOffset + y * _srcStride + x * pixelStride;
+         int redOffset = _redOffset;
+         int greenOffset = _greenOffset;
+         int blueOffset = _blueOffset;
+         int alphaOffset = _alphaOffset;
+
+         for (int i = 0; i < width; i++) {
+            int alpha = alphaOffset < 0 ? 0xff : data[offset + alphaOffset] & 0xff;
+
+            row[i] = ((alpha << 24)
+                    | ((data[offset + redOffset] & 0xff) << 16)
+                    | ((data[offset + greenOffset] & 0xff) << 8)
+                    | (data[offset + blueOffset] & 0xff));
+
+            offset += pixelStride;
+         }
+      } else {
+         _src.getRGB(x, y, width, 1, row, 0, width);
+      }
+   }
+
+   /**
+    * Scales the source region [sx, sx + sw) x [sy, sy + sh) of src into
+    * the dw x dh rectangle at (dx, dy) of dest.  Destination pixels
+    * outside dest, or whose source falls outside src, are left alone.
+    *
+    * @param isBlend true to draw over the destination, false to replace it
+    */
+   static void resample(BufferedImage dest,
+           int dx, int dy, int dw, int dh,
+           BufferedImage src,
+           double sx, double sy, double sw, double sh,
+           boolean isBlend) {
+      int x0 = Math.max(dx, 0);
+      int x1 = Math.min(dx + dw, dest.getWidth());
+      final int y0 = Math.max(dy, 0);
+      final int y1 = Math.min(dy + dh, dest.getHeight());
+
+      if (x1 <= x0 || y1 <= y0) {
+         return;
+      }
+
+      double scaleY = sh / dh;
+
+      final ImageResampler resampler
+              = new ImageResampler(dest, x0, x1 - x0,
+              src, sx, sw / dw, sy - dy * scaleY, scaleY, x0 - dx, isBlend);
+
+      int rows = y1 - y0;
+      long work = (long) (resampler._srcMaxX - resampler._srcMinX)
+              * (long) Math.min(sh, src.getHeight());
+
+      int bandCount = Math.min(PARALLEL_MAX, rows / BAND_MIN);
+
+      if (work < PARALLEL_MIN || bandCount < 2) {
+         resampler.resampleRows(y0, y1);
+
+         return;
+      }
+
+      Runnable[] tasks = new Runnable[bandCount];
+
+      for (int i = 0; i < bandCount; i++) {
+         final int low = y0 + (int) ((long) rows * i / bandCount);
+         final int high = y0 + (int) ((long) rows * (i + 1) / bandCount);
+
+         tasks[i] = new Runnable() {
+            public void run() {
+               resampler.resampleRows(low, high);
+            }
+         };
+      }
+
+      ThreadPool.getCurrent().executeAll(tasks);
+   }
+
+   /**
+    * Resamples the destination rows [low, high).
+    */
+   private void resampleRows(int low, int high) {
+      int width = _width;
+      int srcMinX = _srcMinX;
+      int srcWidth = _srcMaxX - srcMinX;
+
+      int[] srcRow = new int[Math.max(srcWidth, 1)];
+      int[] destRow = new int[width];
+
+      double[] sumA = new double[width];
+      double[] sumR = new double[width];
+      double[] sumG = new double[width];
+      double[] sumB = new double[width];
+      double[] sumW = new double[width];
+
+      for (int y = low; y < high; y++) {
+         double y0 = _srcY + y * _scaleY;
+         double y1 = y0 + _scaleY;
+
+         y0 = Math.max(y0, 0);
+         y1 = Math.min(y1, _srcHeight);
+
+         if (y1 <= y0 || srcWidth <= 0) {
+            continue;
+         }
+
+         for (int i = 0; i < width; i++) {
+            sumA[i] = 0;
+            sumR[i] = 0;
+            sumG[i] = 0;
+            sumB[i] = 0;
+            sumW[i] = 0;
+         }
+
+         int yStart = (int) y0;
+         int yEnd = (int) Math.ceil(y1);
+
+         for (int sy = yStart; sy < yEnd; sy++) {
+            double wy = Math.min(y1, sy + 1) - Math.max(y0, sy);
+
+            readRow(srcMinX, sy, srcWidth, srcRow);
+
+            for (int i = 0; i < width; i++) {
+               int start = _xStart[i];
+               int end = _xEnd[i];
+
+               if (end <= start) {
+                  continue;
+               }
+
+               // the interior pixels are fully covered, so only the
+               // edges need weights
+               long ia = 0;
+               long ir = 0;
+               long ig = 0;
+               long ib = 0;
+
+               for (int sx = start + 1; sx < end - 1; sx++) {
+                  int argb = srcRow[sx - srcMinX];
+                  int pa = (argb >>> 24) & 0xff;
+
+                  ia += pa;
+                  ir += pa * ((argb >> 16) & 0xff);
+                  ig += pa * ((argb >> 8) & 0xff);
+                  ib += pa * (argb & 0xff);
+               }
+
+               double a = ia;
+               double r = ir;
+               double g = ig;
+               double b = ib;
+               double w = Math.max(end - start - 2, 0);
+
+               int argb = srcRow[start - srcMinX];
+               double wx = _xFirst[i];
+               double pa = wx * ((argb >>> 24) & 0xff);
+
+               a += pa;
+               r += pa * ((argb >> 16) & 0xff);
+               g += pa * ((argb >> 8) & 0xff);
+               b += pa * (argb & 0xff);
+               w += wx;
+
+               if (start < end - 1) {
+                  argb = srcRow[end - 1 - srcMinX];
+                  wx = _xLast[i];
+                  pa = wx * ((argb >>> 24) & 0xff);
+
+                  a += pa;
+                  r += pa * ((argb >> 16) & 0xff);
+                  g += pa * ((argb >> 8) & 0xff);
+                  b += pa * (argb & 0xff);
+                  w += wx;
+               }
+
+               sumA[i] += wy * a;
+               sumR[i] += wy * r;
+               sumG[i] += wy * g;
+               sumB[i] += wy * b;
+               sumW[i] += wy * w;
+            }
+         }
+
+         _dest.getRGB(_destX, y, width, 1, destRow, 0, width);
+
+         for (int i = 0; i < width; i++) {
+            if (sumW[i] <= 0) {
+               continue;
+            }
+
+            destRow[i] = composite(destRow[i],
+                    sumA[i] / sumW[i], sumR[i], sumG[i], sumB[i], sumA[i]);
+         }
+
+         _dest.setRGB(_destX, y, width, 1, destRow, 0, width);
+      }
+   }
+
+   /**
+    * Returns the averaged source color over (or instead of) the
+    * destination pixel.
+    *
+    * @param alpha the averaged source alpha, 0 to 255
+    * @param weight the sum of the alpha weights r, g and b are
+    * premultiplied by
+    */
+   private int composite(int dest, double alpha,
+           double r, double g, double b, double weight) {
+      double red;
+      double green;
+      double blue;
+
+      if (weight > 0) {
+         red = r / weight;
+         green = g / weight;
+         blue = b / weight;
+      } else {
+         red = green = blue = 0;
+      }
+
+      if (!_isBlend || alpha >= 255) {
+         return toArgb(alpha, red, green, blue);
+      }
+
+      double sa = alpha / 255;
+      double da = ((dest >>> 24) & 0xff) / 255.0;
+      double oa = sa + da * (1 - sa);
+
+      if (oa <= 0) {
+         return 0;
+      }
+
+      double dw = da * (1 - sa);
+
+      return toArgb(oa * 255,
+              (red * sa + ((dest >> 16) & 0xff) * dw) / oa,
+              (green * sa + ((dest >> 8) & 0xff) * dw) / oa,
+              (blue * sa + (dest & 0xff) * dw) / oa);
+   }
+
+   private static int toArgb(double a, double r, double g, double b) {
+      return ((toByte(a) << 24)
+              | (toByte(r) << 16)
+              | (toByte(g) << 8)
+              | toByte(b));
+   }
+
+   private static int toByte(double value) {
+      int v = (int) (value + 0.5);
+
+      if (v < 0) {
+         return 0;
+      } else if (v > 255) {
+         return 255;
+      } else {
+         return v;
+      }
+   }
+}
@@ -30,6 +30,8 @@ package com.caucho.quercus.lib;
 
 import com.caucho.quercus.annotation.Optional;
 import com.caucho.quercus.env.*;
+import com.caucho.quercus.lib.zlib.DeflaterPool;
+import com.caucho.quercus.lib.zlib.GZIPOutputStream;
 import com.caucho.quercus.module.AbstractQuercusModule;
 import com.caucho.quercus.module.ModuleStartupListener;
 import com.caucho.quercus.module.IniDefinitions;
@@ -37,11 +39,10 @@ import com.caucho.quercus.module.IniDefinition;
 import com.caucho.util.L10N;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * PHP output routines.
@@ -64,7 +65,9 @@ public class OutputModule extends AbstractQuercusModule
    private static class GZOutputPair {
 
       public StringBuilderOutputStream _tempStream;
-      public OutputStream _outputStream;
+      public DeflaterOutputStream _outputStream;
+      public DeflaterPool _deflaterPool;
+      public Deflater _deflater;
    }
    private static HashMap<Env, GZOutputPair> _gzOutputPairs = new HashMap<Env, GZOutputPair>();
    public static final int PHP_OUTPUT_HANDLER_START = 1;
@@ -525,12 +528,20 @@ public class OutputModule extends AbstractQuercusModule
                HttpModule.header(
                        env, env.createString("Content-Encoding: gzip"), true, 0);
 
-               pair._outputStream = new GZIPOutputStream(pair._tempStream);
+               pair._deflaterPool = DeflaterPool.GZIP;
+               pair._deflater = DeflaterPool.GZIP.allocate(
+                       Deflater.DEFAULT_COMPRESSION);
+               pair._outputStream = new GZIPOutputStream(
+                       pair._tempStream, pair._deflater, false);
             } else if (encoding == Encoding.DEFLATE) {
                HttpModule.header(
                        env, env.createString("Content-Encoding: deflate"), true, 0);
 
-               pair._outputStream = new DeflaterOutputStream(pair._tempStream);
+               pair._deflaterPool = DeflaterPool.DEFLATE;
+               pair._deflater = DeflaterPool.DEFLATE.allocate(
+                       Deflater.DEFAULT_COMPRESSION);
+               pair._outputStream = new DeflaterOutputStream(
+                       pair._tempStream, pair._deflater);
             }
          } catch (IOException e) {
             return BooleanValue.FALSE;
@@ -552,7 +563,11 @@ public class OutputModule extends AbstractQuercusModule
          pair._outputStream.flush();
 
          if ((state & (PHP_OUTPUT_HANDLER_END)) != 0) {
-            pair._outputStream.close();
+            pair._outputStream.finish();
+
+            pair._deflaterPool.free(pair._deflater);
+
+            env.setGzStream(null);
          }
       } catch (IOException e) {
          return BooleanValue.FALSE;
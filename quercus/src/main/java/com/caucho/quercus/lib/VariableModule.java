@@ -28,6 +28,8 @@
  */
 package com.caucho.quercus.lib;
 
+import com.caucho.env.meter.CountMeter;
+import com.caucho.env.meter.MeterService;
 import com.caucho.quercus.QuercusModuleException;
 import com.caucho.quercus.annotation.Optional;
 import com.caucho.quercus.annotation.PassThru;
@@ -58,6 +60,8 @@ public class VariableModule extends AbstractQuercusModule {
    private static final Logger log = Logger.getLogger(VariableModule.class.getName());
    private static final L10N L = new L10N(VariableModule.class);
    private static final LruCache<UnserializeKey, UnserializeCacheEntry> _unserializeCache = new LruCache<UnserializeKey, UnserializeCacheEntry>(256);
+   private static final CountMeter _unserializeHitMeter = MeterService.createCountMeter("Quercus|Unserialize|Hit");
+   private static final CountMeter _unserializeMissMeter = MeterService.createCountMeter("Quercus|Unserialize|Miss");
 
    /**
     * Returns a constant
@@ -677,10 +681,14 @@ public class VariableModule extends AbstractQuercusModule {
          v = entry.getValue(env);
 
          if (v != null) {
+            _unserializeHitMeter.start();
+
             return v;
          }
       }
 
+      _unserializeMissMeter.start();
+
       UnserializeReader is = null;
 
       try {
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Nam Nguyen
+ */
+package com.caucho.quercus.lib.date;
+
+import com.caucho.util.CharBuffer;
+import com.caucho.util.LruCache;
+import com.caucho.util.QDate;
+
+/**
+ * A date() or strftime() format string, compiled once and shared.
+ * Since pages format the same time over and over, the last result is
+ * kept with its time and timezone.
+ */
+final class DateFormatter {
+
+   private static final String DATE_CODES = "dDjlNSwzWFmMntLoYyaAgGhHiseIOPTZcrU";
+   private static final LruCache<String, DateFormatter> _dateCache = new LruCache<String, DateFormatter>(256);
+   private static final LruCache<String, DateFormatter> _strftimeCache = new LruCache<String, DateFormatter>(256);
+   private final String _format;
+   private final boolean _isStrftime;
+   // for date(), the format codes, with literal text where the code is 0
+   private final char[] _codes;
+   private final String[] _literals;
+   private volatile Entry _lastEntry;
+
+   private DateFormatter(String format, boolean isStrftime) {
+      _format = format;
+      _isStrftime = isStrftime;
+
+      if (isStrftime) {
+         _codes = null;
+         _literals = null;
+
+         return;
+      }
+
+      char[] codes = new char[format.length()];
+      String[] literals = new String[format.length()];
+      StringBuilder literal = new StringBuilder();
+      int count = 0;
+      int len = format.length();
+
+      for (int i = 0; i < len; i++) {
+         char ch = format.charAt(i);
+
+         if (ch == '\\' && i + 1 < len) {
+            literal.append(format.charAt(++i));
+         } else if (DATE_CODES.indexOf(ch) >= 0) {
+            if (literal.length() > 0) {
+               literals[count++] = literal.toString();
+               literal.setLength(0);
+            }
+
+            codes[count++] = ch;
+         } else {
+            literal.append(ch);
+         }
+      }
+
+      if (literal.length() > 0) {
+         literals[count++] = literal.toString();
+      }
+
+      _codes = new char[count];
+      _literals = new String[count];
+
+      System.arraycopy(codes, 0, _codes, 0, count);
+      System.arraycopy(literals, 0, _literals, 0, count);
+   }
+
+   /**
+    * Returns the compiled date() format.
+    */
+   static DateFormatter getDate(String format) {
+      return get(_dateCache, format, false);
+   }
+
+   /**
+    * Returns the strftime() format.
+    */
+   static DateFormatter getStrftime(String format) {
+      return get(_strftimeCache, format, true);
+   }
+
+   private static DateFormatter get(LruCache<String, DateFormatter> cache,
+           String format,
+           boolean isStrftime) {
+      DateFormatter formatter = cache.get(format);
+
+      if (formatter == null) {
+         formatter = cache.putIfNew(format, new DateFormatter(format, isStrftime));
+      }
+
+      return formatter;
+   }
+
+   /**
+    * Returns the last formatted value if it was for the same time and
+    * timezone, or null.
+    */
+   String getCached(String zoneId, long gmtTime) {
+      Entry entry = _lastEntry;
+
+      if (entry != null
+              && entry._gmtTime == gmtTime
+              && entry._zoneId.equals(zoneId)) {
+         return entry._value;
+      }
+
+      return null;
+   }
+
+   /**
+    * Formats the time in the calendar's timezone.
+    */
+   String format(QDate calendar, long gmtTime) {
+      String zoneId = calendar.getLocalTimeZone().getID();
+
+      String value = getCached(zoneId, gmtTime);
+
+      if (value != null) {
+         return value;
+      }
+
+      calendar.setGMTTime(gmtTime);
+
+      CharBuffer sb = new CharBuffer();
+
+      if (_isStrftime) {
+         calendar.format(sb, _format);
+      } else {
+         for (int i = 0; i < _codes.length; i++) {
+            if (_literals[i] != null) {
+               sb.append(_literals[i]);
+            } else {
+               DateModule.appendDateField(sb, _codes[i], calendar, gmtTime);
+            }
+         }
+      }
+
+      value = sb.toString();
+
+      _lastEntry = new Entry(zoneId, gmtTime, value);
+
+      return value;
+   }
+
+   @Override
+   public String toString() {
+      return getClass().getSimpleName() + "[" + _format + "]";
+   }
+
+   static final class Entry {
+
+      final String _zoneId;
+      final long _gmtTime;
+      final String _value;
+
+      Entry(String zoneId, long gmtTime, String value) {
+         _zoneId = zoneId;
+         _gmtTime = gmtTime;
+         _value = value;
+      }
+   }
+}
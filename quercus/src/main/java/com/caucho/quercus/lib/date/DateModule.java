@@ -328,7 +328,7 @@ public class DateModule extends AbstractQuercusModule {
          time = 1000 * phpTime;
       }
 
-      return QDate.formatGMT(time, format);
+      return DateFormatter.getStrftime(format).format(env.getGmtDate(), time);
    }
 
    /**
@@ -350,12 +350,20 @@ public class DateModule extends AbstractQuercusModule {
    }
 
    private String date(Env env, String format, long time, boolean isGMT) {
+      DateFormatter formatter = DateFormatter.getDate(format);
+      long now = 1000 * time;
+
       if (isGMT) {
-         return dateImpl(format, time, env.getGmtDate());
-      } else {
-         QDate calendar = env.getDate();
+         return formatter.format(env.getGmtDate(), now);
+      }
+
+      // env.getDate() can create a calendar, so check the cache first
+      String value = formatter.getCached(env.getDefaultTimeZone().getID(), now);
 
-         return dateImpl(format, time, calendar);
+      if (value != null) {
+         return value;
+      } else {
+         return formatter.format(env.getDate(), now);
       }
    }
 
@@ -365,378 +373,371 @@ public class DateModule extends AbstractQuercusModule {
    protected static String dateImpl(String format,
            long time,
            QDate calendar) {
-      long now = 1000 * time;
-
-      calendar.setGMTTime(now);
+      return DateFormatter.getDate(format).format(calendar, 1000 * time);
+   }
 
-      CharBuffer sb = new CharBuffer();
-      int len = format.length();
+   /**
+    * Appends a date() field for the calendar's current time.
+    */
+   static void appendDateField(CharBuffer sb,
+           char ch,
+           QDate calendar,
+           long now) {
+      switch (ch) {
+         //
+         // day
+         //
+
+         case 'd': {
+            int day = calendar.getDayOfMonth();
+            sb.append(day / 10);
+            sb.append(day % 10);
+            break;
+         }
 
-      for (int i = 0; i < len; i++) {
-         char ch = format.charAt(i);
+         case 'D': {
+            // subtract 1 to be zero-based for array
+            int day = calendar.getDayOfWeek() - 1;
 
-         switch (ch) {
-            //
-            // day
-            //
+            sb.append(_shortDayOfWeek[day]);
+            break;
+         }
 
-            case 'd': {
-               int day = calendar.getDayOfMonth();
-               sb.append(day / 10);
-               sb.append(day % 10);
-               break;
-            }
+         case 'j': {
+            int day = calendar.getDayOfMonth();
+            sb.append(day);
+            break;
+         }
 
-            case 'D': {
-               // subtract 1 to be zero-based for array
-               int day = calendar.getDayOfWeek() - 1;
+         case 'l': {
+            // subtract 1 to be zero-based for array
+            int day = calendar.getDayOfWeek() - 1;
 
-               sb.append(_shortDayOfWeek[day]);
-               break;
-            }
+            sb.append(_fullDayOfWeek[day]);
+            break;
+         }
 
-            case 'j': {
-               int day = calendar.getDayOfMonth();
-               sb.append(day);
-               break;
-            }
+         case 'N': {
+            int day = calendar.getDayOfWeek();
 
-            case 'l': {
-               // subtract 1 to be zero-based for array
-               int day = calendar.getDayOfWeek() - 1;
+            // Mon=1, Sun=7
+            day = day - 1;
 
-               sb.append(_fullDayOfWeek[day]);
-               break;
+            if (day == 0) {
+               day = 7;
             }
 
-            case 'N': {
-               int day = calendar.getDayOfWeek();
-
-               // Mon=1, Sun=7
-               day = day - 1;
-
-               if (day == 0) {
-                  day = 7;
-               }
+            sb.append(day);
+            break;
+         }
 
-               sb.append(day);
-               break;
-            }
+         case 'S': {
+            int day = calendar.getDayOfMonth();
 
-            case 'S': {
-               int day = calendar.getDayOfMonth();
-
-               switch (day) {
-                  case 1:
-                  case 21:
-                  case 31:
-                     sb.append("st");
-                     break;
-                  case 2:
-                  case 22:
-                     sb.append("nd");
-                     break;
-                  case 3:
-                  case 23:
-                     sb.append("rd");
-                     break;
-                  default:
-                     sb.append("th");
-                     break;
-               }
-               break;
+            switch (day) {
+               case 1:
+               case 21:
+               case 31:
+                  sb.append("st");
+                  break;
+               case 2:
+               case 22:
+                  sb.append("nd");
+                  break;
+               case 3:
+               case 23:
+                  sb.append("rd");
+                  break;
+               default:
+                  sb.append("th");
+                  break;
             }
+            break;
+         }
 
-            case 'w': {
-               int day = calendar.getDayOfWeek() - 1;
+         case 'w': {
+            int day = calendar.getDayOfWeek() - 1;
 
-               sb.append(day);
-               break;
-            }
+            sb.append(day);
+            break;
+         }
 
-            case 'z': {
-               int day = calendar.getDayOfYear();
+         case 'z': {
+            int day = calendar.getDayOfYear();
 
-               sb.append(day);
-               break;
-            }
+            sb.append(day);
+            break;
+         }
 
-            //
-            // week
-            //
+         //
+         // week
+         //
 
-            case 'W': {
-               int week = calendar.getWeek();
+         case 'W': {
+            int week = calendar.getWeek();
 
-               sb.append(week / 10);
-               sb.append(week % 10);
-               break;
-            }
+            sb.append(week / 10);
+            sb.append(week % 10);
+            break;
+         }
 
-            //
-            // month
-            //
+         //
+         // month
+         //
 
-            case 'F': {
-               int month = calendar.getMonth();
-               sb.append(_fullMonth[month]);
-               break;
-            }
+         case 'F': {
+            int month = calendar.getMonth();
+            sb.append(_fullMonth[month]);
+            break;
+         }
 
-            case 'm': {
-               int month = calendar.getMonth() + 1;
-               sb.append(month / 10);
-               sb.append(month % 10);
-               break;
-            }
+         case 'm': {
+            int month = calendar.getMonth() + 1;
+            sb.append(month / 10);
+            sb.append(month % 10);
+            break;
+         }
 
-            case 'M': {
-               int month = calendar.getMonth();
-               sb.append(_shortMonth[month]);
-               break;
-            }
+         case 'M': {
+            int month = calendar.getMonth();
+            sb.append(_shortMonth[month]);
+            break;
+         }
 
-            case 'n': {
-               int month = calendar.getMonth() + 1;
-               sb.append(month);
-               break;
-            }
+         case 'n': {
+            int month = calendar.getMonth() + 1;
+            sb.append(month);
+            break;
+         }
 
-            case 't': {
-               int days = calendar.getDaysInMonth();
-               sb.append(days);
-               break;
-            }
+         case 't': {
+            int days = calendar.getDaysInMonth();
+            sb.append(days);
+            break;
+         }
 
-            //
-            // year
-            //
+         //
+         // year
+         //
 
-            case 'L': {
-               if (calendar.isLeapYear()) {
-                  sb.append(1);
-               } else {
-                  sb.append(0);
-               }
-               break;
+         case 'L': {
+            if (calendar.isLeapYear()) {
+               sb.append(1);
+            } else {
+               sb.append(0);
             }
+            break;
+         }
 
-            case 'o': {
-               int year = calendar.getYear();
-
-               int week = calendar.getWeek();
-               int month = calendar.getMonth();
+         case 'o': {
+            int year = calendar.getYear();
 
-               if (month > week) {
-                  year++;
-               } else if (week == 53) {
-                  year--;
-               }
+            int week = calendar.getWeek();
+            int month = calendar.getMonth();
 
-               sb.append((year / 1000) % 10);
-               sb.append((year / 100) % 10);
-               sb.append((year / 10) % 10);
-               sb.append((year) % 10);
-               break;
+            if (month > week) {
+               year++;
+            } else if (week == 53) {
+               year--;
             }
 
-            case 'Y': {
-               int year = calendar.getYear();
+            sb.append((year / 1000) % 10);
+            sb.append((year / 100) % 10);
+            sb.append((year / 10) % 10);
+            sb.append((year) % 10);
+            break;
+         }
 
-               sb.append((year / 1000) % 10);
-               sb.append((year / 100) % 10);
-               sb.append((year / 10) % 10);
-               sb.append((year) % 10);
-               break;
-            }
+         case 'Y': {
+            int year = calendar.getYear();
 
-            case 'y': {
-               int year = calendar.getYear();
+            sb.append((year / 1000) % 10);
+            sb.append((year / 100) % 10);
+            sb.append((year / 10) % 10);
+            sb.append((year) % 10);
+            break;
+         }
 
-               sb.append((year / 10) % 10);
-               sb.append((year) % 10);
-               break;
-            }
+         case 'y': {
+            int year = calendar.getYear();
 
-            //
-            // time
-            //
+            sb.append((year / 10) % 10);
+            sb.append((year) % 10);
+            break;
+         }
 
-            case 'a': {
-               int hour = calendar.getHour();
+         //
+         // time
+         //
 
-               if (hour < 12) {
-                  sb.append("am");
-               } else {
-                  sb.append("pm");
-               }
-               break;
+         case 'a': {
+            int hour = calendar.getHour();
+
+            if (hour < 12) {
+               sb.append("am");
+            } else {
+               sb.append("pm");
             }
+            break;
+         }
 
-            case 'A': {
-               int hour = calendar.getHour();
+         case 'A': {
+            int hour = calendar.getHour();
 
-               if (hour < 12) {
-                  sb.append("AM");
-               } else {
-                  sb.append("PM");
-               }
-               break;
+            if (hour < 12) {
+               sb.append("AM");
+            } else {
+               sb.append("PM");
             }
+            break;
+         }
 
-            case 'g': {
-               int hour = calendar.getHour() % 12;
-
-               if (hour == 0) {
-                  hour = 12;
-               }
+         case 'g': {
+            int hour = calendar.getHour() % 12;
 
-               sb.append(hour);
-               break;
+            if (hour == 0) {
+               hour = 12;
             }
 
-            case 'G': {
-               int hour = calendar.getHour();
+            sb.append(hour);
+            break;
+         }
 
-               sb.append(hour);
-               break;
-            }
+         case 'G': {
+            int hour = calendar.getHour();
 
-            case 'h': {
-               int hour = calendar.getHour() % 12;
+            sb.append(hour);
+            break;
+         }
 
-               if (hour == 0) {
-                  hour = 12;
-               }
+         case 'h': {
+            int hour = calendar.getHour() % 12;
 
-               sb.append(hour / 10);
-               sb.append(hour % 10);
-               break;
+            if (hour == 0) {
+               hour = 12;
             }
 
-            case 'H': {
-               int hour = calendar.getHour();
+            sb.append(hour / 10);
+            sb.append(hour % 10);
+            break;
+         }
 
-               sb.append(hour / 10);
-               sb.append(hour % 10);
-               break;
-            }
+         case 'H': {
+            int hour = calendar.getHour();
 
-            case 'i': {
-               int minutes = calendar.getMinute();
+            sb.append(hour / 10);
+            sb.append(hour % 10);
+            break;
+         }
 
-               sb.append(minutes / 10);
-               sb.append(minutes % 10);
-               break;
-            }
+         case 'i': {
+            int minutes = calendar.getMinute();
 
-            case 's': {
-               int seconds = calendar.getSecond();
+            sb.append(minutes / 10);
+            sb.append(minutes % 10);
+            break;
+         }
 
-               sb.append(seconds / 10);
-               sb.append(seconds % 10);
-               break;
-            }
+         case 's': {
+            int seconds = calendar.getSecond();
 
-            //
-            // timezone
-            //
+            sb.append(seconds / 10);
+            sb.append(seconds % 10);
+            break;
+         }
 
-            case 'e': {
-               TimeZone zone = calendar.getLocalTimeZone();
+         //
+         // timezone
+         //
 
-               sb.append(zone.getID());
-               break;
-            }
+         case 'e': {
+            TimeZone zone = calendar.getLocalTimeZone();
 
-            case 'I': {
-               if (calendar.isDST()) {
-                  sb.append('1');
-               } else {
-                  sb.append('0');
-               }
-               break;
+            sb.append(zone.getID());
+            break;
+         }
+
+         case 'I': {
+            if (calendar.isDST()) {
+               sb.append('1');
+            } else {
+               sb.append('0');
             }
+            break;
+         }
 
-            case 'O': {
-               long offset = calendar.getZoneOffset();
+         case 'O': {
+            long offset = calendar.getZoneOffset();
 
-               int minute = (int) (offset / (60 * 1000));
+            int minute = (int) (offset / (60 * 1000));
 
-               if (minute < 0) {
-                  sb.append('-');
-                  minute = -1 * minute;
-               } else {
-                  sb.append('+');
-               }
-
-               sb.append((minute / 60) / 10);
-               sb.append((minute / 60) % 10);
-               sb.append((minute % 60) % 10);
-               sb.append(minute % 10);
-               break;
+            if (minute < 0) {
+               sb.append('-');
+               minute = -1 * minute;
+            } else {
+               sb.append('+');
             }
 
-            case 'P': {
-               long offset = calendar.getZoneOffset();
+            sb.append((minute / 60) / 10);
+            sb.append((minute / 60) % 10);
+            sb.append((minute % 60) % 10);
+            sb.append(minute % 10);
+            break;
+         }
 
-               int minute = (int) (offset / (60 * 1000));
+         case 'P': {
+            long offset = calendar.getZoneOffset();
 
-               if (minute < 0) {
-                  sb.append('-');
-                  minute = -1 * minute;
-               } else {
-                  sb.append('+');
-               }
+            int minute = (int) (offset / (60 * 1000));
 
-               sb.append((minute / 60) / 10);
-               sb.append((minute / 60) % 10);
-               sb.append(':');
-               sb.append((minute % 60) % 10);
-               sb.append(minute % 10);
-               break;
+            if (minute < 0) {
+               sb.append('-');
+               minute = -1 * minute;
+            } else {
+               sb.append('+');
             }
 
-            case 'T': {
-               TimeZone zone = calendar.getLocalTimeZone();
-
-               sb.append(zone.getDisplayName(calendar.isDST(), TimeZone.SHORT));
-               break;
-            }
+            sb.append((minute / 60) / 10);
+            sb.append((minute / 60) % 10);
+            sb.append(':');
+            sb.append((minute % 60) % 10);
+            sb.append(minute % 10);
+            break;
+         }
 
-            case 'Z': {
-               long offset = calendar.getZoneOffset();
+         case 'T': {
+            TimeZone zone = calendar.getLocalTimeZone();
 
-               sb.append(offset / (1000));
-               break;
-            }
+            sb.append(zone.getDisplayName(calendar.isDST(), TimeZone.SHORT));
+            break;
+         }
 
-            case 'c': {
-               sb.append(calendar.printISO8601());
-               break;
-            }
+         case 'Z': {
+            long offset = calendar.getZoneOffset();
 
-            case 'r': {
-               calendar.printRFC2822(sb);
-               break;
-            }
+            sb.append(offset / (1000));
+            break;
+         }
 
-            case 'U': {
-               sb.append(now / 1000);
-               break;
-            }
+         case 'c': {
+            sb.append(calendar.printISO8601());
+            break;
+         }
 
-            case '\\':
-               sb.append(format.charAt(++i));
-               break;
+         case 'r': {
+            calendar.printRFC2822(sb);
+            break;
+         }
 
-            default:
-               sb.append(ch);
-               break;
+         case 'U': {
+            sb.append(now / 1000);
+            break;
          }
-      }
 
-      return sb.toString();
+         default:
+            sb.append(ch);
+            break;
+      }
    }
 
    /**
@@ -909,7 +910,7 @@ public class DateModule extends AbstractQuercusModule {
          time = 1000 * phpTime;
       }
 
-      return QDate.formatLocal(time, format);
+      return DateFormatter.getStrftime(format).format(env.getLocalDate(), time);
    }
 
    /**
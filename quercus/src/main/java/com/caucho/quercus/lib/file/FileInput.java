@@ -31,11 +31,15 @@ package com.caucho.quercus.lib.file;
 import com.caucho.quercus.env.Env;
 import com.caucho.quercus.env.EnvCleanup;
 import com.caucho.quercus.env.Value;
+import com.caucho.vfs.FileReadStream;
 import com.caucho.vfs.Path;
 import com.caucho.vfs.ReadStream;
 import com.caucho.vfs.LockableStream;
+import com.caucho.vfs.StreamImpl;
+import com.caucho.vfs.WriteStream;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.logging.*;
 
 /**
@@ -45,6 +49,9 @@ public class FileInput extends ReadStreamInput
         implements LockableStream, EnvCleanup {
 
    private static final Logger log = Logger.getLogger(FileInput.class.getName());
+   // smaller copies aren't worth flushing the output for
+   private static final long TRANSFER_MIN = 64 * 1024;
+
    protected Env _env;
    protected Path _path;
    protected ReadStream _is;
@@ -87,6 +94,49 @@ public class FileInput extends ReadStreamInput
       return getPath().getLength();
    }
 
+   /**
+    * Returns the file's channel, or null if the file isn't local.
+    */
+   public FileChannel getChannel() {
+      StreamImpl source = _is.getSource();
+
+      if (source instanceof FileReadStream) {
+         return ((FileReadStream) source).getChannel();
+      } else {
+         return null;
+      }
+   }
+
+   /**
+    * Writes up to length bytes from the current position to the output,
+    * transferring from the file's channel instead of the read buffer.
+    *
+    * @return the number of bytes written, or -1 if the file or the output
+    * can't use a direct transfer.
+    */
+   public long transferTo(WriteStream os, long length)
+           throws IOException {
+      FileChannel channel = getChannel();
+
+      if (channel == null) {
+         return -1;
+      }
+
+      long offset = getPosition();
+
+      if (Math.min(length, channel.size() - offset) < TRANSFER_MIN) {
+         return -1;
+      }
+
+      long writeLength = os.writeChannel(channel, offset, length);
+
+      if (writeLength > 0) {
+         setPosition(offset + writeLength);
+      }
+
+      return writeLength;
+   }
+
    @Override
    public long seek(long offset, int whence) {
       long position;
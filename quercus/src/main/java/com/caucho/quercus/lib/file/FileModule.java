@@ -40,6 +40,7 @@ import com.caucho.quercus.module.IniDefinitions;
 import com.caucho.quercus.module.IniDefinition;
 import com.caucho.quercus.resources.StreamContextResource;
 import com.caucho.util.L10N;
+import com.caucho.util.LruCache;
 import com.caucho.vfs.Path;
 import com.caucho.vfs.ReadStream;
 import com.caucho.vfs.WriteStream;
@@ -47,6 +48,7 @@ import com.caucho.vfs.LockableStream;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -102,6 +104,7 @@ public class FileModule extends AbstractQuercusModule {
    public static final int SEEK_END = BinaryStream.SEEK_END;
    private static final IniDefinitions _iniDefinitions = new IniDefinitions();
    private static final HashMap<StringValue, Value> _constMap = new HashMap<StringValue, Value>();
+   private static final LruCache<String, MappedFile> _mappedFileCache = new LruCache<String, MappedFile>(256);
 
    /**
     * Returns the default quercus.ini values.
@@ -687,6 +690,14 @@ public class FileModule extends AbstractQuercusModule {
             return BooleanValue.FALSE;
          }
 
+         StringValue contents = getMappedContents(env, stream);
+
+         if (contents != null) {
+            stream.close();
+
+            return splitLines(contents);
+         }
+
          BinaryInput is = (BinaryInput) stream;
 
          ArrayValue result = new ArrayValueImpl();
@@ -939,6 +950,24 @@ public class FileModule extends AbstractQuercusModule {
          return null;
       }
 
+      StringValue contents;
+
+      try {
+         contents = getMappedContents(env, s);
+      } catch (IOException e) {
+         throw new QuercusModuleException(e);
+      }
+
+      if (contents != null) {
+         s.close();
+
+         if (maxLen < contents.length()) {
+            return contents.substring(0, (int) maxLen);
+         } else {
+            return contents;
+         }
+      }
+
       BinaryInput is = (BinaryInput) s;
 
       StringValue bb = env.createLargeBinaryBuilder();
@@ -948,6 +977,85 @@ public class FileModule extends AbstractQuercusModule {
       return bb;
    }
 
+   /**
+    * Returns the contents of a local file of at least file_mmap_min_size
+    * bytes as a memory-mapped string, or null for other streams.  The
+    * string is shared by all requests until the file's modification time
+    * or length changes.
+    */
+   private static StringValue getMappedContents(Env env, BinaryStream s)
+           throws IOException {
+      if (!(s instanceof FileInput) || env.isUnicodeSemantics()) {
+         return null;
+      }
+
+      long minSize = INI_FILE_MMAP_MIN_SIZE.getAsLongBytes(env, 0);
+
+      if (minSize <= 0) {
+         return null;
+      }
+
+      FileInput is = (FileInput) s;
+      Path path = is.getPath();
+      long length = path.getLength();
+
+      if (length < minSize || Integer.MAX_VALUE < length) {
+         return null;
+      }
+
+      FileChannel channel = is.getChannel();
+
+      if (channel == null) {
+         return null;
+      }
+
+      String key = path.getNativePath();
+      long lastModified = path.getLastModified();
+
+      MappedFile file = _mappedFileCache.get(key);
+
+      if (file == null || !file.isValid(lastModified, length)) {
+         MappedStringValue value = new MappedStringValue(
+                 channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+
+         file = new MappedFile(lastModified, length, value);
+
+         _mappedFileCache.put(key, file);
+      }
+
+      return file.getValue();
+   }
+
+   /**
+    * Splits a string into lines for file(), keeping the line endings.
+    */
+   private static ArrayValue splitLines(StringValue contents) {
+      ArrayValue result = new ArrayValueImpl();
+
+      int length = contents.length();
+      int head = 0;
+
+      for (int i = 0; i < length; i++) {
+         char ch = contents.charAt(i);
+
+         if (ch == '\n' || ch == '\r') {
+            if (ch == '\r' && i + 1 < length && contents.charAt(i + 1) == '\n') {
+               i++;
+            }
+
+            result.append(contents.substring(head, i + 1));
+
+            head = i + 1;
+         }
+      }
+
+      if (head < length) {
+         result.append(contents.substring(head, length));
+      }
+
+      return result;
+   }
+
    /**
     * Writes data to a file.
     */
@@ -1503,6 +1611,16 @@ public class FileModule extends AbstractQuercusModule {
 
          WriteStream out = env.getOut();
 
+         // output buffers and filters need the bytes, so only the
+         // unbuffered response can take the file directly
+         if (is instanceof FileInput && env.getOutputBuffer() == null) {
+            long writeLength = ((FileInput) is).transferTo(out, Long.MAX_VALUE);
+
+            if (writeLength >= 0) {
+               return LongValue.create(writeLength);
+            }
+         }
+
          long writeLength = out.writeStream(is.getInputStream());
 
          return LongValue.create(writeLength);
@@ -3072,6 +3190,27 @@ public class FileModule extends AbstractQuercusModule {
       }
    }
 
+   static final class MappedFile {
+
+      private final long _lastModified;
+      private final long _length;
+      private final MappedStringValue _value;
+
+      MappedFile(long lastModified, long length, MappedStringValue value) {
+         _lastModified = lastModified;
+         _length = length;
+         _value = value;
+      }
+
+      boolean isValid(long lastModified, long length) {
+         return _lastModified == lastModified && _length == length;
+      }
+
+      MappedStringValue getValue() {
+         return _value;
+      }
+   }
+
    static {
       ProtocolWrapper zlibProtocolWrapper = new ZlibProtocolWrapper();
       StreamModule.stream_wrapper_register(new ConstStringValue("compress.zlib"),
@@ -3106,6 +3245,7 @@ public class FileModule extends AbstractQuercusModule {
    static final IniDefinition INI_USER_AGENT = _iniDefinitions.add("user_agent", null, PHP_INI_ALL);
    static final IniDefinition INI_DEFAULT_SOCKET_TIMEOUT = _iniDefinitions.add("default_socket_timeout", 60, PHP_INI_ALL);
    static final IniDefinition INI_FROM = _iniDefinitions.add("from", "", PHP_INI_ALL);
+   static final IniDefinition INI_FILE_MMAP_MIN_SIZE = _iniDefinitions.add("file_mmap_min_size", "0", PHP_INI_ALL);
    static final IniDefinition INI_AUTO_DETECT_LINE_ENDINGS = _iniDefinitions.add("auto_detect_line_endings", false, PHP_INI_ALL);
    // file uploads
    static final IniDefinition INI_FILE_UPLOADS = _iniDefinitions.add("file_uploads", true, PHP_INI_SYSTEM);
@@ -38,6 +38,7 @@ import com.caucho.quercus.module.AbstractQuercusModule;
 import com.caucho.quercus.resources.StreamContextResource;
 import com.caucho.util.L10N;
 import com.caucho.vfs.TempBuffer;
+import com.caucho.vfs.WriteStream;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
@@ -191,6 +192,23 @@ public class StreamModule extends AbstractQuercusModule {
             return -1;
          }
 
+         WriteStream os = getTransferStream(env, out);
+
+         if (in instanceof FileInput && os != null) {
+            FileInput is = (FileInput) in;
+
+            if (offset > 0) {
+               is.setPosition(is.getPosition() + offset);
+               offset = 0;
+            }
+
+            long writeLength = is.transferTo(os, length < 0 ? Long.MAX_VALUE : length);
+
+            if (writeLength >= 0) {
+               return writeLength;
+            }
+         }
+
          TempBuffer temp = TempBuffer.allocate();
          byte[] buffer = temp.getBuffer();
 
@@ -230,6 +248,24 @@ public class StreamModule extends AbstractQuercusModule {
       }
    }
 
+   /**
+    * Returns the stream a file can be transferred to directly, or null
+    * if the output is buffered or isn't a stream.
+    */
+   private static WriteStream getTransferStream(Env env, BinaryOutput out) {
+      if (out instanceof PhpBinaryOutput) {
+         if (env.getOutputBuffer() == null) {
+            return env.getOut();
+         } else {
+            return null;
+         }
+      } else if (out instanceof FileOutput) {
+         return (WriteStream) out.getOutputStream();
+      } else {
+         return null;
+      }
+   }
+
    /**
     * Returns the rest of the file as a string
     *
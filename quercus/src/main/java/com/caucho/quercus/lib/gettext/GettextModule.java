@@ -47,7 +47,7 @@ import java.util.logging.Logger;
 public class GettextModule
         extends AbstractQuercusModule {
 
-   private LruCache<Object, GettextResource> _cache = new LruCache<Object, GettextResource>(16);
+   private LruCache<Object, GettextResource> _cache = new LruCache<Object, GettextResource>(256);
    private final Logger log = Logger.getLogger(GettextModule.class.getName());
    private final L10N L = new L10N(GettextModule.class);
 
@@ -40,12 +40,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Represents a container for gettext translations.
  */
 class GettextResource {
 
+   private static final Logger log = Logger.getLogger(GettextResource.class.getName());
    private Env _env;
    protected Path _pathPO;
    private Path _pathMO;
@@ -53,6 +56,8 @@ class GettextResource {
    private BasicDependencyContainer _depend;
    private PluralExpr _pluralExpr;
    private HashMap<StringValue, ArrayList<StringValue>> _translations;
+   // MO files are searched in place instead of being loaded in the map
+   private MOFileCatalog _catalog;
    private String _charset;
 
    protected GettextResource(Env env,
@@ -91,8 +96,6 @@ class GettextResource {
       }
 
       try {
-         GettextParser parser;
-
          if (_depend == null) {
             _depend = new BasicDependencyContainer();
          }
@@ -100,17 +103,22 @@ class GettextResource {
          _depend.add(new Depend(_currentPath));
 
          if (_currentPath == _pathPO) {
-            parser = new POFileParser(_env, _currentPath);
-         } else {
-            parser = new MOFileParser(_env, _currentPath);
-         }
+            GettextParser parser = new POFileParser(_env, _currentPath);
 
-         _pluralExpr = parser.getPluralExpr();
-         _translations = parser.readTranslations();
-         _charset = parser.getCharset();
+            _pluralExpr = parser.getPluralExpr();
+            _translations = parser.readTranslations();
+            _charset = parser.getCharset();
+            _catalog = null;
 
-         parser.close();
+            parser.close();
+         } else {
+            MOFileCatalog catalog = MOFileCatalog.open(_currentPath);
 
+            _pluralExpr = catalog.getPluralExpr();
+            _charset = catalog.getCharset();
+            _translations = null;
+            _catalog = catalog;
+         }
       } catch (IOException e) {
          throw new QuercusModuleException(e.getMessage());
       }
@@ -164,12 +172,23 @@ class GettextResource {
     * @return translated string, else null on error.
     */
    protected StringValue getTranslationImpl(StringValue key, int index) {
-      if (_translations == null) {
+      ArrayList<StringValue> pluralForms;
+
+      if (_catalog != null) {
+         try {
+            pluralForms = _catalog.getTranslation(key);
+         } catch (InternalError e) {
+            // the mapped file was truncated before the dependency check
+            log.log(Level.FINE, e.toString(), e);
+
+            return null;
+         }
+      } else if (_translations != null) {
+         pluralForms = _translations.get(key);
+      } else {
          return null;
       }
 
-      ArrayList<StringValue> pluralForms = _translations.get(key);
-
       if (pluralForms == null || pluralForms.size() == 0) {
          return null;
       }
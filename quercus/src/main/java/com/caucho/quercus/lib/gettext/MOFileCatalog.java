@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Nam Nguyen
+ */
+package com.caucho.quercus.lib.gettext;
+
+import com.caucho.quercus.env.StringValue;
+import com.caucho.quercus.env.UnicodeBuilderValue;
+import com.caucho.quercus.lib.gettext.expr.PluralExpr;
+import com.caucho.vfs.FileReadStream;
+import com.caucho.vfs.Path;
+import com.caucho.vfs.ReadStream;
+import com.caucho.vfs.StreamImpl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A gettext MO file, memory-mapped and searched in place.  Only the
+ * translations which are asked for are decoded.
+ */
+class MOFileCatalog {
+
+   private static final Logger log = Logger.getLogger(MOFileCatalog.class.getName());
+   private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+   private final ByteBuffer _buffer;
+   private int _numberOfStrings;
+   private int _offsetOriginal;
+   private int _offsetTranslation;
+   private int _hashSize;
+   private int _offsetHash;
+   private PluralExpr _pluralExpr;
+   private String _charset;
+   private Charset _decoder = ISO_8859_1;
+   private AtomicReferenceArray<ArrayList<StringValue>> _translations;
+
+   private MOFileCatalog(ByteBuffer buffer) {
+      _buffer = buffer;
+
+      init();
+   }
+
+   /**
+    * Maps the MO file, or reads it if it isn't a local file.
+    */
+   static MOFileCatalog open(Path path)
+           throws IOException {
+      ReadStream is = path.openRead();
+
+      try {
+         StreamImpl source = is.getSource();
+
+         if (source instanceof FileReadStream) {
+            FileChannel channel = ((FileReadStream) source).getChannel();
+
+            if (channel != null) {
+               return new MOFileCatalog(
+                       channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+         }
+
+         long length = path.getLength();
+
+         if (length < 0 || Integer.MAX_VALUE < length) {
+            throw new IOException("cannot read MO file " + path);
+         }
+
+         byte[] data = new byte[(int) length];
+         int offset = 0;
+         int sublen;
+
+         while (offset < data.length
+                 && (sublen = is.read(data, offset, data.length - offset)) > 0) {
+            offset += sublen;
+         }
+
+         return new MOFileCatalog(ByteBuffer.wrap(data, 0, offset));
+      } finally {
+         is.close();
+      }
+   }
+
+   private void init() {
+      if (_buffer.limit() < 28) {
+         return;
+      }
+
+      int magic = _buffer.getInt(0);
+
+      if (magic == 0xde120495) {
+         _buffer.order(ByteOrder.LITTLE_ENDIAN);
+      } else if (magic != 0x950412de) {
+         return;
+      }
+
+      // ignore file format revision at offset 4
+      int numberOfStrings = _buffer.getInt(8);
+      _offsetOriginal = _buffer.getInt(12);
+      _offsetTranslation = _buffer.getInt(16);
+      _hashSize = _buffer.getInt(20);
+      _offsetHash = _buffer.getInt(24);
+
+      if (numberOfStrings <= 0
+              || !isValidTable(_offsetOriginal, numberOfStrings * 2)
+              || !isValidTable(_offsetTranslation, numberOfStrings * 2)) {
+         return;
+      }
+
+      if (_hashSize <= 2 || !isValidTable(_offsetHash, _hashSize)) {
+         _hashSize = 0;
+      }
+
+      _numberOfStrings = numberOfStrings;
+      _translations = new AtomicReferenceArray<ArrayList<StringValue>>(numberOfStrings);
+
+      StringValue metadata = decode(0, ISO_8859_1).get(0);
+
+      _pluralExpr = PluralExpr.getPluralExpr(metadata);
+      _charset = GettextParser.getCharset(metadata);
+
+      try {
+         _decoder = Charset.forName(_charset);
+      } catch (IllegalArgumentException e) {
+         log.log(Level.FINE, e.toString(), e);
+      }
+   }
+
+   private boolean isValidTable(int offset, int count) {
+      return (0 < offset && 0 <= count
+              && (long) offset + 4L * count <= _buffer.limit());
+   }
+
+   PluralExpr getPluralExpr() {
+      return _pluralExpr;
+   }
+
+   String getCharset() {
+      return _charset;
+   }
+
+   /**
+    * Returns the plural forms for the key, or null if there's no
+    * translation.
+    */
+   ArrayList<StringValue> getTranslation(StringValue key) {
+      int len = key.length();
+      byte[] keyBytes = new byte[len];
+
+      // the original strings are compared as bytes
+      for (int i = 0; i < len; i++) {
+         char ch = key.charAt(i);
+
+         if (ch > 0xff) {
+            return null;
+         }
+
+         keyBytes[i] = (byte) ch;
+      }
+
+      int index;
+
+      if (_hashSize > 0) {
+         index = findHash(keyBytes);
+      } else {
+         index = findSorted(keyBytes);
+      }
+
+      if (index < 0) {
+         return null;
+      }
+
+      ArrayList<StringValue> translation = _translations.get(index);
+
+      if (translation == null) {
+         translation = decode(index, _decoder);
+         _translations.set(index, translation);
+      }
+
+      return translation;
+   }
+
+   /**
+    * Looks up the key in the MO hash table.
+    */
+   private int findHash(byte[] key) {
+      long hash = hashpjw(key);
+      int size = _hashSize;
+
+      int index = (int) (hash % size);
+      int incr = 1 + (int) (hash % (size - 2));
+
+      for (int probe = 0; probe < size; probe++) {
+         int entry = _buffer.getInt(_offsetHash + 4 * index);
+
+         if (entry == 0) {
+            return -1;
+         }
+
+         entry--;
+
+         if (0 <= entry && entry < _numberOfStrings
+                 && compareOriginal(entry, key) == 0) {
+            return entry;
+         }
+
+         if (index >= size - incr) {
+            index -= size - incr;
+         } else {
+            index += incr;
+         }
+      }
+
+      return -1;
+   }
+
+   /**
+    * Binary search of the original strings, which msgfmt sorts.
+    */
+   private int findSorted(byte[] key) {
+      int low = 0;
+      int high = _numberOfStrings - 1;
+
+      while (low <= high) {
+         int mid = (low + high) >>> 1;
+
+         int cmp = compareOriginal(mid, key);
+
+         if (cmp < 0) {
+            low = mid + 1;
+         } else if (cmp > 0) {
+            high = mid - 1;
+         } else {
+            return mid;
+         }
+      }
+
+      return -1;
+   }
+
+   /**
+    * Compares the original string up to its first NUL with the key.
+    */
+   private int compareOriginal(int index, byte[] key) {
+      int length = _buffer.getInt(_offsetOriginal + 8 * index);
+      int offset = _buffer.getInt(_offsetOriginal + 8 * index + 4);
+
+      if (length < 0 || offset <= 0 || _buffer.limit() < (long) offset + length) {
+         return -1;
+      }
+
+      for (int i = 0; i < key.length; i++) {
+         if (length <= i) {
+            return -1;
+         }
+
+         int ch = _buffer.get(offset + i) & 0xff;
+
+         if (ch == 0) {
+            return -1;
+         }
+
+         int cmp = ch - (key[i] & 0xff);
+
+         if (cmp != 0) {
+            return cmp;
+         }
+      }
+
+      if (key.length < length && _buffer.get(offset + key.length) != 0) {
+         return 1;
+      }
+
+      return 0;
+   }
+
+   /**
+    * Decodes the translation's NUL-separated plural forms.
+    */
+   private ArrayList<StringValue> decode(int index, Charset charset) {
+      ArrayList<StringValue> list = new ArrayList<StringValue>();
+
+      int length = _buffer.getInt(_offsetTranslation + 8 * index);
+      int offset = _buffer.getInt(_offsetTranslation + 8 * index + 4);
+
+      if (length < 0 || offset <= 0 || _buffer.limit() < (long) offset + length) {
+         list.add(new UnicodeBuilderValue());
+
+         return list;
+      }
+
+      ByteBuffer data = _buffer.duplicate();
+      data.limit(offset + length);
+      data.position(offset);
+
+      CharBuffer chars = charset.decode(data);
+
+      StringValue sb = new UnicodeBuilderValue();
+
+      while (chars.hasRemaining()) {
+         char ch = chars.get();
+
+         if (ch != 0) {
+            sb.append(ch);
+         } else {
+            list.add(sb);
+            sb = new UnicodeBuilderValue();
+         }
+      }
+
+      list.add(sb);
+
+      return list;
+   }
+
+   /**
+    * The hash function of the MO hash table.
+    */
+   private static long hashpjw(byte[] key) {
+      long hash = 0;
+
+      for (int i = 0; i < key.length; i++) {
+         hash = ((hash << 4) + (key[i] & 0xff)) & 0xffffffffL;
+
+         long g = hash & 0xf0000000L;
+
+         if (g != 0) {
+            hash ^= g >> 24;
+            hash ^= g;
+         }
+      }
+
+      return hash;
+   }
+}
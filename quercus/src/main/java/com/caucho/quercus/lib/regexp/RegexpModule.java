@@ -28,6 +28,8 @@
  */
 package com.caucho.quercus.lib.regexp;
 
+import com.caucho.env.meter.CountMeter;
+import com.caucho.env.meter.MeterService;
 import com.caucho.quercus.QuercusException;
 import com.caucho.quercus.QuercusRuntimeException;
 import com.caucho.quercus.annotation.Hide;
@@ -73,6 +75,8 @@ public class RegexpModule
    private static final long LONG_MAX = Long.MAX_VALUE - 1;
    public static final boolean[] PREG_QUOTE = new boolean[256];
    private static LruCache<StringValue, RegexpCacheItem> _regexpCache = new LruCache<StringValue, RegexpCacheItem>(1024);
+   private static final CountMeter _regexpHitMeter = MeterService.createCountMeter("Quercus|Regexp|Hit");
+   private static final CountMeter _regexpCompileMeter = MeterService.createCountMeter("Quercus|Regexp|Compile");
    private static LruCache<StringValue, Ereg> _eregCache = new LruCache<StringValue, Ereg>(1024);
    private static LruCache<StringValue, Eregi> _eregiCache = new LruCache<StringValue, Eregi>(1024);
    private static LruCache<UnicodeEregKey, UnicodeEreg> _unicodeEregCache = new LruCache<UnicodeEregKey, UnicodeEreg>(1024);
@@ -251,7 +255,9 @@ public class RegexpModule
 
       RegexpCacheItem cacheItem = _regexpCache.get(regexpValue);
 
-      if (cacheItem == null) {
+      if (cacheItem != null) {
+         _regexpHitMeter.start();
+      } else {
          cacheItem = new RegexpCacheItem(regexpValue);
 
          _regexpCache.putIfNew(regexpValue, cacheItem);
@@ -2430,6 +2436,12 @@ public class RegexpModule
 
          synchronized (this) {
             try {
+               if (_regexp != null) {
+                  return _regexp;
+               }
+
+               _regexpCompileMeter.start();
+
                _regexp = new Regexp(_pattern);
 
                return _regexp;
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Charles Reich
+ */
+package com.caucho.quercus.lib.simplexml;
+
+import com.caucho.quercus.env.Env;
+import com.caucho.quercus.env.QuercusClass;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.Arrays;
+
+/**
+ * Builds the SimpleXML tree directly from the SAX events, without an
+ * intermediate W3C DOM document.  The tree matches the one built from
+ * the DOM: attributes are sorted by name, adjacent text is merged, and
+ * comments, CDATA sections and processing instructions become empty
+ * elements.
+ */
+class SimpleXMLBuilder extends DefaultHandler implements LexicalHandler {
+
+   private final Env _env;
+   private final QuercusClass _cls;
+   private final String _namespace;
+   private final StringBuilder _text = new StringBuilder();
+   private SimpleXMLElement _root;
+   private SimpleXMLElement _node;
+   private boolean _isDtd;
+   private boolean _isCData;
+
+   SimpleXMLBuilder(Env env, QuercusClass cls, String namespace) {
+      _env = env;
+      _cls = cls;
+      _namespace = namespace;
+   }
+
+   /**
+    * Returns the document element.
+    */
+   SimpleXMLElement getRoot() {
+      return _root;
+   }
+
+   @Override
+   public void startElement(String uri, String localName, String qName,
+           Attributes attrs)
+           throws SAXException {
+      flushText();
+
+      SimpleXMLElement elt = new SimpleXMLElement(_env, _cls,
+              _node,
+              qName,
+              _namespace);
+
+      if (_node != null) {
+         _node.addChild(elt);
+      } else {
+         _root = elt;
+      }
+
+      int length = attrs.getLength();
+
+      if (length > 0) {
+         String[] names = new String[length];
+
+         for (int i = 0; i < length; i++) {
+            names[i] = attrs.getQName(i);
+         }
+
+         // the DOM keeps attributes sorted by name
+         Arrays.sort(names);
+
+         for (int i = 0; i < length; i++) {
+            String name = names[i];
+            String value = attrs.getValue(name);
+
+            if (name.startsWith("xmlns")) {
+               elt.addNamespaceAttribute(_env, name, value);
+            } else {
+               elt.addAttribute(_env,
+                       name,
+                       _env.createString(value),
+                       _namespace);
+            }
+         }
+      }
+
+      _node = elt;
+   }
+
+   @Override
+   public void endElement(String uri, String localName, String qName)
+           throws SAXException {
+      if (_node == null) {
+         return;
+      }
+
+      flushText();
+
+      _node = _node._parent;
+   }
+
+   @Override
+   public void characters(char[] buffer, int offset, int length)
+           throws SAXException {
+      if (_node != null && !_isCData) {
+         _text.append(buffer, offset, length);
+      }
+   }
+
+   @Override
+   public void ignorableWhitespace(char[] buffer, int offset, int length)
+           throws SAXException {
+      characters(buffer, offset, length);
+   }
+
+   @Override
+   public void processingInstruction(String target, String data)
+           throws SAXException {
+      addEmptyNode(target);
+   }
+
+   @Override
+   public void comment(char[] buffer, int offset, int length)
+           throws SAXException {
+      if (!_isDtd) {
+         addEmptyNode("#comment");
+      }
+   }
+
+   @Override
+   public void startCDATA()
+           throws SAXException {
+      addEmptyNode("#cdata-section");
+
+      _isCData = true;
+   }
+
+   @Override
+   public void endCDATA()
+           throws SAXException {
+      _isCData = false;
+   }
+
+   @Override
+   public void startDTD(String name, String publicId, String systemId)
+           throws SAXException {
+      _isDtd = true;
+   }
+
+   @Override
+   public void endDTD()
+           throws SAXException {
+      _isDtd = false;
+   }
+
+   @Override
+   public void startEntity(String name)
+           throws SAXException {
+   }
+
+   @Override
+   public void endEntity(String name)
+           throws SAXException {
+   }
+
+   private void addEmptyNode(String name) {
+      if (_node == null) {
+         return;
+      }
+
+      flushText();
+
+      _node.addChild(new SimpleXMLElement(_env, _cls, _node, name, _namespace));
+   }
+
+   private void flushText() {
+      if (_text.length() == 0) {
+         return;
+      }
+
+      String value = _text.toString();
+      _text.setLength(0);
+
+      _node.addChild(new SimpleXMLText(_env, _cls, _env.createString(value)));
+
+      if (!SimpleXMLElement.isWhitespace(value)) {
+         _node.addText(_env.createString(value));
+      }
+   }
+}
@@ -45,7 +45,9 @@ import com.caucho.quercus.env.ObjectExtJavaValue;
 import com.caucho.quercus.env.QuercusClass;
 import com.caucho.quercus.env.StringValue;
 import com.caucho.quercus.env.Value;
+import com.caucho.util.FreeList;
 import com.caucho.util.L10N;
+import com.caucho.util.LruCache;
 import com.caucho.vfs.Path;
 import com.caucho.vfs.ReadStream;
 import com.caucho.vfs.WriteStream;
@@ -61,8 +63,11 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.IOException;
@@ -78,6 +83,15 @@ public class SimpleXMLElement implements Map.Entry<String, Object> {
 
    private static final Logger log = Logger.getLogger(SimpleXMLElement.class.getName());
    private static final L10N L = new L10N(SimpleXMLElement.class);
+   private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+   // factory lookup is slow, so parsers and compiled expressions are
+   // shared between requests
+   private static final SAXParserFactory _parserFactory = SAXParserFactory.newInstance();
+   private static final FreeList<SAXParser> _freeParserList = new FreeList<SAXParser>(32);
+   private static final DocumentBuilderFactory _builderFactory;
+   private static final FreeList<DocumentBuilder> _freeBuilderList = new FreeList<DocumentBuilder>(32);
+   private static final XPathFactory _xpathFactory = XPathFactory.newInstance();
+   private static final LruCache<String, FreeList<XPathExpression>> _xpathCache = new LruCache<String, FreeList<XPathExpression>>(256);
    protected SimpleXMLElement _parent;
    protected String _name;
    // mixed content is all combined
@@ -90,6 +104,12 @@ public class SimpleXMLElement implements Map.Entry<String, Object> {
    protected Env _env;
    protected QuercusClass _cls;
 
+   static {
+      // matches the document XPath.evaluate() builds from an InputSource
+      _builderFactory = DocumentBuilderFactory.newInstance();
+      _builderFactory.setNamespaceAware(true);
+   }
+
    protected SimpleXMLElement(Env env,
            QuercusClass cls) {
       _env = env;
@@ -168,14 +188,13 @@ public class SimpleXMLElement implements Map.Entry<String, Object> {
             namespace = namespaceV.toString();
          }
 
-         Node node = parse(env, data, options, dataIsUrl, namespace, isPrefix);
+         SimpleXMLElement elt = parse(env, cls, data, options, dataIsUrl,
+                 namespace, isPrefix);
 
-         if (node == null) {
+         if (elt == null) {
             return BooleanValue.FALSE;
          }
 
-         SimpleXMLElement elt = buildNode(env, cls, null, node, namespace, isPrefix);
-
          return wrapJava(env, cls, elt);
 
       } catch (IOException e) {
@@ -503,7 +522,7 @@ public class SimpleXMLElement implements Map.Entry<String, Object> {
       return wrapJava(env, _cls, child);
    }
 
-   private void addChild(SimpleXMLElement child) {
+   void addChild(SimpleXMLElement child) {
       if (_children == null) {
          _children = new ArrayList<SimpleXMLElement>();
       }
@@ -587,7 +606,8 @@ public class SimpleXMLElement implements Map.Entry<String, Object> {
    //
    // XML parsing and generation
    //
-   private static Node parse(Env env,
+   private static SimpleXMLElement parse(Env env,
+           QuercusClass cls,
            Value data,
            int options,
            boolean dataIsUrl,
@@ -596,10 +616,8 @@ public class SimpleXMLElement implements Map.Entry<String, Object> {
            throws IOException,
            ParserConfigurationException,
            SAXException {
-      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-      DocumentBuilder builder = factory.newDocumentBuilder();
-
-      Document document = null;
+      InputSource source;
+      ReadStream is = null;
 
       if (dataIsUrl) {
          Path path = env.lookup(data.toStringValue());
@@ -612,29 +630,82 @@ public class SimpleXMLElement implements Map.Entry<String, Object> {
             return null;
          }
 
-         ReadStream is = path.openRead();
+         is = path.openRead();
+         source = new InputSource(is);
+      } else {
+         source = new InputSource(new StringReader(data.toString()));
+      }
+
+      SimpleXMLBuilder builder = new SimpleXMLBuilder(env, cls, namespace);
+
+      SAXParser parser = allocateParser();
 
+      try {
          try {
-            document = builder.parse(is);
-         } finally {
+            parser.setProperty(LEXICAL_HANDLER, builder);
+         } catch (SAXException e) {
+            // comments and CDATA are then merged into the text
+            log.log(Level.FINER, e.toString(), e);
+         }
+
+         parser.parse(source, builder);
+      } finally {
+         freeParser(parser);
+
+         if (is != null) {
             is.close();
          }
-      } else {
-         StringReader reader = new java.io.StringReader(data.toString());
+      }
+
+      return builder.getRoot();
+   }
+
+   private static SAXParser allocateParser()
+           throws ParserConfigurationException, SAXException {
+      SAXParser parser = _freeParserList.allocate();
 
-         document = builder.parse(new InputSource(reader));
+      if (parser == null) {
+         synchronized (_parserFactory) {
+            parser = _parserFactory.newSAXParser();
+         }
       }
 
-      NodeList childList = document.getChildNodes();
+      return parser;
+   }
 
-      // php/1x70
-      for (int i = 0; i < childList.getLength(); i++) {
-         if (childList.item(i).getNodeType() == Node.ELEMENT_NODE) {
-            return childList.item(i);
+   private static void freeParser(SAXParser parser) {
+      try {
+         parser.reset();
+      } catch (UnsupportedOperationException e) {
+         // parsers without reset() are not reused
+         return;
+      }
+
+      _freeParserList.free(parser);
+   }
+
+   private static DocumentBuilder allocateBuilder()
+           throws ParserConfigurationException {
+      DocumentBuilder builder = _freeBuilderList.allocate();
+
+      if (builder == null) {
+         synchronized (_builderFactory) {
+            builder = _builderFactory.newDocumentBuilder();
          }
       }
 
-      return childList.item(0);
+      return builder;
+   }
+
+   private static void freeBuilder(DocumentBuilder builder) {
+      try {
+         builder.reset();
+      } catch (UnsupportedOperationException e) {
+         // builders without reset() are not reused
+         return;
+      }
+
+      _freeBuilderList.free(builder);
    }
 
    private static SimpleXMLElement buildNode(Env env,
@@ -874,11 +945,17 @@ public class SimpleXMLElement implements Map.Entry<String, Object> {
     */
    public Value xpath(Env env, String expression) {
       try {
-         XPath xpath = XPathFactory.newInstance().newXPath();
+         Document document = parseXPathDocument(env);
 
-         InputSource is = new InputSource(asXML(env).toInputStream());
-         NodeList nodes = (NodeList) xpath.evaluate(expression, is,
-                 XPathConstants.NODESET);
+         XPathExpression expr = allocateXPath(expression);
+
+         NodeList nodes;
+
+         try {
+            nodes = (NodeList) expr.evaluate(document, XPathConstants.NODESET);
+         } finally {
+            freeXPath(expression, expr);
+         }
 
          int nodeLength = nodes.getLength();
 
@@ -908,6 +985,63 @@ public class SimpleXMLElement implements Map.Entry<String, Object> {
       }
    }
 
+   private Document parseXPathDocument(Env env)
+           throws XPathExpressionException {
+      try {
+         DocumentBuilder builder = allocateBuilder();
+
+         try {
+            InputSource is = new InputSource(asXML(env).toInputStream());
+
+            return builder.parse(is);
+         } finally {
+            freeBuilder(builder);
+         }
+      } catch (IOException e) {
+         throw new XPathExpressionException(e);
+      } catch (SAXException e) {
+         throw new XPathExpressionException(e);
+      } catch (ParserConfigurationException e) {
+         throw new XPathExpressionException(e);
+      }
+   }
+
+   /**
+    * Returns a compiled expression from the cache.  Expressions aren't
+    * thread-safe, so each one is used by a single caller at a time.
+    */
+   private static XPathExpression allocateXPath(String expression)
+           throws XPathExpressionException {
+      FreeList<XPathExpression> freeList = _xpathCache.get(expression);
+
+      if (freeList != null) {
+         XPathExpression expr = freeList.allocate();
+
+         if (expr != null) {
+            return expr;
+         }
+      }
+
+      XPath xpath;
+
+      synchronized (_xpathFactory) {
+         xpath = _xpathFactory.newXPath();
+      }
+
+      return xpath.compile(expression);
+   }
+
+   private static void freeXPath(String expression, XPathExpression expr) {
+      FreeList<XPathExpression> freeList = _xpathCache.get(expression);
+
+      if (freeList == null) {
+         freeList = _xpathCache.putIfNew(expression,
+                 new FreeList<XPathExpression>(4));
+      }
+
+      freeList.free(expr);
+   }
+
    /**
     * Implementation for getting the indices of this class.
     * i.e. <code>$a->foo[0]</code>
@@ -1238,7 +1372,7 @@ public class SimpleXMLElement implements Map.Entry<String, Object> {
       }
    }
 
-   private static boolean isWhitespace(String text) {
+   static boolean isWhitespace(String text) {
       for (int i = text.length() - 1; i >= 0; i--) {
          if (!isWhitespace(text.charAt(i))) {
             return false;
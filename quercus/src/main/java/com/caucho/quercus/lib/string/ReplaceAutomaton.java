@@ -0,0 +1,567 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ */
+package com.caucho.quercus.lib.string;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.caucho.quercus.env.LongValue;
+import com.caucho.quercus.env.StringValue;
+import com.caucho.quercus.env.Value;
+import com.caucho.util.LruCache;
+
+/**
+ * Aho-Corasick automaton over the search strings of strtr() and the array
+ * form of str_replace(), so a subject is replaced in one pass instead of
+ * one pass per search string.
+ *
+ * strtr() replaces the longest search string at each position, which is a
+ * walk of the trie.  str_replace() replaces each search string in turn in
+ * the result of the previous one, so the single pass is only used when
+ * the search strings can't interact: no search string overlaps or contains
+ * another, and no replacement can form a later search string.  Otherwise
+ * isSinglePass() is false and the caller replaces one string at a time.
+ *
+ * Automata are immutable once built and cached by the contents of their
+ * search and replacement strings.
+ */
+final class ReplaceAutomaton {
+
+   private static final int CACHE_SIZE = 64;
+   private static final LruCache<Key, ReplaceAutomaton> _cache = new LruCache<Key, ReplaceAutomaton>(CACHE_SIZE);
+   private final StringValue[] _from;
+   private final StringValue[] _to;
+   private final Node _root;
+   private final Node[] _rootTable = new Node[256];
+   private final boolean _isSinglePass;
+
+   private ReplaceAutomaton(StringValue[] from,
+           StringValue[] to,
+           boolean isReplace) {
+      _from = from;
+      _to = to;
+
+      _root = new Node(0);
+
+      for (int i = 0; i < from.length; i++) {
+         addPattern(from[i], i);
+      }
+
+      for (int i = 0; i < _root._size; i++) {
+         Node child = _root._children[i];
+
+         if (child._ch < _rootTable.length) {
+            _rootTable[child._ch] = child;
+         }
+      }
+
+      if (isReplace) {
+         initFail();
+
+         _isSinglePass = isIndependent();
+      } else {
+         _isSinglePass = false;
+      }
+   }
+
+   /**
+    * Creates an automaton over the replacements, used to check that they
+    * can't form a search string.
+    */
+   private ReplaceAutomaton(StringValue[] to) {
+      this(to, to, false);
+
+      initFail();
+   }
+
+   /**
+    * Returns the automaton for strtr(), or null if a search string is
+    * empty.
+    */
+   static ReplaceAutomaton createTranslate(StringValue[] from,
+           StringValue[] to) {
+      return create(from, to, false);
+   }
+
+   /**
+    * Returns the automaton for str_replace(), or null if a search string is
+    * empty.
+    */
+   static ReplaceAutomaton createReplace(StringValue[] from,
+           StringValue[] to) {
+      return create(from, to, true);
+   }
+
+   private static ReplaceAutomaton create(StringValue[] from,
+           StringValue[] to,
+           boolean isReplace) {
+      for (int i = 0; i < from.length; i++) {
+         if (from[i].length() == 0) {
+            return null;
+         }
+      }
+
+      Key key = new Key(from, to, isReplace);
+
+      ReplaceAutomaton automaton = _cache.get(key);
+
+      if (automaton == null) {
+         // the cached strings must not change with the caller's builders
+         from = copyOf(from);
+         to = copyOf(to);
+
+         automaton = new ReplaceAutomaton(from, to, isReplace);
+
+         _cache.put(new Key(from, to, isReplace), automaton);
+      }
+
+      return automaton;
+   }
+
+   private static StringValue[] copyOf(StringValue[] list) {
+      StringValue[] copy = new StringValue[list.length];
+
+      for (int i = 0; i < list.length; i++) {
+         copy[i] = list[i].toStringBuilder();
+      }
+
+      return copy;
+   }
+
+   /**
+    * Returns true if str_replace() can be done in a single pass.
+    */
+   boolean isSinglePass() {
+      return _isSinglePass;
+   }
+
+   /**
+    * Translates the string, replacing the longest search string at each
+    * position, as strtr() does.
+    */
+   StringValue translate(StringValue string) {
+      StringValue result = string.createStringBuilder();
+
+      int len = string.length();
+      int head = 0;
+      int tail = 0;
+
+      while (head < len) {
+         Node node = _root;
+         int pattern = -1;
+         int matchEnd = head;
+
+         for (int i = head; i < len; i++) {
+            node = getChild(node, string.charAt(i));
+
+            if (node == null) {
+               break;
+            } else if (node._pattern >= 0) {
+               pattern = node._pattern;
+               matchEnd = i + 1;
+            }
+         }
+
+         if (pattern >= 0) {
+            if (tail < head) {
+               result = result.append(string, tail, head);
+            }
+
+            result = result.append(_to[pattern]);
+
+            head = matchEnd;
+            tail = head;
+         } else {
+            head++;
+         }
+      }
+
+      if (tail < len) {
+         result = result.append(string, tail, len);
+      }
+
+      return result;
+   }
+
+   /**
+    * Replaces all the search strings in one pass, as str_replace() does
+    * when isSinglePass() is true.
+    *
+    * @param countV incremented by the number of replacements
+    */
+   StringValue replace(StringValue subject, Value countV) {
+      long count = countV.toLong();
+
+      StringValue result = null;
+
+      int len = subject.length();
+      int head = 0;
+      Node node = _root;
+
+      for (int i = 0; i < len; i++) {
+         node = getNext(node, subject.charAt(i));
+
+         int pattern = node._pattern;
+
+         if (pattern >= 0) {
+            if (result == null) {
+               result = subject.createStringBuilder();
+            }
+
+            result = result.append(subject, head, i + 1 - node._depth);
+            result = result.append(_to[pattern]);
+
+            head = i + 1;
+            node = _root;
+
+            count++;
+         }
+      }
+
+      if (result == null) {
+         return subject;
+      }
+
+      countV.set(LongValue.create(count));
+
+      if (head < len) {
+         result = result.append(subject, head, len);
+      }
+
+      return result;
+   }
+
+   private Node getChild(Node node, char ch) {
+      if (node == _root && ch < _rootTable.length) {
+         return _rootTable[ch];
+      } else {
+         return node.getChild(ch);
+      }
+   }
+
+   /**
+    * Returns the next state, following the failure links.
+    */
+   private Node getNext(Node node, char ch) {
+      while (true) {
+         Node child = getChild(node, ch);
+
+         if (child != null) {
+            return child;
+         } else if (node == _root) {
+            return _root;
+         }
+
+         node = node._fail;
+      }
+   }
+
+   private void addPattern(StringValue pattern, int index) {
+      Node node = _root;
+
+      int len = pattern.length();
+
+      for (int i = 0; i < len; i++) {
+         node = node.addChild(pattern.charAt(i));
+
+         if (node._patternCount++ == 0) {
+            node._firstPattern = index;
+         }
+
+         node._lastPattern = index;
+      }
+
+      // a duplicate keeps the first string, as the sorted strtr() does
+      if (node._pattern < 0) {
+         node._pattern = index;
+      }
+   }
+
+   /**
+    * Builds the failure links breadth-first.
+    */
+   private void initFail() {
+      ArrayList<Node> queue = new ArrayList<Node>();
+
+      _root._fail = _root;
+
+      for (int i = 0; i < _root._size; i++) {
+         Node child = _root._children[i];
+
+         child._fail = _root;
+         child.initOutput();
+
+         queue.add(child);
+      }
+
+      for (int head = 0; head < queue.size(); head++) {
+         Node node = queue.get(head);
+
+         for (int i = 0; i < node._size; i++) {
+            Node child = node._children[i];
+
+            child._fail = getNext(node._fail, child._ch);
+            child.initOutput();
+
+            queue.add(child);
+         }
+      }
+   }
+
+   /**
+    * Returns true if replacing all strings in one pass gives the same
+    * result as replacing them one at a time.
+    */
+   private boolean isIndependent() {
+      int size = _from.length;
+
+      for (int i = 0; i < size; i++) {
+         StringValue from = _from[i];
+         int len = from.length();
+
+         Node node = _root;
+
+         for (int j = 0; j < len; j++) {
+            node = getNext(node, from.charAt(j));
+
+            // another search string ends inside this one, or duplicates it
+            if (j < len - 1 && node._outputMax >= 0
+                    || j == len - 1 && node._pattern != i) {
+               return false;
+            }
+         }
+
+         // another search string is a suffix of this one
+         if (node._fail._outputMax >= 0) {
+            return false;
+         }
+
+         // a suffix of this one starts another search string
+         for (Node fail = node._fail; fail != _root; fail = fail._fail) {
+            if (fail._patternCount > 1 || fail._firstPattern != i) {
+               return false;
+            }
+         }
+      }
+
+      // an empty replacement joins its neighbors, which may then form a
+      // later search string
+      boolean isLaterLong = false;
+
+      for (int i = size - 1; i >= 0; i--) {
+         if (_to[i].length() == 0 && isLaterLong) {
+            return false;
+         }
+
+         if (_from[i].length() > 1) {
+            isLaterLong = true;
+         }
+      }
+
+      // a later search string inside a replacement, or starting in its tail
+      for (int i = 0; i < size; i++) {
+         StringValue to = _to[i];
+         int len = to.length();
+
+         Node node = _root;
+
+         for (int j = 0; j < len; j++) {
+            node = getNext(node, to.charAt(j));
+
+            if (i < node._outputMax) {
+               return false;
+            }
+         }
+
+         for (; node != _root; node = node._fail) {
+            if (i < node._lastPattern) {
+               return false;
+            }
+         }
+      }
+
+      // an earlier replacement inside a search string, or starting in its
+      // tail, i.e. the search string ends in the replacement's head
+      ReplaceAutomaton toAutomaton = new ReplaceAutomaton(_to);
+
+      for (int j = 0; j < size; j++) {
+         StringValue from = _from[j];
+         int len = from.length();
+
+         Node node = toAutomaton._root;
+
+         for (int k = 0; k < len; k++) {
+            node = toAutomaton.getNext(node, from.charAt(k));
+
+            if (node._outputMin < j) {
+               return false;
+            }
+         }
+
+         for (; node != toAutomaton._root; node = node._fail) {
+            if (node._firstPattern < j) {
+               return false;
+            }
+         }
+      }
+
+      return true;
+   }
+
+   static final class Node {
+
+      private static final char[] NULL_CHARS = new char[0];
+      private static final Node[] NULL_NODES = new Node[0];
+      private final int _depth;
+      private char _ch;
+      private char[] _chars = NULL_CHARS;
+      private Node[] _children = NULL_NODES;
+      private int _size;
+      private int _pattern = -1;
+      private Node _fail;
+      private int _outputMin = Integer.MAX_VALUE;
+      private int _outputMax = -1;
+      private int _patternCount;
+      private int _firstPattern = Integer.MAX_VALUE;
+      private int _lastPattern = -1;
+
+      Node(int depth) {
+         _depth = depth;
+      }
+
+      /**
+       * Sets the lowest and highest strings ending here, including the
+       * suffixes on the failure links.
+       */
+      void initOutput() {
+         _outputMin = _fail._outputMin;
+         _outputMax = _fail._outputMax;
+
+         if (_pattern >= 0) {
+            _outputMin = Math.min(_outputMin, _pattern);
+            _outputMax = Math.max(_outputMax, _pattern);
+         }
+      }
+
+      Node getChild(char ch) {
+         int i = Arrays.binarySearch(_chars, 0, _size, ch);
+
+         if (i >= 0) {
+            return _children[i];
+         } else {
+            return null;
+         }
+      }
+
+      Node addChild(char ch) {
+         int i = Arrays.binarySearch(_chars, 0, _size, ch);
+
+         if (i >= 0) {
+            return _children[i];
+         }
+
+         i = -(i + 1);
+
+         if (_size == _chars.length) {
+            int capacity = Math.max(2, 2 * _size);
+
+            _chars = Arrays.copyOf(_chars, capacity);
+            _children = Arrays.copyOf(_children, capacity);
+         }
+
+         System.arraycopy(_chars, i, _chars, i + 1, _size - i);
+         System.arraycopy(_children, i, _children, i + 1, _size - i);
+
+         Node child = new Node(_depth + 1);
+         child._ch = ch;
+
+         _chars[i] = ch;
+         _children[i] = child;
+         _size++;
+
+         return child;
+      }
+   }
+
+   static final class Key {
+
+      private final StringValue[] _from;
+      private final StringValue[] _to;
+      private final boolean _isReplace;
+      private final int _hash;
+
+      Key(StringValue[] from, StringValue[] to, boolean isReplace) {
+         _from = from;
+         _to = to;
+         _isReplace = isReplace;
+
+         int hash = isReplace ? 1 : 0;
+
+         for (int i = 0; i < from.length; i++) {
+            hash = 65521 * hash + from[i].hashCode();
+            hash = 65521 * hash + to[i].hashCode();
+         }
+
+         _hash = hash;
+      }
+
+      @Override
+      public int hashCode() {
+         return _hash;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) {
+            return true;
+         } else if (!(o instanceof Key)) {
+            return false;
+         }
+
+         Key key = (Key) o;
+
+         if (_hash != key._hash
+                 || _isReplace != key._isReplace
+                 || _from.length != key._from.length) {
+            return false;
+         }
+
+         for (int i = 0; i < _from.length; i++) {
+            if (!isEqual(_from[i], key._from[i])
+                    || !isEqual(_to[i], key._to[i])) {
+               return false;
+            }
+         }
+
+         return true;
+      }
+
+      private static boolean isEqual(StringValue a, StringValue b) {
+         return a == b || a.equals(b);
+      }
+   }
+}
@@ -3307,13 +3307,23 @@ public class StringModule extends AbstractQuercusModule {
             env.warning(L.l("Array to string conversion"));
          }
 
-         subject = strReplaceImpl(env,
+         return strReplaceImpl(env,
                  searchString,
                  replace.toStringValue(),
                  subject,
                  count,
                  isInsensitive);
-      } else if (replace instanceof ArrayValue) {
+      }
+
+      if (!isInsensitive && search.getSize() > 1) {
+         ReplaceAutomaton automaton = createReplaceAutomaton(search, replace);
+
+         if (automaton != null && automaton.isSinglePass()) {
+            return automaton.replace(subject, count);
+         }
+      }
+
+      if (replace instanceof ArrayValue) {
          ArrayValue searchArray = (ArrayValue) search;
          ArrayValue replaceArray = (ArrayValue) replace;
 
@@ -3355,6 +3365,48 @@ public class StringModule extends AbstractQuercusModule {
       return subject;
    }
 
+   /**
+    * Returns the automaton for an array of search strings, pairing them
+    * with the replacements as the one-at-a-time loop does.
+    */
+   private static ReplaceAutomaton createReplaceAutomaton(Value search,
+           Value replace) {
+      ArrayValue searchArray = (ArrayValue) search;
+
+      int size = searchArray.getSize();
+
+      StringValue[] fromList = new StringValue[size];
+      StringValue[] toList = new StringValue[size];
+
+      Iterator<Value> searchIter = searchArray.values().iterator();
+      Iterator<Value> replaceIter = null;
+      StringValue replaceString = null;
+
+      if (replace instanceof ArrayValue) {
+         replaceIter = ((ArrayValue) replace).values().iterator();
+      } else {
+         replaceString = replace.toStringValue();
+      }
+
+      for (int i = 0; i < size; i++) {
+         fromList[i] = searchIter.next().toStringValue();
+
+         if (replaceIter != null) {
+            Value replaceItem = replaceIter.next();
+
+            if (replaceItem == null) {
+               replaceItem = NullValue.NULL;
+            }
+
+            toList[i] = replaceItem.toStringValue();
+         } else {
+            toList[i] = replaceString;
+         }
+      }
+
+      return ReplaceAutomaton.createReplace(fromList, toList);
+   }
+
    /**
     * replaces substrings.
     *
@@ -4747,9 +4799,23 @@ public class StringModule extends AbstractQuercusModule {
       StringValue[] fromList = new StringValue[size];
       StringValue[] toList = new StringValue[size];
 
+      int i = 0;
+      for (Map.Entry<Value, Value> entry : map.entrySet()) {
+         fromList[i] = entry.getKey().toStringValue();
+         toList[i] = entry.getValue().toStringValue();
+         i++;
+      }
+
+      ReplaceAutomaton automaton
+              = ReplaceAutomaton.createTranslate(fromList, toList);
+
+      if (automaton != null) {
+         return automaton.translate(string);
+      }
+
       Map.Entry<Value, Value>[] entryArray = new Map.Entry[size];
 
-      int i = 0;
+      i = 0;
       for (Map.Entry<Value, Value> entry : map.entrySet()) {
          entryArray[i++] = entry;
       }
@@ -32,6 +32,7 @@ import com.caucho.quercus.QuercusException;
 import com.caucho.quercus.annotation.Optional;
 import com.caucho.quercus.annotation.Reference;
 import com.caucho.quercus.env.*;
+import com.caucho.util.FreeList;
 import com.caucho.util.L10N;
 
 import org.xml.sax.*;
@@ -54,6 +55,11 @@ public class Xml {
 
     private static final Logger log = Logger.getLogger(Xml.class.getName());
     private static final L10N L = new L10N(Xml.class);
+    // the factory lookup is slow, so parsers are shared between requests
+    private static final SAXParserFactory _factory
+	= SAXParserFactory.newInstance();
+    private static final FreeList<SAXParser> _freeParserList
+	= new FreeList<SAXParser>(32);
     /**
      * XML_OPTION_CASE_FOLDING is enabled by default
      *
@@ -92,7 +98,6 @@ public class Xml {
     private Callable _unparsedEntityDeclHandler;
     private Value _parser;
     private Value _obj;
-    SAXParserFactory _factory = SAXParserFactory.newInstance();
     private StringValue _xmlString;
     private XmlHandler _xmlHandler;
 
@@ -364,8 +369,13 @@ public class Xml {
 
 		_xmlHandler = new XmlHandler(env);
 
-		SAXParser saxParser = _factory.newSAXParser();
-		saxParser.parse(is, _xmlHandler);
+		SAXParser saxParser = allocateParser();
+
+		try {
+		    saxParser.parse(is, _xmlHandler);
+		} finally {
+		    freeParser(saxParser);
+		}
 	    } catch (SAXException e) {
 		_errorCode = XmlModule.XML_ERROR_SYNTAX;
 		_errorString = e.toString();
@@ -429,8 +439,13 @@ public class Xml {
 	}
 
 	try {
-	    SAXParser saxParser = _factory.newSAXParser();
-	    saxParser.parse(is, new StructHandler(env, valueArray, indexArray));
+	    SAXParser saxParser = allocateParser();
+
+	    try {
+		saxParser.parse(is, new StructHandler(env, valueArray, indexArray));
+	    } finally {
+		freeParser(saxParser);
+	    }
 	} catch (SAXException e) {
 	    _errorCode = XmlModule.XML_ERROR_SYNTAX;
 	    _errorString = e.toString();
@@ -510,6 +525,30 @@ public class Xml {
 	}
     }
 
+    private static SAXParser allocateParser()
+	    throws ParserConfigurationException, SAXException {
+	SAXParser parser = _freeParserList.allocate();
+
+	if (parser == null) {
+	    synchronized (_factory) {
+		parser = _factory.newSAXParser();
+	    }
+	}
+
+	return parser;
+    }
+
+    private static void freeParser(SAXParser parser) {
+	try {
+	    parser.reset();
+	} catch (UnsupportedOperationException e) {
+	    // parsers without reset() are not reused
+	    return;
+	}
+
+	_freeParserList.free(parser);
+    }
+
     public String toString() {
 	return "Xml[]";
     }
@@ -47,6 +47,8 @@ public class XmlReader {
 
    private static final Logger log = Logger.getLogger(XmlReader.class.getName());
    private static final L10N L = new L10N(XmlReader.class);
+   // creating readers is thread-safe once the factory is configured
+   private static final XMLInputFactory _factory = XMLInputFactory.newInstance();
    private int _depth;
    private int _lastNodeType;
    private int _currentNodeType;
@@ -545,9 +547,7 @@ public class XmlReader {
     */
    public BooleanValue open(Env env, Path path) {
       try {
-         XMLInputFactory factory = XMLInputFactory.newInstance();
-
-         _streamReader = factory.createXMLStreamReader(
+         _streamReader = _factory.createXMLStreamReader(
                  path.getNativePath(), path.openRead());
       } catch (XMLStreamException ex) {
          log.log(Level.WARNING, ex.toString(), ex);
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+package com.caucho.quercus.lib.zlib;
+
+import java.util.zip.Deflater;
+
+/**
+ * Per-thread cache of deflaters, since each new Deflater allocates
+ * native zlib state.
+ */
+public final class DeflaterPool {
+
+   /**
+    * Deflaters without a zlib wrapper, for gzip streams.
+    */
+   public static final DeflaterPool GZIP = new DeflaterPool(true);
+   /**
+    * Deflaters with a zlib wrapper, for HTTP "deflate" streams.
+    */
+   public static final DeflaterPool DEFLATE = new DeflaterPool(false);
+   private final boolean _isNowrap;
+   private final ThreadLocal<Deflater> _deflater = new ThreadLocal<Deflater>();
+
+   private DeflaterPool(boolean isNowrap) {
+      _isNowrap = isNowrap;
+   }
+
+   /**
+    * Returns a deflater at the given compression level.
+    */
+   public Deflater allocate(int level) {
+      Deflater deflater = _deflater.get();
+
+      if (deflater == null) {
+         return new Deflater(level, _isNowrap);
+      }
+
+      _deflater.set(null);
+
+      deflater.setLevel(level);
+
+      return deflater;
+   }
+
+   /**
+    * Returns a deflater from allocate() to the pool.
+    */
+   public void free(Deflater deflater) {
+      if (_deflater.get() == null) {
+         deflater.reset();
+         deflater.setStrategy(Deflater.DEFAULT_STRATEGY);
+
+         _deflater.set(deflater);
+      } else {
+         deflater.end();
+      }
+   }
+}
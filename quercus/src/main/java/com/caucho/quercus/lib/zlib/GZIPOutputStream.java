@@ -28,6 +28,8 @@
  */
 package com.caucho.quercus.lib.zlib;
 
+import com.caucho.vfs.TempBuffer;
+
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.zip.CRC32;
@@ -68,6 +70,25 @@ public class GZIPOutputStream extends DeflaterOutputStream {
       out.write(_header, 0, _header.length);
    }
 
+   /**
+    * Writes gzip output through the caller's deflater, which must omit
+    * the zlib header.  The caller remains responsible for the deflater.
+    *
+    * @param out
+    * @param def
+    * @param isSyncFlush true if flush() writes all pending compressed data
+    */
+   public GZIPOutputStream(OutputStream out, Deflater def, boolean isSyncFlush)
+           throws IOException {
+      super(out, def, TempBuffer.SIZE, isSyncFlush);
+
+      out.write(_header, 0, _header.length);
+
+      _isGzip = true;
+      _crc32 = new CRC32();
+      _encodingMode = ZlibModule.FORCE_GZIP;
+   }
+
    /**
     * @param out
     * @param compressionLevel
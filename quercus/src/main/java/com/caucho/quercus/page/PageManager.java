@@ -28,6 +28,8 @@
  */
 package com.caucho.quercus.page;
 
+import com.caucho.env.meter.CountMeter;
+import com.caucho.env.meter.MeterService;
 import com.caucho.quercus.QuercusContext;
 import com.caucho.quercus.parser.QuercusParser;
 import com.caucho.quercus.program.QuercusProgram;
@@ -54,6 +56,8 @@ public class PageManager {
    private boolean _isCompileFailover = Alarm.isActive();
    private boolean _isRequireSource = true;
    protected LruCache<Path, QuercusProgram> _programCache = new LruCache<Path, QuercusProgram>(1024);
+   private static final CountMeter _pageHitMeter = MeterService.createCountMeter("Quercus|Page|Hit");
+   private static final CountMeter _pageParseMeter = MeterService.createCountMeter("Quercus|Page|Parse");
    private boolean _isClosed;
 
    /**
@@ -218,6 +222,8 @@ public class PageManager {
                   log.fine(L.l("Quercus[{0}] loading interpreted page", path));
                }
 
+               _pageHitMeter.start();
+
                return new InterpretedPage(program);
             }
          }
@@ -232,6 +238,8 @@ public class PageManager {
                   log.fine(L.l("Quercus[{0}] parsing page", path));
                }
 
+               _pageParseMeter.start();
+
                program = QuercusParser.parse(_quercus,
                        path,
                        _quercus.getScriptEncoding(),
@@ -240,6 +248,8 @@ public class PageManager {
             }
 
             _programCache.put(path, program);
+         } else {
+            _pageHitMeter.start();
          }
 
          if (program.getCompiledPage() != null) {
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+package com.caucho.quercus.parser;
+
+import com.caucho.util.CharBuffer;
+
+import java.util.ArrayList;
+
+/**
+ * Case-insensitive map from the reserved words to their tokens.
+ *
+ * The table is rebuilt on each put with a hash multiplier giving no
+ * collisions, so a lookup hashes the lexeme buffer once and compares
+ * a single entry without allocating a lower-case string.
+ */
+class KeywordMap {
+
+   private final ArrayList<String> _keyList = new ArrayList<String>();
+   private final ArrayList<Integer> _valueList = new ArrayList<Integer>();
+   private String[] _keys = new String[1];
+   private int[] _values = new int[1];
+   private int _mask;
+   private int _multiplier = 1;
+
+   /**
+    * Adds a lower-case keyword.
+    */
+   void put(String key, int value) {
+      _keyList.add(key);
+      _valueList.add(value);
+
+      for (int size = 64;; size *= 2) {
+         for (int multiplier = 31; multiplier < 4096; multiplier += 2) {
+            if (build(size, multiplier)) {
+               return;
+            }
+         }
+      }
+   }
+
+   /**
+    * Returns the token for the buffer, or -1 if it is not reserved.
+    */
+   int get(CharBuffer cb) {
+      char[] buffer = cb.getBuffer();
+      int length = cb.length();
+
+      int hash = 0;
+
+      for (int i = 0; i < length; i++) {
+         hash = hash * _multiplier + toLower(buffer[i]);
+      }
+
+      int index = (hash ^ (hash >>> 16)) & _mask;
+
+      String key = _keys[index];
+
+      if (key == null || key.length() != length) {
+         return -1;
+      }
+
+      for (int i = 0; i < length; i++) {
+         if (toLower(buffer[i]) != key.charAt(i)) {
+            return -1;
+         }
+      }
+
+      return _values[index];
+   }
+
+   private boolean build(int size, int multiplier) {
+      String[] keys = new String[size];
+      int[] values = new int[size];
+      int mask = size - 1;
+
+      for (int i = 0; i < _keyList.size(); i++) {
+         String key = _keyList.get(i);
+
+         int hash = 0;
+
+         for (int j = 0; j < key.length(); j++) {
+            hash = hash * multiplier + key.charAt(j);
+         }
+
+         int index = (hash ^ (hash >>> 16)) & mask;
+
+         if (keys[index] != null) {
+            return false;
+         }
+
+         keys[index] = key;
+         values[index] = _valueList.get(i);
+      }
+
+      _keys = keys;
+      _values = values;
+      _mask = mask;
+      _multiplier = multiplier;
+
+      return true;
+   }
+
+   private static int toLower(char ch) {
+      if ('A' <= ch && ch <= 'Z') {
+         return ch + 'a' - 'A';
+      } else {
+         return ch;
+      }
+   }
+}
@@ -37,7 +37,6 @@ import com.caucho.quercus.function.*;
 import com.caucho.quercus.program.*;
 import com.caucho.quercus.statement.*;
 import com.caucho.util.CharBuffer;
-import com.caucho.util.IntMap;
 import com.caucho.util.L10N;
 import com.caucho.vfs.*;
 
@@ -167,8 +166,7 @@ public class QuercusParser {
    private final static int NAMESPACE = 576;
    private final static int USE = 577;
    private final static int LAST_IDENTIFIER_LEXEME = 1024;
-   private final static IntMap _insensitiveReserved = new IntMap();
-   private final static IntMap _reserved = new IntMap();
+   private final static KeywordMap _insensitiveReserved = new KeywordMap();
    private QuercusContext _quercus;
    private Path _sourceFile;
    private int _sourceOffset; // offset into the source file for the first line
@@ -177,6 +175,11 @@ public class QuercusParser {
    private boolean _hasCr;
    private int _peek = -1;
    private ReadStream _is;
+   // the source is decoded up front and scanned by index
+   private char[] _buffer = new char[0];
+   private int _offset;
+   private int _length;
+   private IOException _readException;
    private String _encoding;
    private CharBuffer _sb = new CharBuffer();
    private String _namespace = "";
@@ -246,6 +249,45 @@ public class QuercusParser {
 
       _peek = -1;
       _peekToken = -1;
+
+      _buffer = new char[0];
+      _offset = 0;
+      _length = 0;
+      _readException = null;
+   }
+
+   /**
+    * Decodes the rest of the stream into the scan buffer. A decoding
+    * failure is saved and thrown when the scanner reaches it.
+    */
+   private void fillBuffer() {
+      ReadStream is = _is;
+
+      if (is == null || _length > 0 || _readException != null) {
+         return;
+      }
+
+      char[] buffer = new char[8192];
+      int length = 0;
+
+      try {
+         int sublen;
+
+         while ((sublen = is.read(buffer, length, buffer.length - length)) >= 0) {
+            length += sublen;
+
+            if (length == buffer.length) {
+               char[] newBuffer = new char[2 * buffer.length];
+               System.arraycopy(buffer, 0, newBuffer, 0, length);
+               buffer = newBuffer;
+            }
+         }
+      } catch (IOException e) {
+         _readException = e;
+      }
+
+      _buffer = buffer;
+      _length = length;
    }
 
    public void setLocation(String fileName, int line) {
@@ -4442,7 +4484,7 @@ public class QuercusParser {
            throws IOException {
       ch = ignoreWhiteSpace(ch);
 
-      long pos = _is.getPosition();
+      int pos = _offset;
 
       if (ch == '/') {
          if ((ch = read()) == '*') {
@@ -4451,7 +4493,7 @@ public class QuercusParser {
             ch = ignoreSingleLineComment(ch);
          } else {
             // Restore previous character if not comment
-            _is.setPosition(pos);
+            _offset = pos;
             ch = '/';
          }
       }
@@ -4463,7 +4505,7 @@ public class QuercusParser {
          _sb.append((char) ch);
 
          for (ch = read(); ch >= 0; ch = read()) {
-            pos = _is.getPosition();
+            pos = _offset;
             if (ch == '/') {
                if ((ch = read()) == '*') {
                   ch = ignoreMultiLineComment(ch);
@@ -4474,7 +4516,7 @@ public class QuercusParser {
                }
 
                // Restore previous character if not comment
-               _is.setPosition(pos);
+               _offset = pos;
                ch = '/';
             }
 
@@ -4502,13 +4544,8 @@ public class QuercusParser {
          return IDENTIFIER;
       }
 
-      int reserved = _reserved.get(_lexeme);
-
-      if (reserved > 0) {
-         return reserved;
-      }
+      int reserved = _insensitiveReserved.get(_sb);
 
-      reserved = _insensitiveReserved.get(_lexeme.toLowerCase());
       if (reserved > 0) {
          return reserved;
       } else {
@@ -5480,28 +5517,46 @@ public class QuercusParser {
          return peek;
       }
 
-      try {
-         int ch = _is.readChar();
+      if (_length <= _offset) {
+         fillBuffer();
 
-         if (ch == '\r') {
-            _parserLocation.incrementLineNumber();
-            _hasCr = true;
-         } else if (ch == '\n' && !_hasCr) {
-            _parserLocation.incrementLineNumber();
-         } else {
-            _hasCr = false;
+         if (_length <= _offset) {
+            return readEnd();
          }
+      }
+
+      int ch = _buffer[_offset++];
+
+      if (ch == '\r') {
+         _parserLocation.incrementLineNumber();
+         _hasCr = true;
+      } else if (ch == '\n' && !_hasCr) {
+         _parserLocation.incrementLineNumber();
+      } else {
+         _hasCr = false;
+      }
+
+      return ch;
+   }
+
+   /**
+    * Returns the end of file, or throws the saved decoding error.
+    */
+   private int readEnd()
+           throws IOException {
+      IOException e = _readException;
 
-         return ch;
-      } catch (CharConversionException e) {
+      if (e instanceof CharConversionException) {
          throw new QuercusParseException(getFileName() + ":" + getLine()
                  + ": " + e
                  + "\nCheck that the script-encoding setting matches the "
                  + "source file's encoding", e);
-      } catch (IOException e) {
+      } else if (e != null) {
          throw new IOExceptionWrapper(
                  getFileName() + ":" + getLine() + ":" + e, e);
       }
+
+      return -1;
    }
 
    /*
@@ -5509,38 +5564,8 @@ public class QuercusParser {
     */
    private int readByte()
            throws IOException {
-      int peek = _peek;
-
-      if (peek >= 0) {
-         _peek = -1;
-         return peek;
-      }
-
-      try {
-         int ch;
-
-         // TODO: should really be handled by ReadStream
-         // php/001b
-         if (_encoding == null) {
-            ch = _is.read();
-         } else {
-            ch = _is.readChar();
-         }
-
-         if (ch == '\r') {
-            _parserLocation.incrementLineNumber();
-            _hasCr = true;
-         } else if (ch == '\n' && !_hasCr) {
-            _parserLocation.incrementLineNumber();
-         } else {
-            _hasCr = false;
-         }
-
-         return ch;
-      } catch (IOException e) {
-         throw new IOExceptionWrapper(
-                 getFileName() + ":" + getLine() + ":" + e, e);
-      }
+      // php/001b - the source is already decoded with the script encoding
+      return read();
    }
 
    /**
@@ -32,6 +32,7 @@ import com.caucho.quercus.Location;
 import com.caucho.quercus.env.Env;
 import com.caucho.quercus.env.EnvVar;
 import com.caucho.quercus.env.EnvVarImpl;
+import com.caucho.quercus.env.NameIntern;
 import com.caucho.quercus.env.NullThisValue;
 import com.caucho.quercus.env.NullValue;
 import com.caucho.quercus.env.StringValue;
@@ -72,7 +73,7 @@ public class Function extends AbstractFunction {
            Statement[] statements) {
       super(location);
 
-      _name = name.intern();
+      _name = NameIntern.intern(name);
       _info = info;
       _info.setFunction(this);
       _isReturnsReference = info.isReturnsReference();
@@ -93,7 +94,7 @@ public class Function extends AbstractFunction {
            Statement[] statements) {
       super(location);
 
-      _name = name.intern();
+      _name = NameIntern.intern(name);
       _info = info;
       _info.setFunction(this);
       _isReturnsReference = info.isReturnsReference();
@@ -241,6 +242,8 @@ public class Function extends AbstractFunction {
    }
 
    private Value callImpl(Env env, Expr[] args, boolean isRef) {
+      env.checkTimeout();
+
       HashMap<StringValue, EnvVar> map = new HashMap<StringValue, EnvVar>();
 
       Value[] values = new Value[args.length];
@@ -337,6 +340,8 @@ public class Function extends AbstractFunction {
 
    public Value callImpl(Env env, Value[] args, boolean isRef,
            Arg[] useParams, Value[] useArgs) {
+      env.checkTimeout();
+
       HashMap<StringValue, EnvVar> map = new HashMap<StringValue, EnvVar>(8);
 
       if (useParams != null) {
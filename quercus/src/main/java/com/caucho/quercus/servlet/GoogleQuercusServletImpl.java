@@ -75,7 +75,8 @@ public class GoogleQuercusServletImpl extends QuercusServletImpl {
       return this;
    }
 
-   protected WriteStream openWrite(HttpServletResponse response)
+   protected WriteStream openWrite(HttpServletRequest request,
+           HttpServletResponse response)
            throws IOException {
       WriteStream ws;
 
@@ -156,7 +157,7 @@ public class GoogleQuercusServletImpl extends QuercusServletImpl {
             return;
          }
 
-         ws = openWrite(response);
+         ws = openWrite(request, response);
 
          // php/6006
          ws.setNewlineString("\n");
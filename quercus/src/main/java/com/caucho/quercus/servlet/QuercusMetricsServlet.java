@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+package com.caucho.quercus.servlet;
+
+import com.caucho.env.meter.AbstractMeter;
+import com.caucho.env.meter.ActiveMeter;
+import com.caucho.env.meter.ActiveTimeMeter;
+import com.caucho.env.meter.CountMeter;
+import com.caucho.env.meter.HistogramMeter;
+import com.caucho.env.meter.MeterService;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Exports the meters in the Prometheus text format, e.g.
+ *
+ * <pre>
+ * &lt;servlet-mapping url-pattern="/metrics"
+ *                  servlet-class="com.caucho.quercus.servlet.QuercusMetricsServlet"/>
+ * </pre>
+ *
+ * Counters export their totals and histograms their cumulative buckets.
+ * Meters which are only sampled by the statistics service are skipped,
+ * since sampling resets them.
+ */
+@SuppressWarnings("serial")
+public class QuercusMetricsServlet extends HttpServlet {
+
+   @Override
+   protected void doGet(HttpServletRequest request,
+           HttpServletResponse response)
+           throws ServletException, IOException {
+      response.setContentType("text/plain; version=0.0.4");
+      response.setCharacterEncoding("UTF-8");
+
+      ArrayList<AbstractMeter> meters = new ArrayList<AbstractMeter>(MeterService.getMeters());
+
+      Collections.sort(meters, new Comparator<AbstractMeter>() {
+
+         public int compare(AbstractMeter a, AbstractMeter b) {
+            return a.getName().compareTo(b.getName());
+         }
+      });
+
+      PrintWriter out = response.getWriter();
+
+      for (AbstractMeter meter : meters) {
+         if (meter instanceof CountMeter) {
+            printCounter(out, meter.getName(),
+                    ((CountMeter) meter).getTotal());
+         } else if (meter instanceof HistogramMeter) {
+            printHistogram(out, (HistogramMeter) meter);
+         } else if (meter instanceof ActiveMeter) {
+            ActiveMeter activeMeter = (ActiveMeter) meter;
+
+            printGauge(out, meter.getName(), activeMeter.getActiveCount());
+            printCounter(out, meter.getName(), activeMeter.getTotalCount());
+         } else if (meter instanceof ActiveTimeMeter) {
+            ActiveTimeMeter timeMeter = (ActiveTimeMeter) meter;
+
+            printGauge(out, meter.getName(), timeMeter.getActiveCount());
+            printCounter(out, meter.getName(), timeMeter.getTotalCount());
+            printCounter(out, meter.getName() + " ms",
+                    timeMeter.getTotalTime());
+         }
+      }
+
+      out.flush();
+   }
+
+   private void printCounter(PrintWriter out, String meterName, long value) {
+      String name = toMetricName(meterName) + "_total";
+
+      out.print("# TYPE ");
+      out.print(name);
+      out.println(" counter");
+
+      out.print(name);
+      out.print(' ');
+      out.println(value);
+   }
+
+   private void printGauge(PrintWriter out, String meterName, long value) {
+      String name = toMetricName(meterName);
+
+      out.print("# TYPE ");
+      out.print(name);
+      out.println(" gauge");
+
+      out.print(name);
+      out.print(' ');
+      out.println(value);
+   }
+
+   private void printHistogram(PrintWriter out, HistogramMeter meter) {
+      String name = toMetricName(meter.getName()) + "_ms";
+
+      out.print("# TYPE ");
+      out.print(name);
+      out.println(" histogram");
+
+      long[] bounds = meter.getBounds();
+      long count = 0;
+
+      for (int i = 0; i < bounds.length; i++) {
+         count += meter.getBucketCount(i);
+
+         out.print(name);
+         out.print("_bucket{le=\"");
+         out.print(bounds[i]);
+         out.print("\"} ");
+         out.println(count);
+      }
+
+      count += meter.getBucketCount(bounds.length);
+
+      out.print(name);
+      out.print("_bucket{le=\"+Inf\"} ");
+      out.println(count);
+
+      out.print(name);
+      out.print("_sum ");
+      out.println(meter.getSum());
+
+      out.print(name);
+      out.print("_count ");
+      out.println(count);
+   }
+
+   /**
+    * Converts a meter name like "Quercus|Page|Hit" to "quercus_page_hit".
+    */
+   static String toMetricName(String meterName) {
+      StringBuilder sb = new StringBuilder();
+
+      for (int i = 0; i < meterName.length(); i++) {
+         char ch = Character.toLowerCase(meterName.charAt(i));
+
+         if ('a' <= ch && ch <= 'z' || '0' <= ch && ch <= '9') {
+            sb.append(ch);
+         } else if (ch == '%') {
+            sb.append("pct");
+         } else if (sb.length() > 0 && sb.charAt(sb.length() - 1) != '_') {
+            sb.append('_');
+         }
+      }
+
+      if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '_') {
+         sb.setLength(sb.length() - 1);
+      }
+
+      if (sb.length() == 0 || '0' <= sb.charAt(0) && sb.charAt(0) <= '9') {
+         sb.insert(0, '_');
+      }
+
+      return sb.toString();
+   }
+}
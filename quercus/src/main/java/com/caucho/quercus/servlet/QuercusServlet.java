@@ -74,6 +74,13 @@ public class QuercusServlet
    private int _pageCacheSize = -1;
    private int _regexpCacheSize = -1;
    private boolean _isConnectionPool = true;
+   private ArrayList<String> _warmupPathList = new ArrayList<String>();
+   private int _warmupThreads;
+   private int _outputChunkSize;
+   private int _flushMinBytes;
+   private long _flushMinInterval;
+   private boolean _isOutputCompression;
+   private int _outputCompressionLevel = -1;
    private String _iniPath;
    private String _scriptEncoding;
    private String _mysqlVersion;
@@ -265,6 +272,61 @@ public class QuercusServlet
       _regexpCacheSize = size;
    }
 
+   /*
+    * Sets the directories or scripts to parse on startup, separated by commas.
+    */
+   public void setWarmupPath(String paths) {
+      for (String path : paths.split(",")) {
+         path = path.trim();
+
+         if (path.length() > 0) {
+            _warmupPathList.add(path);
+         }
+      }
+   }
+
+   /*
+    * Sets the number of threads parsing the warm-up scripts.
+    */
+   public void setWarmupThreads(int threads) {
+      _warmupThreads = threads;
+   }
+
+   /*
+    * Sets the size of the chunks written to the servlet response.
+    */
+   public void setOutputChunkSize(int size) {
+      _outputChunkSize = size;
+   }
+
+   /*
+    * Sets the bytes to accumulate before a script flush reaches the client.
+    */
+   public void setFlushMinBytes(int bytes) {
+      _flushMinBytes = bytes;
+   }
+
+   /*
+    * Sets the milliseconds to wait before a script flush reaches the client.
+    */
+   public void setFlushMinInterval(long interval) {
+      _flushMinInterval = interval;
+   }
+
+   /*
+    * Turns gzip compression of responses on or off.
+    */
+   public void setOutputCompression(boolean isEnable) {
+      _isOutputCompression = isEnable;
+   }
+
+   /*
+    * Sets the gzip compression level, 1-9, or -1 for the zlib default.
+    */
+   public void setOutputCompressionLevel(int level) {
+      _outputCompressionLevel = level;
+   }
+
    /*
     * Turns connection pooling on or off.
     */
@@ -470,6 +532,20 @@ public class QuercusServlet
          setPageCacheSize(Integer.parseInt(paramValue));
       } else if ("regexp-cache-size".equals(paramName)) {
          setRegexpCacheSize(Integer.parseInt(paramValue));
+      } else if ("warmup-path".equals(paramName)) {
+         setWarmupPath(paramValue);
+      } else if ("warmup-threads".equals(paramName)) {
+         setWarmupThreads(Integer.parseInt(paramValue));
+      } else if ("output-chunk-size".equals(paramName)) {
+         setOutputChunkSize(Integer.parseInt(paramValue));
+      } else if ("flush-min-bytes".equals(paramName)) {
+         setFlushMinBytes(Integer.parseInt(paramValue));
+      } else if ("flush-min-interval".equals(paramName)) {
+         setFlushMinInterval(Long.parseLong(paramValue));
+      } else if ("output-compression".equals(paramName)) {
+         setOutputCompression("true".equals(paramValue));
+      } else if ("output-compression-level".equals(paramName)) {
+         setOutputCompressionLevel(Integer.parseInt(paramValue));
       } else if ("connection-pool".equals(paramName)) {
          setConnectionPool("true".equals(paramValue));
       } else if ("require-source".equals(paramName)) {
@@ -506,6 +582,11 @@ public class QuercusServlet
       quercus.setLooseParse(_isLooseParse);
       quercus.setPageCacheSize(_pageCacheSize);
       quercus.setRegexpCacheSize(_regexpCacheSize);
+      quercus.setOutputChunkSize(_outputChunkSize);
+      quercus.setFlushMinBytes(_flushMinBytes);
+      quercus.setFlushMinInterval(_flushMinInterval);
+      quercus.setOutputCompression(_isOutputCompression);
+      quercus.setOutputCompressionLevel(_outputCompressionLevel);
       quercus.setConnectionPool(_isConnectionPool);
 
       if (_iniPath != null) {
@@ -552,6 +633,22 @@ public class QuercusServlet
             quercus.setServerEnv(entry.getKey(), entry.getValue());
          }
       }
+
+      for (String path : _warmupPathList) {
+         String realPath = getServletContext().getRealPath(path);
+
+         if (realPath == null) {
+            // e.g. an unexpanded war
+            log.warning(L.l("warmup-path '{0}' has no real path and is skipped",
+                    path));
+            continue;
+         }
+
+         quercus.addWarmupPath(quercus.getPwd().lookup(realPath));
+      }
+
+      quercus.setWarmupThreads(_warmupThreads);
+      quercus.startWarmup();
    }
 
    /**
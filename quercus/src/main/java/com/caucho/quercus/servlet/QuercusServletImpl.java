@@ -126,6 +126,16 @@ public class QuercusServletImpl extends HttpServlet {
       Env env = null;
       WriteStream ws = null;
 
+      if (!getQuercus().isReady()) {
+         // still warming up, so load balancers retry on another server
+         response.setHeader("Retry-After", "1");
+         response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+         return;
+      }
+
+      long startTime = getQuercus().getExactTimeNanoseconds();
+
       try {
          Path path = getPath(request);
 
@@ -143,7 +153,7 @@ public class QuercusServletImpl extends HttpServlet {
          }
 
 
-         ws = openWrite(response);
+         ws = openWrite(request, response);
 
          // php/6006
          ws.setNewlineString("\n");
@@ -218,6 +228,9 @@ public class QuercusServletImpl extends HttpServlet {
                env.close();
             }
 
+            long time = quercus.getExactTimeNanoseconds() - startTime;
+            quercus.addRequestTime(time / 1000000L);
+
             // don't want a flush for an exception
             if (ws != null && env.getDuplex() == null) {
                ws.close();
@@ -239,15 +252,62 @@ public class QuercusServletImpl extends HttpServlet {
       }
    }
 
-   protected WriteStream openWrite(HttpServletResponse response)
+   protected WriteStream openWrite(HttpServletRequest request,
+           HttpServletResponse response)
            throws IOException {
-      WriteStream ws;
-
       OutputStream out = response.getOutputStream();
 
-      ws = Vfs.openWrite(out);
+      QuercusContext quercus = getQuercus();
+
+      int chunkSize = quercus.getOutputChunkSize();
+
+      if (chunkSize <= 0) {
+         chunkSize = Math.max(response.getBufferSize(),
+                 ResponseStream.DEFAULT_CHUNK_SIZE);
+      }
+
+      ResponseStream rs = new ResponseStream(out,
+              chunkSize,
+              quercus.getFlushMinBytes(),
+              quercus.getFlushMinInterval());
+
+      if (quercus.isOutputCompression() && isGzipAccepted(request)) {
+         rs.setCompression(response, quercus.getOutputCompressionLevel());
+      }
+
+      return new WriteStream(rs);
+   }
+
+   /**
+    * Returns true if the client accepts a gzip content-encoding.
+    */
+   private static boolean isGzipAccepted(HttpServletRequest request) {
+      String accept = request.getHeader("Accept-Encoding");
+
+      if (accept == null) {
+         return false;
+      }
+
+      for (String coding : accept.split(",")) {
+         String quality = "";
+
+         int p = coding.indexOf(';');
+
+         if (p >= 0) {
+            quality = coding.substring(p + 1).trim();
+            coding = coding.substring(0, p);
+         }
+
+         coding = coding.trim();
+
+         if (coding.equalsIgnoreCase("gzip")
+                 || coding.equalsIgnoreCase("x-gzip")) {
+            // "q=0" refuses the coding
+            return !quality.matches("[qQ]\\s*=\\s*0(\\.0*)?");
+         }
+      }
 
-      return ws;
+      return false;
    }
 
    Path getPath(HttpServletRequest req) {
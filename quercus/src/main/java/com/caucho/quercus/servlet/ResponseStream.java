@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+package com.caucho.quercus.servlet;
+
+import com.caucho.quercus.lib.zlib.DeflaterPool;
+import com.caucho.quercus.lib.zlib.GZIPOutputStream;
+import com.caucho.util.Alarm;
+import com.caucho.vfs.StreamImpl;
+import com.caucho.vfs.TempBuffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Stream to the servlet response.  Small writes are coalesced into a
+ * chunk before reaching the container, and explicit flushes are
+ * skipped until enough bytes or time have accumulated.  When enabled,
+ * chunks are gzip-compressed as they are written.
+ */
+class ResponseStream extends StreamImpl {
+
+   // responses smaller than this aren't worth compressing
+   private static final int COMPRESS_MIN = 256;
+   // several WriteStream buffers, so small writes are actually coalesced
+   static final int DEFAULT_CHUNK_SIZE = 4 * TempBuffer.SIZE;
+   private static final HashSet<String> _compressedTypes
+           = new HashSet<String>();
+
+   private OutputStream _os;
+   // set when the container's stream accepts ByteBuffers directly
+   private WritableByteChannel _channel;
+   private WritableByteChannel _transferChannel;
+   private final byte[] _buffer;
+   private int _length;
+   private final int _flushMinBytes;
+   private final long _flushMinInterval;
+   private long _unflushedLength;
+   private long _lastFlushTime;
+   // response awaiting the compression decision at its first write
+   private HttpServletResponse _compressResponse;
+   private int _compressionLevel;
+   private Deflater _deflater;
+   private GZIPOutputStream _gzipOut;
+
+   ResponseStream(OutputStream os,
+           int chunkSize,
+           int flushMinBytes,
+           long flushMinInterval) {
+      _os = os;
+
+      if (os instanceof WritableByteChannel) {
+         _channel = (WritableByteChannel) os;
+      }
+
+      _buffer = new byte[Math.max(chunkSize, TempBuffer.SIZE)];
+      _flushMinBytes = flushMinBytes;
+      _flushMinInterval = flushMinInterval;
+
+      if (flushMinInterval > 0) {
+         _lastFlushTime = Alarm.getCurrentTime();
+      }
+   }
+
+   /**
+    * Compresses the response with gzip unless its headers rule it out
+    * when the first chunk is written.
+    */
+   void setCompression(HttpServletResponse response, int level) {
+      _compressResponse = response;
+      _compressionLevel = level;
+   }
+
+   /**
+    * Returns true since the stream can write.
+    */
+   @Override
+   public boolean canWrite() {
+      return _os != null;
+   }
+
+   /**
+    * Writes a buffer, copying it into the chunk unless the chunk
+    * would be no help.
+    */
+   @Override
+   public void write(byte[] buf, int offset, int length, boolean isEnd)
+           throws IOException {
+      if (_os == null) {
+         return;
+      }
+
+      _unflushedLength += length;
+
+      byte[] buffer = _buffer;
+
+      if (length < buffer.length - _length) {
+         System.arraycopy(buf, offset, buffer, _length, length);
+         _length += length;
+
+         return;
+      }
+
+      writeBuffer();
+
+      if (length < buffer.length) {
+         System.arraycopy(buf, offset, buffer, 0, length);
+         _length = length;
+      } else {
+         writeDirect(buf, offset, length);
+      }
+   }
+
+   /**
+    * Flushes the chunk to the container if enough output has
+    * accumulated since the last flush.
+    */
+   @Override
+   public void flush() throws IOException {
+      if (_os == null || !isFlushDue()) {
+         return;
+      }
+
+      writeBuffer();
+
+      if (_compressResponse != null) {
+         startCompression();
+      }
+
+      if (_deflater != null) {
+         // sync flush, so the client can decode everything sent so far
+         getGzipOut().flush();
+      } else {
+         _os.flush();
+      }
+
+      _unflushedLength = 0;
+
+      if (_flushMinInterval > 0) {
+         _lastFlushTime = Alarm.getCurrentTime();
+      }
+   }
+
+   private boolean isFlushDue() {
+      if (_flushMinBytes <= 0 && _flushMinInterval <= 0) {
+         return true;
+      } else if (_unflushedLength == 0) {
+         return false;
+      } else if (_flushMinBytes > 0 && _flushMinBytes <= _unflushedLength) {
+         return true;
+      } else if (_flushMinInterval > 0
+              && _flushMinInterval <= Alarm.getCurrentTime() - _lastFlushTime) {
+         return true;
+      } else {
+         return false;
+      }
+   }
+
+   /**
+    * Returns true if the stream can write directly from a file channel.
+    */
+   @Override
+   public boolean canWriteChannel() {
+      if (_compressResponse != null) {
+         // the channel write is the next output, so the headers are final
+         startCompression();
+      }
+
+      // compressed output must pass through the deflater
+      return _os != null && _deflater == null;
+   }
+
+   /**
+    * Writes a region of a file channel after draining the chunk.
+    */
+   @Override
+   public long writeChannel(FileChannel channel, long offset, long length)
+           throws IOException {
+      writeBuffer();
+
+      WritableByteChannel writeChannel = _transferChannel;
+
+      if (writeChannel == null) {
+         writeChannel = _channel;
+
+         if (writeChannel == null) {
+            writeChannel = Channels.newChannel(_os);
+         }
+
+         _transferChannel = writeChannel;
+      }
+
+      long size = channel.size();
+
+      if (size <= offset) {
+         return 0;
+      } else if (size - offset < length) {
+         length = size - offset;
+      }
+
+      long writeLength = 0;
+
+      while (writeLength < length) {
+         long sublen = channel.transferTo(offset + writeLength,
+                 length - writeLength,
+                 writeChannel);
+
+         if (sublen <= 0) {
+            break;
+         }
+
+         writeLength += sublen;
+      }
+
+      _unflushedLength += writeLength;
+
+      return writeLength;
+   }
+
+   /**
+    * Writes the remaining chunk and closes the response stream.
+    */
+   @Override
+   public void close() throws IOException {
+      OutputStream os = _os;
+
+      if (os == null) {
+         return;
+      }
+
+      try {
+         // compression hasn't started, so nothing has left the buffer
+         // (writeDirect, flush and canWriteChannel all decide first) and
+         // _length is the whole response
+         if (_compressResponse != null && _deflater == null
+                 && _length < COMPRESS_MIN) {
+            _compressResponse = null;
+         }
+
+         writeBuffer();
+
+         if (_deflater != null) {
+            getGzipOut().finish();
+         }
+      } finally {
+         _os = null;
+
+         if (_deflater != null) {
+            DeflaterPool.GZIP.free(_deflater);
+            _deflater = null;
+            _gzipOut = null;
+         }
+
+         os.close();
+      }
+   }
+
+   private void writeBuffer() throws IOException {
+      int length = _length;
+
+      if (length > 0) {
+         _length = 0;
+
+         writeDirect(_buffer, 0, length);
+      }
+   }
+
+   private void writeDirect(byte[] buf, int offset, int length)
+           throws IOException {
+      if (_compressResponse != null) {
+         startCompression();
+      }
+
+      if (_deflater != null) {
+         getGzipOut().write(buf, offset, length);
+
+         return;
+      }
+
+      WritableByteChannel channel = _channel;
+
+      if (channel == null) {
+         _os.write(buf, offset, length);
+
+         return;
+      }
+
+      ByteBuffer byteBuffer = ByteBuffer.wrap(buf, offset, length);
+
+      while (byteBuffer.hasRemaining()) {
+         channel.write(byteBuffer);
+      }
+   }
+
+   /**
+    * Decides on compression once the script's headers are final,
+    * just before the response commits.
+    */
+   private void startCompression() {
+      HttpServletResponse response = _compressResponse;
+      _compressResponse = null;
+
+      if (!isCompressible(response)) {
+         return;
+      }
+
+      response.setHeader("Content-Encoding", "gzip");
+      response.addHeader("Vary", "Accept-Encoding");
+
+      _deflater = DeflaterPool.GZIP.allocate(_compressionLevel);
+   }
+
+   /**
+    * Returns the gzip stream, writing its header on first use.
+    */
+   private GZIPOutputStream getGzipOut() throws IOException {
+      if (_gzipOut == null) {
+         _gzipOut = new GZIPOutputStream(_os, _deflater, true);
+      }
+
+      return _gzipOut;
+   }
+
+   private static boolean isCompressible(HttpServletResponse response) {
+      if (response.isCommitted()
+              || response.containsHeader("Content-Encoding")
+              || response.containsHeader("Content-Length")) {
+         return false;
+      }
+
+      String contentType = response.getContentType();
+
+      if (contentType == null) {
+         return true;
+      }
+
+      int p = contentType.indexOf(';');
+
+      if (p >= 0) {
+         contentType = contentType.substring(0, p);
+      }
+
+      contentType = contentType.trim().toLowerCase(Locale.ENGLISH);
+
+      if (contentType.startsWith("image/")) {
+         return contentType.equals("image/svg+xml");
+      } else if (contentType.startsWith("audio/")
+              || contentType.startsWith("video/")) {
+         return false;
+      } else {
+         return !_compressedTypes.contains(contentType);
+      }
+   }
+
+   static {
+      // already-compressed formats, and opaque binary downloads
+      _compressedTypes.add("application/octet-stream");
+      _compressedTypes.add("application/zip");
+      _compressedTypes.add("application/gzip");
+      _compressedTypes.add("application/x-gzip");
+      _compressedTypes.add("application/x-bzip2");
+      _compressedTypes.add("application/x-compress");
+      _compressedTypes.add("application/x-7z-compressed");
+      _compressedTypes.add("application/x-rar-compressed");
+      _compressedTypes.add("application/java-archive");
+      _compressedTypes.add("application/pdf");
+      _compressedTypes.add("application/ogg");
+      _compressedTypes.add("font/woff");
+      _compressedTypes.add("font/woff2");
+      _compressedTypes.add("application/font-woff");
+   }
+}
@@ -87,6 +87,8 @@ public class ForeachStatement
          Iterator<Value> iter = obj.getValueIterator(env);
 
          while (iter.hasNext()) {
+            env.checkTimeout();
+
             Value value = iter.next();
 
             value = value.copy(); // php/0662
@@ -124,6 +126,8 @@ public class ForeachStatement
          Iterator<Value> iter = obj.getKeyIterator(env);
 
          while (iter.hasNext()) {
+            env.checkTimeout();
+
             Value key = iter.next();
 
             if (_key != null) {
@@ -164,6 +168,8 @@ public class ForeachStatement
          Iterator<Map.Entry<Value, Value>> iter = obj.getIterator(env);
 
          while (iter.hasNext()) {
+            env.checkTimeout();
+
             Map.Entry<Value, Value> entry = iter.next();
             Value key = entry.getKey();
             Value value = entry.getValue();
@@ -71,6 +71,31 @@ public final class ActiveMeter extends AbstractMeter implements ActiveSensor {
     return new TotalProbe(name);
   }
 
+  /**
+   * Returns the current active count.
+   */
+  public final long getActiveCount()
+  {
+    return _activeCount.get();
+  }
+
+  /**
+   * Returns the total count since the meter was created.
+   */
+  public final long getTotalCount()
+  {
+    return _totalCount.get();
+  }
+
+  /**
+   * Returns the active count.
+   */
+  @Override
+  public double peek()
+  {
+    return _activeCount.get();
+  }
+
   /**
    * Sample the active count
    */
@@ -143,6 +143,30 @@ public final class ActiveTimeMeter extends AbstractMeter implements ActiveTimeSe
     }
   }
 
+  /**
+   * Returns the current active count.
+   */
+  public final long getActiveCount()
+  {
+    return _activeCount.get();
+  }
+
+  /**
+   * Returns the total count since the meter was created.
+   */
+  public final long getTotalCount()
+  {
+    return _totalCount.get();
+  }
+
+  /**
+   * Returns the total time since the meter was created.
+   */
+  public final long getTotalTime()
+  {
+    return _sum.get();
+  }
+
   /**
    * Sample the active count
    */
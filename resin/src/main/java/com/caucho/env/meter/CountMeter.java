@@ -28,12 +28,20 @@
 
 package com.caucho.env.meter;
 
-import java.util.concurrent.atomic.AtomicLong;
-
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Counts events.  The count is striped by thread over padded cells, so
+ * threads counting the same meter don't contend for one cache line.
+ */
 public final class CountMeter extends AbstractMeter {
+  // longs per cell, padding each cell to a cache line
+  private static final int CELL_SIZE = 8;
+  private static final int CELL_COUNT;
+
   // sample data
-  private final AtomicLong _totalCount = new AtomicLong();
+  private final AtomicLongArray _cells
+    = new AtomicLongArray(CELL_COUNT * CELL_SIZE);
 
   private long _lastTotal;
 
@@ -44,7 +52,21 @@ public final class CountMeter extends AbstractMeter {
 
   public final void start()
   {
-    _totalCount.incrementAndGet();
+    _cells.incrementAndGet(getCell());
+  }
+
+  /**
+   * Returns the total count since the meter was created.
+   */
+  public final long getTotal()
+  {
+    long total = 0;
+
+    for (int i = 0; i < CELL_COUNT; i++) {
+      total += _cells.get(i * CELL_SIZE);
+    }
+
+    return total;
   }
 
   /**
@@ -52,10 +74,38 @@ public final class CountMeter extends AbstractMeter {
    */
   public final double sample()
   {
-    long totalCount = _totalCount.get();
+    long totalCount = getTotal();
     long lastTotal = _lastTotal;
     _lastTotal = totalCount;
 
     return totalCount - lastTotal;
   }
+
+  /**
+   * Returns the count since the last sample.
+   */
+  @Override
+  public double peek()
+  {
+    return getTotal() - _lastTotal;
+  }
+
+  private static int getCell()
+  {
+    int id = (int) Thread.currentThread().getId();
+
+    return (id & (CELL_COUNT - 1)) * CELL_SIZE;
+  }
+
+  static {
+    int cpus = Runtime.getRuntime().availableProcessors();
+
+    int count = 2;
+
+    while (count < 2 * cpus && count < 64) {
+      count *= 2;
+    }
+
+    CELL_COUNT = count;
+  }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.env.meter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of times in milliseconds, e.g. request latency.  The bucket
+ * counts are cumulative over the meter's life, so percentiles and exports
+ * like Prometheus's see every value, while sample() returns the average
+ * since the last sample like the other time meters.
+ */
+public final class HistogramMeter extends AbstractMeter {
+  private static final long []DEFAULT_BOUNDS = new long[] {
+    1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000
+  };
+
+  private final long []_bounds;
+
+  // the last bucket counts values above the highest bound
+  private final AtomicLongArray _buckets;
+  private final AtomicLong _count = new AtomicLong();
+  private final AtomicLong _sum = new AtomicLong();
+
+  private final Object _lock = new Object();
+  private long _lastCount;
+  private long _lastSum;
+
+  public HistogramMeter(String name)
+  {
+    this(name, DEFAULT_BOUNDS);
+  }
+
+  public HistogramMeter(String name, long []bounds)
+  {
+    super(name);
+
+    _bounds = bounds.clone();
+    _buckets = new AtomicLongArray(bounds.length + 1);
+  }
+
+  /**
+   * Adds a time in milliseconds.
+   */
+  public final void add(long time)
+  {
+    long []bounds = _bounds;
+
+    int i = 0;
+    for (; i < bounds.length && bounds[i] < time; i++) {
+    }
+
+    _buckets.incrementAndGet(i);
+    _count.incrementAndGet();
+    _sum.addAndGet(time);
+  }
+
+  /**
+   * Returns the upper bounds of the buckets, not including the last
+   * unbounded bucket.
+   */
+  public final long []getBounds()
+  {
+    return _bounds.clone();
+  }
+
+  /**
+   * Returns the count of a bucket.  The bucket after the last bound counts
+   * the values above it.
+   */
+  public final long getBucketCount(int bucket)
+  {
+    return _buckets.get(bucket);
+  }
+
+  /**
+   * Returns the number of values.
+   */
+  public final long getCount()
+  {
+    return _count.get();
+  }
+
+  /**
+   * Returns the sum of the values.
+   */
+  public final long getSum()
+  {
+    return _sum.get();
+  }
+
+  /**
+   * Returns an estimate of the percentile, e.g. 0.95, as the upper bound
+   * of its bucket.  Values above the highest bound return that bound.
+   */
+  public final long getPercentile(double percentile)
+  {
+    long count = _count.get();
+
+    if (count == 0)
+      return 0;
+
+    long rank = (long) Math.ceil(percentile * count);
+    long sum = 0;
+
+    for (int i = 0; i < _bounds.length; i++) {
+      sum += _buckets.get(i);
+
+      if (rank <= sum)
+        return _bounds[i];
+    }
+
+    return _bounds[_bounds.length - 1];
+  }
+
+  /**
+   * Returns the average since the last sample.
+   */
+  public final double sample()
+  {
+    synchronized (_lock) {
+      long count = _count.get();
+      long lastCount = _lastCount;
+      _lastCount = count;
+
+      long sum = _sum.get();
+      long lastSum = _lastSum;
+      _lastSum = sum;
+
+      if (count == lastCount)
+        return 0;
+      else
+        return (sum - lastSum) / (double) (count - lastCount);
+    }
+  }
+
+  /**
+   * Returns the average over the meter's life.
+   */
+  @Override
+  public double peek()
+  {
+    long count = _count.get();
+
+    if (count == 0)
+      return 0;
+    else
+      return _sum.get() / (double) count;
+  }
+}
@@ -28,6 +28,8 @@
 
 package com.caucho.env.meter;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.caucho.env.service.AbstractResinService;
@@ -73,6 +75,14 @@ public class MeterService extends AbstractResinService {
     return _meterMap.get(name);
   }
 
+  /**
+   * Returns all the meters, e.g. for an export.
+   */
+  public static Collection<AbstractMeter> getMeters()
+  {
+    return new ArrayList<AbstractMeter>(create()._meterMap.values());
+  }
+
   public static AverageTimeMeter createAverageTimeMeter(String name)
   {
     return create().createAverageTimeMeterImpl(name);
@@ -161,6 +171,22 @@ public class MeterService extends AbstractResinService {
     return meter;
   }
 
+  public static HistogramMeter createHistogramMeter(String name)
+  {
+    return create().createHistogramMeterImpl(name);
+  }
+
+  private HistogramMeter createHistogramMeterImpl(String name)
+  {
+    AbstractMeter meter = _meterMap.get(name);
+
+    if (meter == null) {
+      meter = createMeter(new HistogramMeter(name));
+    }
+
+    return (HistogramMeter) meter;
+  }
+
   public static TimeMeter createTimeMeter(String name)
   {
     return create().createTimeMeterImpl(name);
@@ -30,6 +30,7 @@
 package com.caucho.env.thread;
 
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -453,6 +454,70 @@ public final class ThreadPool {
     }
   }
 
+  /**
+   * Runs the tasks on the pool, returning when all have completed.
+   * The calling thread claims tasks too, so the tasks finish even when
+   * the pool is saturated.  The wait isn't interruptible, because the
+   * caller could otherwise reuse data a task is still writing.  An
+   * interrupt is restored before returning.  If any task throws, the
+   * first exception is rethrown after all the tasks have finished.
+   */
+  public void executeAll(final Runnable []tasks)
+  {
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(tasks.length);
+    final AtomicReference<Throwable> failure
+      = new AtomicReference<Throwable>();
+
+    Runnable worker = new Runnable() {
+      public void run()
+      {
+        int i;
+
+        while ((i = next.getAndIncrement()) < tasks.length) {
+          try {
+            tasks[i].run();
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            done.countDown();
+          }
+        }
+      }
+    };
+
+    for (int i = 1; i < tasks.length; i++) {
+      schedule(worker);
+    }
+
+    try {
+      worker.run();
+    } finally {
+      boolean isInterrupted = false;
+
+      while (true) {
+        try {
+          done.await();
+          break;
+        } catch (InterruptedException e) {
+          isInterrupted = true;
+        }
+      }
+
+      if (isInterrupted)
+        Thread.currentThread().interrupt();
+    }
+
+    Throwable exn = failure.get();
+
+    if (exn instanceof RuntimeException)
+      throw (RuntimeException) exn;
+    else if (exn instanceof Error)
+      throw (Error) exn;
+    else if (exn != null)
+      throw new RuntimeException(exn);
+  }
+
   /**
    * Schedules an executor task.
    */
@@ -624,9 +624,10 @@ public class EnvironmentClassLoader extends DynamicClassLoader
       selfList.add(listener);
       ScanManager scanManager = new ScanManager(selfList);
 
-      for (URL url : urlList) {
-        scanManager.scan(this, url, null);
-      }
+      URL []urls = new URL[urlList.size()];
+      urlList.toArray(urls);
+
+      scanManager.scan(this, urls, new String[urls.length]);
     }
   }
   
@@ -748,11 +749,17 @@ public class EnvironmentClassLoader extends DynamicClassLoader
 
         ScanManager scanManager = new ScanManager(_scanListeners);
 
+        URL []urls = new URL[rootListSize];
+        String []packageNames = new String[rootListSize];
+
         for (int i = 0; i < rootListSize; i++) {
           ScanRoot root = rootList.get(i);
 
-          scanManager.scan(this, root.getUrl(), root.getPackageName());
+          urls[i] = root.getUrl();
+          packageNames[i] = root.getPackageName();
         }
+
+        scanManager.scan(this, urls, packageNames);
       }
 
       // configureEnhancerEvent();
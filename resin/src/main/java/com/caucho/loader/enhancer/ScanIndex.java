@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.loader.enhancer;
+
+import java.io.*;
+import java.util.logging.*;
+
+import com.caucho.bytecode.ByteCodeClassMatcher;
+import com.caucho.inject.Module;
+import com.caucho.util.CharBuffer;
+import com.caucho.util.Crc64;
+import com.caucho.vfs.*;
+
+/**
+ * The recorded byte-code scan of a root.
+ *
+ * The scanner's callbacks are recorded instead of going straight to the
+ * listeners, so roots can be read in parallel and replayed to the
+ * listeners in order on the scanning thread.  The record of a jar is
+ * saved as an index file in the work directory, keyed by the jar's
+ * length, modified time and crc64, so an unchanged jar isn't read again
+ * on the next start.
+ */
+@Module
+class ScanIndex implements ByteCodeClassMatcher {
+  private static final Logger log
+    = Logger.getLogger(ScanIndex.class.getName());
+
+  private static final int MAGIC = 0x5343414e; // "SCAN"
+  private static final int VERSION = 1;
+
+  private static final int BEGIN = 1;
+  private static final int CLASS = 2;
+  private static final int SUPER_CLASS = 3;
+  private static final int INTERFACE = 4;
+  private static final int CLASS_ANNOTATION = 5;
+  private static final int POOL_STRING = 6;
+  private static final int FINISH = 7;
+
+  // kind, offset, length and modifiers for each event
+  private int []_events = new int[4 * 256];
+  private int _eventLength;
+
+  private char []_chars = new char[4096];
+  private int _charLength;
+
+  private boolean _isComplete = true;
+
+  // the jar's key, taken before the scan
+  private String _jarName;
+  private long _jarLength;
+  private long _jarLastModified;
+  private long _jarCrc64;
+
+  /**
+   * Notes the jar's key before it's scanned, so a jar replaced during
+   * the scan won't be saved under the new contents.
+   */
+  void setJar(Path jar)
+  {
+    _jarName = jar.getNativePath();
+    _jarLength = jar.getLength();
+    _jarLastModified = jar.getLastModified();
+    _jarCrc64 = jar.getCrc64();
+  }
+
+  /**
+   * Marks the start of a class file.
+   */
+  void beginClass()
+  {
+    addEvent(BEGIN, 0, 0, 0);
+  }
+
+  /**
+   * Marks the record as partial, e.g. after a read error, so it isn't
+   * saved.
+   */
+  void setIncomplete()
+  {
+    _isComplete = false;
+  }
+
+  boolean isComplete()
+  {
+    return _isComplete;
+  }
+
+  //
+  // ByteCodeClassMatcher
+  //
+
+  @Override
+  public boolean scanClass(String className, int modifiers)
+  {
+    int offset = addChars(className);
+
+    addEvent(CLASS, offset, className.length(), modifiers);
+
+    return true;
+  }
+
+  @Override
+  public boolean isAnnotationMatch(CharBuffer annotationClassName)
+  {
+    return false;
+  }
+
+  @Override
+  public void addSuperClass(char []buffer, int offset, int length)
+  {
+    addEvent(SUPER_CLASS, addChars(buffer, offset, length), length, 0);
+  }
+
+  @Override
+  public void addInterface(char []buffer, int offset, int length)
+  {
+    addEvent(INTERFACE, addChars(buffer, offset, length), length, 0);
+  }
+
+  @Override
+  public void addClassAnnotation(char []buffer, int offset, int length)
+  {
+    addEvent(CLASS_ANNOTATION, addChars(buffer, offset, length), length, 0);
+  }
+
+  @Override
+  public void addPoolString(char []buffer, int offset, int length)
+  {
+    addEvent(POOL_STRING, addChars(buffer, offset, length), length, 0);
+  }
+
+  @Override
+  public void finishScan()
+  {
+    addEvent(FINISH, 0, 0, 0);
+  }
+
+  /**
+   * Sends the recorded scan to the matcher, in the order the scanner
+   * produced it.
+   */
+  void replay(ScanManager.ScanByteCodeMatcher matcher)
+  {
+    int []events = _events;
+    char []chars = _chars;
+    boolean isActive = false;
+
+    for (int i = 0; i < _eventLength; i += 4) {
+      int offset = events[i + 1];
+      int length = events[i + 2];
+
+      switch (events[i]) {
+      case BEGIN:
+        matcher.init();
+        isActive = true;
+        break;
+
+      case CLASS:
+        // the scanner stops at a class no listener wants
+        isActive = matcher.scanClass(new String(chars, offset, length),
+                                     events[i + 3]);
+        break;
+
+      case SUPER_CLASS:
+        if (isActive)
+          matcher.addSuperClass(chars, offset, length);
+        break;
+
+      case INTERFACE:
+        if (isActive)
+          matcher.addInterface(chars, offset, length);
+        break;
+
+      case CLASS_ANNOTATION:
+        if (isActive)
+          matcher.addClassAnnotation(chars, offset, length);
+        break;
+
+      case POOL_STRING:
+        if (isActive)
+          matcher.addPoolString(chars, offset, length);
+        break;
+
+      case FINISH:
+        if (isActive)
+          matcher.finishScan();
+        break;
+      }
+    }
+  }
+
+  private void addEvent(int kind, int offset, int length, int modifiers)
+  {
+    if (_events.length <= _eventLength + 4) {
+      int []events = new int[2 * _events.length];
+      System.arraycopy(_events, 0, events, 0, _eventLength);
+      _events = events;
+    }
+
+    _events[_eventLength++] = kind;
+    _events[_eventLength++] = offset;
+    _events[_eventLength++] = length;
+    _events[_eventLength++] = modifiers;
+  }
+
+  private int addChars(String value)
+  {
+    int length = value.length();
+    int offset = reserveChars(length);
+
+    value.getChars(0, length, _chars, offset);
+
+    return offset;
+  }
+
+  private int addChars(char []buffer, int offset, int length)
+  {
+    int charOffset = reserveChars(length);
+
+    System.arraycopy(buffer, offset, _chars, charOffset, length);
+
+    return charOffset;
+  }
+
+  private int reserveChars(int length)
+  {
+    if (_chars.length < _charLength + length) {
+      char []chars = new char[Math.max(2 * _chars.length,
+                                       _charLength + length)];
+      System.arraycopy(_chars, 0, chars, 0, _charLength);
+      _chars = chars;
+    }
+
+    int offset = _charLength;
+
+    _charLength += length;
+
+    return offset;
+  }
+
+  //
+  // index files
+  //
+
+  /**
+   * Returns the index file for the jar.
+   */
+  static Path getIndexPath(Path indexDir, Path jar)
+  {
+    String name = jar.getTail();
+    long hash = Crc64.generate(jar.getNativePath());
+
+    return indexDir.lookup(name + "-" + Long.toHexString(hash) + ".idx");
+  }
+
+  /**
+   * Reads the saved scan of the jar, or returns null if there's no index
+   * or the jar has changed since.
+   */
+  static ScanIndex readIndex(Path indexPath, Path jar)
+  {
+    if (! indexPath.canRead())
+      return null;
+
+    ReadStream is = null;
+
+    try {
+      is = indexPath.openRead();
+
+      DataInputStream in = new DataInputStream(is);
+
+      if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        return null;
+
+      if (! jar.getNativePath().equals(in.readUTF()))
+        return null;
+
+      long length = in.readLong();
+      long lastModified = in.readLong();
+      long crc64 = in.readLong();
+
+      if (length != jar.getLength())
+        return null;
+
+      // a jar copied with a new time but the same contents still matches
+      if (lastModified != jar.getLastModified()
+          && crc64 != jar.getCrc64())
+        return null;
+
+      ScanIndex index = new ScanIndex();
+
+      int eventLength = in.readInt();
+      int charLength = in.readInt();
+
+      if (eventLength < 0 || eventLength % 4 != 0 || charLength < 0)
+        return null;
+
+      int []events = new int[eventLength + 4];
+      for (int i = 0; i < eventLength; i++) {
+        events[i] = in.readInt();
+      }
+
+      char []chars = new char[charLength];
+      for (int i = 0; i < charLength; i++) {
+        chars[i] = in.readChar();
+      }
+
+      for (int i = 0; i < eventLength; i += 4) {
+        int offset = events[i + 1];
+        int len = events[i + 2];
+
+        if (offset < 0 || len < 0 || charLength < offset + len)
+          return null;
+      }
+
+      index._events = events;
+      index._eventLength = eventLength;
+      index._chars = chars;
+      index._charLength = charLength;
+
+      return index;
+    } catch (IOException e) {
+      log.log(Level.FINER, e.toString(), e);
+
+      return null;
+    } finally {
+      if (is != null)
+        is.close();
+    }
+  }
+
+  /**
+   * Saves the scan of the jar.  The index is written to a temp file and
+   * renamed, so a concurrent start never reads a partial index.
+   */
+  void writeIndex(Path indexPath)
+  {
+    if (! _isComplete || _jarName == null)
+      return;
+
+    Path tempPath = indexPath.getParent().lookup(indexPath.getTail()
+                                                 + "." + Thread.currentThread().getId()
+                                                 + "." + System.nanoTime()
+                                                 + ".tmp");
+
+    try {
+      indexPath.getParent().mkdirs();
+
+      WriteStream os = tempPath.openWrite();
+
+      try {
+        DataOutputStream out = new DataOutputStream(os);
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(_jarName);
+        out.writeLong(_jarLength);
+        out.writeLong(_jarLastModified);
+        out.writeLong(_jarCrc64);
+
+        out.writeInt(_eventLength);
+        out.writeInt(_charLength);
+
+        for (int i = 0; i < _eventLength; i++) {
+          out.writeInt(_events[i]);
+        }
+
+        for (int i = 0; i < _charLength; i++) {
+          out.writeChar(_chars[i]);
+        }
+
+        out.flush();
+      } finally {
+        os.close();
+      }
+
+      if (! tempPath.renameTo(indexPath))
+        tempPath.remove();
+    } catch (IOException e) {
+      log.log(Level.FINER, e.toString(), e);
+
+      try {
+        tempPath.remove();
+      } catch (IOException e1) {
+      }
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return (getClass().getSimpleName()
+            + "[events=" + _eventLength / 4 + ",chars=" + _charLength + "]");
+  }
+}
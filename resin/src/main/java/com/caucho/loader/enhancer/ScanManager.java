@@ -37,7 +37,9 @@ import java.util.zip.*;
 
 import com.caucho.bytecode.ByteCodeClassMatcher;
 import com.caucho.bytecode.ByteCodeClassScanner;
+import com.caucho.env.thread.ThreadPool;
 import com.caucho.inject.Module;
+import com.caucho.java.WorkDir;
 import com.caucho.loader.EnvironmentClassLoader;
 import com.caucho.util.CharBuffer;
 import com.caucho.vfs.*;
@@ -50,6 +52,9 @@ public class ScanManager {
   private static final Logger log
     = Logger.getLogger(ScanManager.class.getName());
   
+  private static final int PARALLEL_MAX
+    = Math.min(8, Runtime.getRuntime().availableProcessors());
+  
   private final ScanListener []_listeners;
 
   public ScanManager(ArrayList<ScanListener> listeners)
@@ -69,25 +74,112 @@ public class ScanManager {
                    Path root,
                    String packageRoot)
   {
-    if (root.getPath().endsWith(".jar") && ! (root instanceof JarPath)) {
-      root = JarPath.create(root);
+    scan(loader, new Path[] { root }, new String[] { packageRoot });
+  }
+
+  public void scan(EnvironmentClassLoader loader,
+                   URL []urls,
+                   String []packageRoots)
+  {
+    Path []roots = new Path[urls.length];
+
+    for (int i = 0; i < urls.length; i++) {
+      // #3576
+      roots[i] = Vfs.lookup(urls[i]);
     }
+
+    scan(loader, roots, packageRoots);
+  }
+
+  /**
+   * Scans the roots.  The class files are read in parallel, using the
+   * saved index for unchanged jars, and the classes are sent to the
+   * listeners in root order on the calling thread, since the listeners
+   * aren't thread-safe.
+   */
+  public void scan(EnvironmentClassLoader loader,
+                   Path []roots,
+                   String []packageRoots)
+  {
+    ArrayList<RootScan> scanList = new ArrayList<RootScan>();
+
+    for (int i = 0; i < roots.length; i++) {
+      Path root = roots[i];
+      String packageRoot = packageRoots[i];
+
+      if (root.getPath().endsWith(".jar") && ! (root instanceof JarPath)) {
+        root = JarPath.create(root);
+      }
     
-    ScanListener []listeners = new ScanListener[_listeners.length];
+      ScanListener []listeners = new ScanListener[_listeners.length];
 
-    boolean hasListener = false;
-    for (int i = 0; i < _listeners.length; i++) {
-      if (_listeners[i].isRootScannable(root, packageRoot)) {
-        listeners[i] = _listeners[i];
-        hasListener = true;
+      boolean hasListener = false;
+      for (int j = 0; j < _listeners.length; j++) {
+        if (_listeners[j].isRootScannable(root, packageRoot)) {
+          listeners[j] = _listeners[j];
+          hasListener = true;
+        }
+      }
+
+      if (hasListener) {
+        scanList.add(new RootScan(root, packageRoot, listeners));
       }
     }
 
-    if (! hasListener) {
+    if (scanList.size() == 0) {
       return;
     }
-    
+
+    final Path indexDir = getIndexDir(loader);
+
+    if (scanList.size() == 1 || PARALLEL_MAX < 2) {
+      for (RootScan scan : scanList) {
+        scan.run(indexDir);
+      }
+    }
+    else {
+      Runnable []tasks = new Runnable[scanList.size()];
+
+      for (int i = 0; i < tasks.length; i++) {
+        final RootScan scan = scanList.get(i);
+
+        tasks[i] = new Runnable() {
+          public void run()
+          {
+            scan.run(indexDir);
+          }
+        };
+      }
+
+      ThreadPool.getCurrent().executeAll(tasks);
+    }
+
+    for (RootScan scan : scanList) {
+      scan.replay(loader);
+    }
+  }
+
+  private static Path getIndexDir(EnvironmentClassLoader loader)
+  {
+    try {
+      return WorkDir.getLocalWorkDir(loader).lookup("_scan");
+    } catch (Exception e) {
+      log.log(Level.FINER, e.toString(), e);
+
+      return null;
+    }
+  }
+
+  /**
+   * Records the scan of a root, reading a jar's saved index if it's
+   * unchanged.
+   */
+  private static ScanIndex scanRoot(Path root,
+                                    String packageRoot,
+                                    Path indexDir)
+  {
     ByteCodeClassScanner scanner = new ByteCodeClassScanner();
+    ScanIndex index;
     
     String packagePath = null;
     
@@ -97,30 +189,50 @@ public class ScanManager {
     if (root instanceof JarPath) {
       JarPath jarRoot = (JarPath) root;
       Path jar = jarRoot.getContainer();
-      
-      JarByteCodeMatcher matcher
-        = new JarByteCodeMatcher(loader, root, packageRoot, listeners);
+      Path indexPath = null;
+
+      // a package root only scans part of the jar
+      if (packageRoot == null && indexDir != null) {
+        indexPath = ScanIndex.getIndexPath(indexDir, jar);
+
+        index = ScanIndex.readIndex(indexPath, jar);
+
+        if (index != null) {
+          if (log.isLoggable(Level.FINER))
+            log.finer("scan index " + indexPath.getNativePath() + " for " + jar.getNativePath());
+
+          return index;
+        }
+      }
+
+      index = new ScanIndex();
+
+      if (indexPath != null)
+        index.setJar(jar);
     
-      scanForJarClasses(jar, packageRoot,
-                        scanner, matcher);
+      scanForJarClasses(jar, packageRoot, scanner, index);
+
+      if (indexPath != null)
+        index.writeIndex(indexPath);
     }
     else {
-      PathByteCodeMatcher matcher
-        = new PathByteCodeMatcher(loader, root, packageRoot, listeners);
+      index = new ScanIndex();
       
       Path scanRoot = root;
       
       if (packagePath != null)
         scanRoot = scanRoot.lookup(packagePath);
       
-      scanForClasses(root, scanRoot, scanner, matcher);
+      scanForClasses(root, scanRoot, scanner, index);
     }
+
+    return index;
   }
 
-  private void scanForClasses(Path root,
-                              Path path,
-                              ByteCodeClassScanner classScanner,
-                              PathByteCodeMatcher matcher)
+  private static void scanForClasses(Path root,
+                                     Path path,
+                                     ByteCodeClassScanner classScanner,
+                                     ScanIndex index)
   {
     try {
       if (path.isDirectory()) {
@@ -129,7 +241,7 @@ public class ScanManager {
             continue;
           }
           
-          scanForClasses(root, path.lookup(name), classScanner, matcher);
+          scanForClasses(root, path.lookup(name), classScanner, index);
         }
 
         return;
@@ -138,12 +250,12 @@ public class ScanManager {
       if (! path.getPath().endsWith(".class"))
         return;
 
-      matcher.init(root, path);
+      index.beginClass();
 
       ReadStream is = path.openRead();
       
       try {
-        classScanner.init(path.getPath(), is, matcher);
+        classScanner.init(path.getPath(), is, index);
 
         classScanner.scan();
       } finally {
@@ -151,13 +263,15 @@ public class ScanManager {
       }
     } catch (IOException e) {
       log.log(Level.FINE, e.toString(), e);
+
+      index.setIncomplete();
     }
   }
 
-  private void scanForJarClasses(Path path,
-                                 String packagePath,
-                                 ByteCodeClassScanner classScanner,
-                                 JarByteCodeMatcher matcher)
+  private static void scanForJarClasses(Path path,
+                                        String packagePath,
+                                        ByteCodeClassScanner classScanner,
+                                        ScanIndex index)
   {
     ZipFile zipFile = null;
 
@@ -176,11 +290,11 @@ public class ScanManager {
         if (packagePath != null && ! entryName.startsWith(packagePath))
           continue;
 
-        matcher.init();
+        index.beginClass();
 
         ReadStream is = Vfs.openRead(zipFile.getInputStream(entry));
         try {
-          classScanner.init(entryName, is, matcher);
+          classScanner.init(entryName, is, index);
 
           classScanner.scan();
         } finally {
@@ -189,6 +303,8 @@ public class ScanManager {
       }
     } catch (IOException e) {
       log.log(Level.FINE, e.toString(), e);
+
+      index.setIncomplete();
     } finally {
       try {
         if (zipFile != null)
@@ -198,50 +314,56 @@ public class ScanManager {
     }
   }
 
-  static class JarByteCodeMatcher extends ScanByteCodeMatcher {
-    JarByteCodeMatcher(EnvironmentClassLoader loader,
-                       Path root,
-                       String packageName,
-                       ScanListener []listeners)
-    {
-      super(loader, root, packageName, listeners);
-    }
-  }
+  /**
+   * A root to scan, with the listeners which accepted it.
+   */
+  static class RootScan {
+    private final Path _root;
+    private final String _packageRoot;
+    private final ScanListener []_listeners;
 
-  static class PathByteCodeMatcher extends ScanByteCodeMatcher {
-    private Path _root;
-    private Path _path;
+    private ScanIndex _index;
+    private Throwable _exception;
 
-    PathByteCodeMatcher(EnvironmentClassLoader loader,
-                        Path root,
-                        String packageName,
-                        ScanListener []listeners)
+    RootScan(Path root, String packageRoot, ScanListener []listeners)
     {
-      super(loader, root, packageName, listeners);
+      _root = root;
+      _packageRoot = packageRoot;
+      _listeners = listeners;
     }
 
-    void init(Path root, Path path)
+    void run(Path indexDir)
     {
-      super.init();
-
-      _root = root;
-      _path = path;
+      try {
+        _index = scanRoot(_root, _packageRoot, indexDir);
+      } catch (RuntimeException e) {
+        _exception = e;
+      } catch (Error e) {
+        _exception = e;
+      }
     }
 
-    String getClassName()
+    void replay(EnvironmentClassLoader loader)
     {
-      String rootName = _root.getFullPath();
-      String name = _path.getFullPath();
-      
-      int p = name.lastIndexOf('.');
+      if (_exception instanceof RuntimeException)
+        throw (RuntimeException) _exception;
+      else if (_exception instanceof Error)
+        throw (Error) _exception;
 
-      String className = name.substring(rootName.length(), p);
+      ScanByteCodeMatcher matcher
+        = new ScanByteCodeMatcher(loader, _root, _packageRoot, _listeners);
 
-      return className.replace('/', '.');
+      _index.replay(matcher);
+    }
+
+    @Override
+    public String toString()
+    {
+      return getClass().getSimpleName() + "[" + _root + "," + _packageRoot + "]";
     }
   }
     
-  abstract static class ScanByteCodeMatcher implements ByteCodeClassMatcher {
+  static class ScanByteCodeMatcher implements ByteCodeClassMatcher {
     private Path _root;
     private String _packageRoot;
     
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.management.server;
+
+import com.caucho.jmx.Description;
+import com.caucho.jmx.Units;
+
+/**
+ * MBean API for a Quercus engine.
+ *
+ * <pre>
+ * resin:type=Quercus,name=/var/www/webapp,...
+ * </pre>
+ *
+ * The page, include, regexp and unserialize counts are shared by all
+ * the Quercus engines in the JVM.
+ */
+@Description("A Quercus PHP engine")
+public interface QuercusMXBean extends ManagedObjectMXBean {
+  /**
+   * Returns true once the warm-up pages are parsed.
+   */
+  @Description("True when the engine has finished its warm-up")
+  public boolean isReady();
+
+  //
+  // Requests
+  //
+
+  /**
+   * Returns the number of executing PHP environments.
+   */
+  @Description("The current number of executing PHP environments")
+  public int getEnvActiveCount();
+
+  /**
+   * Returns the total number of requests.
+   */
+  @Description("The total number of PHP requests")
+  public long getRequestCountTotal();
+
+  /**
+   * Returns the average request time.
+   */
+  @Units("milliseconds")
+  @Description("The average time of a PHP request")
+  public double getRequestTimeAverage();
+
+  /**
+   * Returns the 95th percentile request time.
+   */
+  @Units("milliseconds")
+  @Description("The 95th percentile time of a PHP request")
+  public long getRequestTime95();
+
+  /**
+   * Returns the 99th percentile request time.
+   */
+  @Units("milliseconds")
+  @Description("The 99th percentile time of a PHP request")
+  public long getRequestTime99();
+
+  //
+  // Caches
+  //
+
+  /**
+   * Returns the total number of page cache hits.
+   */
+  @Description("The total number of parsed page cache hits")
+  public long getPageHitCountTotal();
+
+  /**
+   * Returns the total number of page parses.
+   */
+  @Description("The total number of page parses")
+  public long getPageParseCountTotal();
+
+  /**
+   * Returns the total number of include path cache hits.
+   */
+  @Description("The total number of include path cache hits")
+  public long getIncludeHitCountTotal();
+
+  /**
+   * Returns the total number of include path cache misses.
+   */
+  @Description("The total number of include path cache misses")
+  public long getIncludeMissCountTotal();
+
+  /**
+   * Returns the total number of regexp cache hits.
+   */
+  @Description("The total number of regexp cache hits")
+  public long getRegexpHitCountTotal();
+
+  /**
+   * Returns the total number of regexp compilations.
+   */
+  @Description("The total number of regexp compilations")
+  public long getRegexpCompileCountTotal();
+
+  /**
+   * Returns the total number of unserialize cache hits.
+   */
+  @Description("The total number of unserialize cache hits")
+  public long getUnserializeHitCountTotal();
+
+  /**
+   * Returns the total number of unserialize cache misses.
+   */
+  @Description("The total number of unserialize cache misses")
+  public long getUnserializeMissCountTotal();
+
+  //
+  // Sessions and connections
+  //
+
+  /**
+   * Returns the number of active sessions.
+   */
+  @Description("The current number of active sessions")
+  public int getSessionActiveCount();
+
+  /**
+   * Returns the total number of created sessions.
+   */
+  @Description("The total number of created sessions")
+  public long getSessionCreateCountTotal();
+
+  /**
+   * Returns the total number of timed out sessions.
+   */
+  @Description("The total number of timed out sessions")
+  public long getSessionTimeoutCountTotal();
+
+  /**
+   * Returns the number of active database connections.
+   */
+  @Description("The current number of database connections used by PHP")
+  public long getDatabaseConnectionActiveCount();
+
+  /**
+   * Returns the total number of database connections.
+   */
+  @Description("The total number of database connections used by PHP")
+  public long getDatabaseConnectionCountTotal();
+}
@@ -129,6 +129,17 @@ public class FileReadStream extends StreamImpl
       _is.getChannel().position(offset);
   }
 
+  /**
+   * Returns the file's channel, or null if the stream is closed.
+   */
+  public FileChannel getChannel()
+  {
+    if (_is != null)
+      return _is.getChannel();
+    else
+      return null;
+  }
+
   /**
    * Returns true if there's an associated file.
    */
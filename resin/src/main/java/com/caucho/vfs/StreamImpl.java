@@ -32,6 +32,7 @@ package com.caucho.vfs;
 import com.caucho.util.NullIterator;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.Iterator;
 
 /**
@@ -216,6 +217,29 @@ public class StreamImpl {
       return false;
   }
 
+  /**
+   * Returns true if the stream can write directly from a file channel.
+   */
+  public boolean canWriteChannel()
+  {
+    return false;
+  }
+
+  /**
+   * Writes a region of a file channel to the underlying stream.
+   *
+   * @param channel the file channel to read.
+   * @param offset the offset into the file.
+   * @param length the maximum number of bytes to write.
+   *
+   * @return the number of bytes written.
+   */
+  public long writeChannel(FileChannel channel, long offset, long length)
+    throws IOException
+  {
+    throw new UnsupportedOperationException(getClass().getName());
+  }
+
   /**
    * Clears any buffered values in the write.
    */
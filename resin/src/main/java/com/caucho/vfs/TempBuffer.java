@@ -29,25 +29,22 @@
 
 package com.caucho.vfs;
 
-import com.caucho.util.FreeList;
-
 import java.io.IOException;
 import java.util.logging.*;
 
 /**
  * Pooled temporary byte buffer.
+ *
+ * <p>Each size class has its own pool of FreeList stripes.  The small and
+ * large sizes and the pool limit can be changed with the caucho.tempbuffer.*
+ * system properties.
  */
 public class TempBuffer implements java.io.Serializable {
   private static Logger _log;
   
-  private static final FreeList<TempBuffer> _freeList
-    = new FreeList<TempBuffer>(32);
-  
-  private static final FreeList<TempBuffer> _smallFreeList
-    = new FreeList<TempBuffer>(32);
-  
-  private static final FreeList<TempBuffer> _largeFreeList
-    = new FreeList<TempBuffer>(32);
+  private static final TempBufferPool _pool;
+  private static final TempBufferPool _smallPool;
+  private static final TempBufferPool _largePool;
 
   private static final boolean _isSmallmem;
   
@@ -88,7 +85,7 @@ public class TempBuffer implements java.io.Serializable {
    */
   public static TempBuffer allocate()
   {
-    TempBuffer next = _freeList.allocate();
+    TempBuffer next = _pool.allocate();
 
     if (next == null)
       return new TempBuffer(SIZE);
@@ -110,7 +107,7 @@ public class TempBuffer implements java.io.Serializable {
    */
   public static TempBuffer allocateSmall()
   {
-    TempBuffer next = _smallFreeList.allocate();
+    TempBuffer next = _smallPool.allocate();
 
     if (next == null)
       return new TempBuffer(SMALL_SIZE);
@@ -130,7 +127,7 @@ public class TempBuffer implements java.io.Serializable {
    */
   public static TempBuffer allocateLarge()
   {
-    TempBuffer next = _smallFreeList.allocate();
+    TempBuffer next = _largePool.allocate();
 
     if (next == null)
       return new TempBuffer(LARGE_SIZE);
@@ -242,7 +239,7 @@ public class TempBuffer implements java.io.Serializable {
         buf._freeException = new IllegalStateException("initial free");
         buf._freeException.fillInStackTrace();
       }
-      _freeList.free(buf);
+      _pool.free(buf);
     }
   }
 
@@ -275,7 +272,7 @@ public class TempBuffer implements java.io.Serializable {
 
       buf._isFree = true;
       
-      _smallFreeList.free(buf);
+      _smallPool.free(buf);
     }
   }
 
@@ -296,7 +293,7 @@ public class TempBuffer implements java.io.Serializable {
 
         buf._isFree = true;
       
-        _smallFreeList.free(buf);
+        _smallPool.free(buf);
       }
       
       buf = next;
@@ -320,7 +317,7 @@ public class TempBuffer implements java.io.Serializable {
 
       buf._isFree = true;
       
-      _largeFreeList.free(buf);
+      _largePool.free(buf);
     }
   }
 
@@ -341,7 +338,7 @@ public class TempBuffer implements java.io.Serializable {
 
         buf._isFree = true;
       
-        _largeFreeList.free(buf);
+        _largePool.free(buf);
       }
       
       buf = next;
@@ -371,7 +368,24 @@ public class TempBuffer implements java.io.Serializable {
 
     _isSmallmem = isSmallmem;
     SIZE = size;
-    LARGE_SIZE = 8 * 1024;
-    SMALL_SIZE = 512;
+    LARGE_SIZE = Integer.getInteger("caucho.tempbuffer.large-size", 8 * 1024);
+    SMALL_SIZE = Integer.getInteger("caucho.tempbuffer.small-size", 512);
+
+    int poolMax = Integer.getInteger("caucho.tempbuffer.pool-max", 256);
+
+    // classes with the same size share a pool
+    _pool = new TempBufferPool(SIZE, poolMax);
+
+    if (SMALL_SIZE == SIZE)
+      _smallPool = _pool;
+    else
+      _smallPool = new TempBufferPool(SMALL_SIZE, poolMax);
+
+    if (LARGE_SIZE == SIZE)
+      _largePool = _pool;
+    else if (LARGE_SIZE == SMALL_SIZE)
+      _largePool = _smallPool;
+    else
+      _largePool = new TempBufferPool(LARGE_SIZE, poolMax);
   }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 1998-2010 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ */
+
+package com.caucho.vfs;
+
+import com.caucho.env.meter.CountMeter;
+import com.caucho.env.meter.MeterService;
+import com.caucho.util.FreeList;
+
+/**
+ * Pool for one size class of TempBuffers.  The free buffers are kept in
+ * FreeList stripes picked by the thread id, so threads allocating at the
+ * same time mostly use different lists.
+ */
+final class TempBufferPool {
+  private final int _size;
+
+  private final FreeList<TempBuffer> []_stripes;
+  private final int _stripeMask;
+
+  private final CountMeter _hitMeter;
+  private final CountMeter _missMeter;
+
+  @SuppressWarnings("unchecked")
+  TempBufferPool(int size, int poolMax)
+  {
+    _size = size;
+
+    int stripes = 1;
+    int cpus = Runtime.getRuntime().availableProcessors();
+
+    while (stripes < cpus)
+      stripes *= 2;
+
+    _stripes = (FreeList<TempBuffer> []) new FreeList<?>[stripes];
+    _stripeMask = stripes - 1;
+
+    int stripeMax = Math.max(poolMax / stripes, 4);
+
+    for (int i = 0; i < stripes; i++) {
+      _stripes[i] = new FreeList<TempBuffer>(stripeMax);
+    }
+
+    _hitMeter = MeterService.createCountMeter("Resin|TempBuffer|Hit");
+    _missMeter = MeterService.createCountMeter("Resin|TempBuffer|Miss");
+  }
+
+  /**
+   * Returns a free buffer, or null if the pool is empty.
+   */
+  TempBuffer allocate()
+  {
+    TempBuffer buf = getStripe().allocate();
+
+    if (buf != null)
+      _hitMeter.start();
+    else
+      _missMeter.start();
+
+    return buf;
+  }
+
+  /**
+   * Returns a buffer to the pool.  If the thread's stripe is full, the
+   * buffer is left to the garbage collector.
+   */
+  void free(TempBuffer buf)
+  {
+    getStripe().free(buf);
+  }
+
+  private FreeList<TempBuffer> getStripe()
+  {
+    int index = (int) Thread.currentThread().getId() & _stripeMask;
+
+    return _stripes[index];
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + _size + "]";
+  }
+}
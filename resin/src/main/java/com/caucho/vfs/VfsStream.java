@@ -28,9 +28,13 @@
 
 package com.caucho.vfs;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Stream encapsulating InputStream/OutputStream.
@@ -40,6 +44,7 @@ public class VfsStream extends StreamImpl {
 
   private InputStream is;
   private OutputStream _os;
+  private WritableByteChannel _writeChannel;
   private boolean flushOnNewline;
   private boolean closeChildOnClose = true;
   private byte []newline = unixNewline;
@@ -78,6 +83,7 @@ public class VfsStream extends StreamImpl {
   {
     this.is = is;
     _os = os;
+    _writeChannel = null;
     setPath(null);
     flushOnNewline = false;
     closeChildOnClose = true;
@@ -202,6 +208,60 @@ public class VfsStream extends StreamImpl {
     }
   }
 
+  /**
+   * Returns true if the stream can write directly from a file channel.
+   */
+  public boolean canWriteChannel()
+  {
+    return _os != null;
+  }
+
+  /**
+   * Writes a region of a file channel to the underlying stream.  When
+   * the stream is a file, the channel transfers directly, letting
+   * the OS copy the file without user-space buffers.
+   */
+  public long writeChannel(FileChannel channel, long offset, long length)
+    throws IOException
+  {
+    WritableByteChannel writeChannel = _writeChannel;
+
+    if (writeChannel == null) {
+      OutputStream os = _os;
+
+      if (os instanceof FileOutputStream)
+        writeChannel = ((FileOutputStream) os).getChannel();
+      else if (os instanceof WritableByteChannel)
+        writeChannel = (WritableByteChannel) os;
+      else
+        writeChannel = Channels.newChannel(os);
+
+      _writeChannel = writeChannel;
+    }
+
+    long size = channel.size();
+
+    if (size <= offset)
+      return 0;
+    else if (size - offset < length)
+      length = size - offset;
+
+    long writeLength = 0;
+
+    while (writeLength < length) {
+      long sublen = channel.transferTo(offset + writeLength,
+                                       length - writeLength,
+                                       writeChannel);
+
+      if (sublen <= 0)
+        break;
+
+      writeLength += sublen;
+    }
+
+    return writeLength;
+  }
+
   public void flushToDisk() throws IOException
   {
     flush();
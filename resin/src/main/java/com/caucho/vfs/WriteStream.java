@@ -38,6 +38,7 @@ import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
 import java.util.Iterator;
 import java.util.Locale;
 
@@ -1157,6 +1158,43 @@ public class WriteStream extends OutputStreamWithBuffer
       flush();
   }
 
+  /**
+   * Writes a region of a file channel to the stream.  The underlying
+   * stream transfers from the channel directly, skipping the write
+   * buffer.
+   *
+   * @param channel the file channel to read.
+   * @param offset the offset into the file.
+   * @param length the maximum number of bytes to write.
+   *
+   * @return the number of bytes written, or -1 if the underlying stream
+   * can't write from a channel.
+   */
+  public long writeChannel(FileChannel channel, long offset, long length)
+    throws IOException
+  {
+    StreamImpl source = _source;
+
+    if (_disableFlush || source == null || ! source.canWriteChannel())
+      return -1;
+
+    int len = _writeLength;
+    if (len > 0) {
+      _writeLength = 0;
+      source.write(_writeBuffer, 0, len, false);
+      _position += len;
+    }
+
+    long writeLength = source.writeChannel(channel, offset, length);
+
+    _position += writeLength;
+
+    if (flushOnNewline || _implicitFlush)
+      flush();
+
+    return writeLength;
+  }
+
   /**
    * Copies a file to the stream.
    *